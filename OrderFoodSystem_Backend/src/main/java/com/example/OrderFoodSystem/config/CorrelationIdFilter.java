@@ -0,0 +1,65 @@
+package com.example.OrderFoodSystem.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.HexFormat;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * Gắn correlation id cho mỗi request vào MDC để lọc được mọi dòng log của request đó, kể cả phần chạy
+ * sau khi gọi MoMo. Nhận id từ header X-Correlation-Id nếu hợp lệ, không thì tự sinh, và trả lại trong
+ * response. Các request khác nhau của cùng một giao dịch (return, IPN) nối với nhau qua txnRef/orderId trong log.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class CorrelationIdFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "X-Correlation-Id";
+    public static final String MDC_KEY = "correlationId";
+
+    private static final String ATTRIBUTE = CorrelationIdFilter.class.getName() + ".id";
+    // Chỉ nhận id ngắn, không có ký tự đặc biệt để không chèn được vào log
+    private static final Pattern VALID_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        // Async dispatch (vd: thanh toán MoMo trả CompletableFuture) dùng lại id của request ban đầu
+        String correlationId = (String) request.getAttribute(ATTRIBUTE);
+        if (correlationId == null) {
+            correlationId = request.getHeader(HEADER);
+            if (correlationId == null || !VALID_ID.matcher(correlationId).matches()) {
+                correlationId = newId();
+            }
+            request.setAttribute(ATTRIBUTE, correlationId);
+            response.setHeader(HEADER, correlationId);
+        }
+
+        MDC.put(MDC_KEY, correlationId);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            MDC.remove(MDC_KEY);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    // 16 ký tự hex, đủ phân biệt request mà rẻ hơn UUID
+    public static String newId() {
+        return HexFormat.of().toHexDigits(ThreadLocalRandom.current().nextLong());
+    }
+}
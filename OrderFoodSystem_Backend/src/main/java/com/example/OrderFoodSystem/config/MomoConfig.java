@@ -11,6 +11,7 @@ public class MomoConfig {
 
     // Sandbox Endpoints
     public static final String CREATE_ORDER_URL = "https://test-payment.momo.vn/v2/gateway/api/create";
+    public static final String QUERY_ORDER_URL = "https://test-payment.momo.vn/v2/gateway/api/query";
 
     // Redirect & Notification URLs
     // Note: notifyUrl requires a public URL (ngrok). For local testing, IPN might
@@ -0,0 +1,80 @@
+package com.example.OrderFoodSystem.controller;
+
+import com.example.OrderFoodSystem.dto.CartDTO;
+import com.example.OrderFoodSystem.entity.Order;
+import com.example.OrderFoodSystem.service.CartService;
+import com.example.OrderFoodSystem.service.CartStore;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/carts")
+@CrossOrigin("*")
+public class ControllerCart {
+
+    @Autowired
+    private CartService cartService;
+
+    @Autowired
+    private CartStore cartStore;
+
+    @GetMapping("/{customerId}")
+    CartDTO getCart(@PathVariable Long customerId) {
+        return cartService.getCart(customerId);
+    }
+
+    // Thêm món vào giỏ hàng (cộng dồn nếu đã có)
+    @PostMapping("/{customerId}/items")
+    ResponseEntity<?> addItem(@PathVariable Long customerId, @RequestBody CartDTO.ItemRequest request) {
+        try {
+            int quantity = request.getQuantity() != null ? request.getQuantity() : 1;
+            return ResponseEntity.ok(cartService.addItem(customerId, request.getIdProduct(), quantity, request.getNote()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // Sửa số lượng/ghi chú của một món (quantity = 0 là xóa món)
+    @PutMapping("/{customerId}/items/{productId}")
+    ResponseEntity<?> updateItem(@PathVariable Long customerId, @PathVariable Long productId,
+            @RequestBody CartDTO.ItemRequest request) {
+        if (request.getQuantity() == null) {
+            return ResponseEntity.badRequest().body(Map.of("message", "quantity không được để trống"));
+        }
+        try {
+            return ResponseEntity.ok(cartService.updateItem(customerId, productId, request.getQuantity(), request.getNote()));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @DeleteMapping("/{customerId}/items/{productId}")
+    CartDTO removeItem(@PathVariable Long customerId, @PathVariable Long productId) {
+        return cartService.removeItem(customerId, productId);
+    }
+
+    @DeleteMapping("/{customerId}")
+    ResponseEntity<?> clearCart(@PathVariable Long customerId) {
+        cartService.clear(customerId);
+        return ResponseEntity.noContent().build();
+    }
+
+    // Đặt hàng: tạo đơn hàng (pending, chờ thanh toán) từ giỏ hàng và làm trống giỏ hàng
+    @PostMapping("/{customerId}/checkout")
+    ResponseEntity<?> checkout(@PathVariable Long customerId) {
+        try {
+            Order order = cartService.checkout(customerId);
+            return ResponseEntity.ok(order);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/stats")
+    Map<String, Object> getStats() {
+        return cartStore.getStats();
+    }
+}
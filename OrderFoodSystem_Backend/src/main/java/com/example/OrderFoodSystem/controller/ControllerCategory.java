@@ -5,6 +5,7 @@ import org.springframework.web.bind.annotation.*;
 
 import com.example.OrderFoodSystem.entity.Category;
 import com.example.OrderFoodSystem.repository.CategoryRepository;
+import com.example.OrderFoodSystem.service.CatalogCacheService;
 
 import java.util.List;
 
@@ -15,6 +16,9 @@ public class ControllerCategory {
     @Autowired
     private CategoryRepository categoryRepository;
 
+    @Autowired
+    private CatalogCacheService catalogCacheService;
+
     @PostMapping
     Category newCategory(@RequestBody Category newCategory) {
         return categoryRepository.save(newCategory);
@@ -33,12 +37,15 @@ public class ControllerCategory {
 
     @PutMapping("/{id}")
     Category updateCategory(@PathVariable Long id, @RequestBody Category newCategory) {
-        return categoryRepository.findById(id)
+        Category updated = categoryRepository.findById(id)
                 .map(category -> {
                     category.setNameCategory(newCategory.getNameCategory());
                     return categoryRepository.save(category);
                 })
                 .orElseThrow(() -> new RuntimeException("Category not found with id " + id));
+        // Món ăn trong cache chứa cả tên category
+        catalogCacheService.refresh();
+        return updated;
     }
 
     @DeleteMapping("/{id}")
@@ -47,6 +54,7 @@ public class ControllerCategory {
             throw new RuntimeException("Category not found with id " + id);
         }
         categoryRepository.deleteById(id);
+        catalogCacheService.refresh();
         return "Category " + id + " has been deleted";
     }
 }
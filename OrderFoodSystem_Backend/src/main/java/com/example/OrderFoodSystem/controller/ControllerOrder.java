@@ -1,14 +1,23 @@
 package com.example.OrderFoodSystem.controller;
 
+import com.example.OrderFoodSystem.dto.OrderSummaryDTO;
 import com.example.OrderFoodSystem.entity.Customer;
-import com.example.OrderFoodSystem.entity.OrderVoucher;
-import com.example.OrderFoodSystem.entity.Voucher;
+import com.example.OrderFoodSystem.entity.OrderStatus;
 import com.example.OrderFoodSystem.repository.CustomerRepository;
-import com.example.OrderFoodSystem.repository.OrderVoucherRepository;
-import com.example.OrderFoodSystem.repository.VoucherRepository;
+import com.example.OrderFoodSystem.service.InvalidStatusTransitionException;
+import com.example.OrderFoodSystem.service.MomoService;
+import com.example.OrderFoodSystem.service.OrderEventService;
+import com.example.OrderFoodSystem.service.OrderOutboxRelay;
+import com.example.OrderFoodSystem.service.OrderPricingService;
 import com.example.OrderFoodSystem.service.OrderService;
+import com.example.OrderFoodSystem.service.PaymentGatewayUnavailableException;
+import com.example.OrderFoodSystem.service.PaymentReconciliationService;
+import com.example.OrderFoodSystem.service.VoucherRedemptionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -18,6 +27,8 @@ import com.example.OrderFoodSystem.repository.OrderRepository;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/orders")
@@ -34,13 +45,22 @@ public class ControllerOrder {
     private OrderService orderService;
 
     @Autowired
-    private OrderVoucherRepository orderVoucherRepository;
+    private MomoService momoService;
 
     @Autowired
-    private VoucherRepository voucherRepository;
+    private VoucherRedemptionService voucherRedemptionService;
 
     @Autowired
-    private com.example.OrderFoodSystem.service.MomoService momoService;
+    private OrderPricingService orderPricingService;
+
+    @Autowired
+    private OrderEventService orderEventService;
+
+    @Autowired
+    private OrderOutboxRelay orderOutboxRelay;
+
+    @Autowired
+    private PaymentReconciliationService paymentReconciliationService;
 
     @PostMapping
     Order newOrder(@RequestBody Order newOrder) {
@@ -51,10 +71,18 @@ public class ControllerOrder {
                 .orElseThrow(() -> new RuntimeException("Customer not found"));
         newOrder.setCustomer(customer);
 
-        // Set status mặc định là pending nếu chưa có
-        if (newOrder.getStatus() == null || newOrder.getStatus().isEmpty()) {
-            newOrder.setStatus("pending");
+        // Đơn mới luôn bắt đầu ở pending/UNPAID; các trạng thái sau chỉ đạt được qua transition.
+        // Trạng thái khác (kể cả giá trị lạ) trả về 400 qua handleInvalidStatus
+        if (OrderStatus.of(newOrder.getStatus()) != OrderStatus.PENDING) {
+            throw new IllegalArgumentException("Đơn hàng mới phải ở trạng thái pending");
         }
+        newOrder.setStatus(OrderStatus.PENDING.value());
+        newOrder.setPaymentStatus("UNPAID");
+        newOrder.setPaymentRef(null);
+        newOrder.setPaymentRequestedAt(null);
+        // Không cho POST ghi đè đơn đã có
+        newOrder.setIdOrder(null);
+        newOrder.setVersion(null);
 
         // Set date nếu chưa có
         if (newOrder.getOrderDate() == null) {
@@ -62,7 +90,7 @@ public class ControllerOrder {
         }
 
         // Save order
-        return orderRepository.save(newOrder);
+        return orderService.createOrder(newOrder);
     }
 
     @GetMapping
@@ -70,61 +98,96 @@ public class ControllerOrder {
         return orderRepository.findAll();
     }
 
+    // Luồng sự kiện đơn hàng (SSE) cho màn hình nhân viên, thay cho việc tải lại toàn bộ /orders.
+    // Trình duyệt tự gửi Last-Event-ID khi kết nối lại; lastEventId dùng khi tự mở lại kết nối
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    ResponseEntity<?> streamOrders(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventIdHeader,
+            @RequestParam(required = false) Long lastEventId) {
+        try {
+            return ResponseEntity.ok(orderEventService.subscribe(
+                    lastEventIdHeader != null ? lastEventIdHeader : lastEventId));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @GetMapping("/stream/stats")
+    Map<String, Object> streamStats() {
+        return orderEventService.getStats();
+    }
+
+    // Số sự kiện outbox còn chờ/lỗi và thống kê của relay
+    @GetMapping("/outbox/stats")
+    Map<String, Object> outboxStats() {
+        return orderOutboxRelay.getStats();
+    }
+
+    // Số đơn MoMo/VNPay còn chờ thanh toán, độ trễ và kết quả các lần đối soát
+    @GetMapping("/reconcile/stats")
+    Map<String, Object> reconcileStats() {
+        return paymentReconciliationService.getStats();
+    }
+
+    // API danh sách đơn hàng rút gọn, phân trang theo cursor và lọc phía server
+    @GetMapping("/summary")
+    OrderSummaryDTO.Page getOrderSummaries(
+            @RequestParam(required = false) Long cursor,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String status,
+            @RequestParam(required = false) String paymentStatus,
+            @RequestParam(required = false) Long customerId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return orderService.listOrderSummaries(cursor, size, status, paymentStatus, customerId, from, to);
+    }
+
+    // Các đơn có subtotal/totalPrice lệch với tổng các dòng (chạy kiểm tra ngay)
+    @GetMapping("/pricing/drift")
+    List<Map<String, Object>> pricingDrift() {
+        return orderPricingService.checkDrift();
+    }
+
+    // Chi tiết một đơn hàng; màn hình nhân viên gọi khi nhận sự kiện từ /orders/stream
+    @GetMapping("/{id}")
+    ResponseEntity<Order> getOrder(@PathVariable Long id) {
+        return orderRepository.findById(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
     @PutMapping("/{id}")
     Order updateOrder(@PathVariable Long id, @RequestBody Order newOrder) {
-        return orderRepository.findById(id)
-                .map(order -> {
-                    order.setOrderDate(newOrder.getOrderDate());
-                    // Không cần set totalPrice thủ công, sẽ tính tự động
-                    // order.setTotalPrice(newOrder.getTotalPrice());
-
-                    // Cập nhật customer nếu có
-                    if (newOrder.getCustomer() != null && newOrder.getCustomer().getIdCustomer() != null) {
-                        Long idCustomer = newOrder.getCustomer().getIdCustomer();
-                        Customer customer = customerRepository.findById(idCustomer)
-                                .orElseThrow(() -> new RuntimeException("Customer not found"));
-                        order.setCustomer(customer);
-                    }
-
-                    orderRepository.save(order);
-
-                    // Tính lại totalPrice
-                    return orderService.updateTotalPrice(id);
-                })
-                .orElseThrow(() -> new RuntimeException("Order not found with id " + id));
+        // Cập nhật customer nếu có
+        Customer customer = null;
+        if (newOrder.getCustomer() != null && newOrder.getCustomer().getIdCustomer() != null) {
+            Long idCustomer = newOrder.getCustomer().getIdCustomer();
+            customer = customerRepository.findById(idCustomer)
+                    .orElseThrow(() -> new RuntimeException("Customer not found"));
+        }
+        // totalPrice được tính lại từ các dòng, không lấy từ request
+        return orderService.updateOrder(id, newOrder.getOrderDate(), customer);
     }
 
     @DeleteMapping("/{id}")
     String deleteUser(@PathVariable Long id) {
-        orderRepository.deleteById(id);
+        orderService.deleteOrder(id);
         return "Order " + id + " has been deleted";
     }
 
     // API cập nhật status đơn hàng (cho staff/admin)
     @PatchMapping("/{id}/status")
     Order updateOrderStatus(@PathVariable Long id, @RequestBody java.util.Map<String, String> statusUpdate) {
-        return orderRepository.findById(id)
-                .map(order -> {
-                    String newStatus = statusUpdate.get("status");
-                    if (newStatus != null && !newStatus.isEmpty()) {
-                        order.setStatus(newStatus);
-                        return orderRepository.save(order);
-                    }
-                    throw new RuntimeException("Status is required");
-                })
-                .orElseThrow(() -> new RuntimeException("Order not found with id " + id));
+        String newStatus = statusUpdate.get("status");
+        if (newStatus == null || newStatus.isEmpty()) {
+            throw new RuntimeException("Status is required");
+        }
+        return orderService.updateStatus(id, newStatus);
     }
 
     // API xác nhận đơn hàng (customer đặt hàng xong)
     @PatchMapping("/{id}/confirm")
     Order confirmOrder(@PathVariable Long id) {
-        return orderRepository.findById(id)
-                .map(order -> {
-                    order.setStatus("confirmed");
-                    order.setOrderDate(LocalDateTime.now()); // Set actual order time
-                    return orderRepository.save(order);
-                })
-                .orElseThrow(() -> new RuntimeException("Order not found with id " + id));
+        return orderService.confirmOrder(id);
     }
 
     // API áp dụng voucher vào đơn hàng
@@ -134,83 +197,85 @@ public class ControllerOrder {
             Long voucherId = Long.parseLong(request.get("voucherId").toString());
             Double discountAmount = Double.parseDouble(request.get("discountAmount").toString());
 
-            Order order = orderRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Order not found"));
-
-            Voucher voucher = voucherRepository.findById(voucherId)
-                    .orElseThrow(() -> new RuntimeException("Voucher not found"));
-
-            // Xóa voucher cũ nếu có
-            orderVoucherRepository.findByOrder_IdOrder(id).ifPresent(orderVoucherRepository::delete);
+            // Giữ một lượt dùng voucher (trừ quantity có điều kiện, trả lại voucher cũ nếu có)
+            voucherRedemptionService.reserve(id, voucherId, discountAmount);
 
-            // Tạo OrderVoucher mới
-            OrderVoucher orderVoucher = new OrderVoucher(order, voucher, discountAmount);
-            orderVoucherRepository.save(orderVoucher);
-
-            // Cập nhật totalPrice của order
-            Double newTotalPrice = order.getTotalPrice() - discountAmount;
-            order.setTotalPrice(Math.max(0, newTotalPrice));
-            orderRepository.save(order);
-
-            // Giảm quantity của voucher
-            voucher.setQuantity(voucher.getQuantity() - 1);
-            voucherRepository.save(voucher);
+            // Số tiền giảm thay thế (không trừ chồng) giảm giá cũ, totalPrice tính lại từ subtotal
+            Order order = orderService.applyDiscount(id, discountAmount);
 
             return ResponseEntity.ok(Map.of("message", "Áp dụng voucher thành công", "order", order));
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return handleConcurrentUpdate(e);
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", "Lỗi khi áp dụng voucher: " + e.getMessage()));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", "Lỗi khi áp dụng voucher: " + e.getMessage()));
         }
     }
 
-    // API xử lý thanh toán cho đơn hàng
+    // API xử lý thanh toán cho đơn hàng.
+    // MoMo được gọi bất đồng bộ: thread của Tomcat được trả lại trong lúc chờ cổng thanh toán
     @PostMapping("/{id}/payment")
-    public ResponseEntity<?> processPayment(@PathVariable Long id, @RequestBody Map<String, String> paymentRequest) {
+    public CompletableFuture<ResponseEntity<?>> processPayment(@PathVariable Long id,
+            @RequestBody Map<String, String> paymentRequest) {
         try {
             String paymentMethod = paymentRequest.get("paymentMethod");
 
             if (paymentMethod == null || paymentMethod.isEmpty()) {
-                return ResponseEntity.badRequest()
-                        .body(Map.of("message", "Payment method is required"));
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                        .body(Map.of("message", "Payment method is required")));
             }
 
             // Kiểm tra payment method hợp lệ
             if (!paymentMethod.equalsIgnoreCase("COD") && !paymentMethod.equalsIgnoreCase("MOMO")) {
-                return ResponseEntity.badRequest()
-                        .body(Map.of("message", "Invalid payment method. Only COD and MOMO are supported."));
+                return CompletableFuture.completedFuture(ResponseEntity.badRequest()
+                        .body(Map.of("message", "Invalid payment method. Only COD and MOMO are supported.")));
             }
 
             Order order = orderService.processPayment(id, paymentMethod);
 
             if (paymentMethod.equalsIgnoreCase("MOMO")) {
-                try {
-                    String payUrl = momoService.createPaymentRequest(order);
-                    return ResponseEntity.ok(Map.of(
-                            "message", "Chuyển hướng đến cổng thanh toán MoMo",
-                            "payUrl", payUrl,
-                            "order", order));
-                } catch (Exception e) {
-                    return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                            .body(Map.of("message", "Lỗi khi tạo yêu cầu thanh toán MoMo: " + e.getMessage()));
-                }
+                // Lưu mã giao dịch gửi sang MoMo để đối soát
+                Order requested = orderService.recordPaymentRequest(id, "MOMO");
+                return momoService.createPaymentRequest(requested)
+                        .<ResponseEntity<?>>thenApply(payUrl -> ResponseEntity.ok(Map.of(
+                                "message", "Chuyển hướng đến cổng thanh toán MoMo",
+                                "payUrl", payUrl,
+                                "order", requested)))
+                        .exceptionally(this::momoFailure);
             }
 
             String message = "Xác nhận đơn hàng thành công. Thanh toán khi nhận hàng.";
 
-            return ResponseEntity.ok(Map.of(
+            return CompletableFuture.completedFuture(ResponseEntity.ok(Map.of(
                     "message", message,
                     "order", order,
                     "paymentMethod", order.getPaymentMethod(),
-                    "paymentStatus", order.getPaymentStatus()));
+                    "paymentStatus", order.getPaymentStatus())));
+        } catch (InvalidStatusTransitionException e) {
+            return CompletableFuture.completedFuture(handleInvalidTransition(e));
         } catch (RuntimeException e) {
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
-                    .body(Map.of("message", e.getMessage()));
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", e.getMessage())));
         } catch (Exception e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body(Map.of("message", "Lỗi khi xử lý thanh toán: " + e.getMessage()));
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("message", "Lỗi khi xử lý thanh toán: " + e.getMessage())));
         }
     }
 
+    // MoMo không dùng được: trả 503 và gợi ý chuyển sang COD, đơn hàng vẫn giữ pending
+    private ResponseEntity<?> momoFailure(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof PaymentGatewayUnavailableException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("message", cause.getMessage(), "fallbackPaymentMethod", "COD"));
+        }
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                .body(Map.of("message", "Lỗi khi tạo yêu cầu thanh toán MoMo: " + cause.getMessage()));
+    }
+
     // API xác nhận thanh toán thành công (dùng cho COD khi giao hàng)
     @PatchMapping("/{id}/payment/confirm")
     public ResponseEntity<?> confirmPayment(@PathVariable Long id) {
@@ -220,6 +285,10 @@ public class ControllerOrder {
                     "message", "Xác nhận thanh toán thành công",
                     "order", order,
                     "paymentStatus", order.getPaymentStatus()));
+        } catch (InvalidStatusTransitionException e) {
+            return handleInvalidTransition(e);
+        } catch (ObjectOptimisticLockingFailureException e) {
+            return handleConcurrentUpdate(e);
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
                     .body(Map.of("message", e.getMessage()));
@@ -240,11 +309,7 @@ public class ControllerOrder {
                         .body(Map.of("message", "Payment status is required"));
             }
 
-            Order order = orderRepository.findById(id)
-                    .orElseThrow(() -> new RuntimeException("Order not found with id " + id));
-
-            order.setPaymentStatus(newStatus.toUpperCase());
-            Order updatedOrder = orderRepository.save(order);
+            Order updatedOrder = orderService.updatePaymentStatus(id, newStatus);
 
             return ResponseEntity.ok(Map.of(
                     "message", "Cập nhật trạng thái thanh toán thành công",
@@ -258,4 +323,21 @@ public class ControllerOrder {
                     .body(Map.of("message", "Lỗi khi cập nhật trạng thái thanh toán: " + e.getMessage()));
         }
     }
+
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    ResponseEntity<?> handleConcurrentUpdate(ObjectOptimisticLockingFailureException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("message", "Đơn hàng vừa được cập nhật, vui lòng thử lại"));
+    }
+
+    @ExceptionHandler(InvalidStatusTransitionException.class)
+    ResponseEntity<?> handleInvalidTransition(InvalidStatusTransitionException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("message", e.getMessage()));
+    }
+
+    // Trạng thái gửi lên không thuộc vòng đời đơn hàng
+    @ExceptionHandler(IllegalArgumentException.class)
+    ResponseEntity<?> handleInvalidStatus(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(Map.of("message", e.getMessage()));
+    }
 }
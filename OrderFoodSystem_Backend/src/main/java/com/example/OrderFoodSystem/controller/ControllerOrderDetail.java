@@ -1,16 +1,18 @@
 package com.example.OrderFoodSystem.controller;
 
-import com.example.OrderFoodSystem.repository.OrderRepository;
-import com.example.OrderFoodSystem.repository.ProductRepository;
+import com.example.OrderFoodSystem.dto.CartBatchDTO;
 import com.example.OrderFoodSystem.service.OrderDetailService;
-import com.example.OrderFoodSystem.service.OrderService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.*;
 
 import com.example.OrderFoodSystem.entity.OrderDetail;
 import com.example.OrderFoodSystem.repository.OrderDetailRepository;
 
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/orderDetails")
@@ -21,61 +23,32 @@ public class ControllerOrderDetail {
     @Autowired
     private OrderDetailRepository orderDetailRepository;
 
-    @Autowired
-    private ProductRepository productRepository;
-
-    @Autowired
-    private OrderRepository orderRepository;
-
     @Autowired
     private OrderDetailService orderDetailService;
 
-    @Autowired
-    private OrderService orderService;
-
     @PostMapping
     OrderDetail newOrderDetail(@RequestBody OrderDetail newOrderDetail) {
-
         Long idProduct = newOrderDetail.getProduct().getIdProduct();
         Long idOrder = newOrderDetail.getOrder().getIdOrder();
 
-        var product = productRepository.findById(idProduct)
-                .orElseThrow(() -> new RuntimeException("Product not found with id " + idProduct));
-
-        var order = orderRepository.findById(idOrder)
-                .orElseThrow(() -> new RuntimeException("Order not found with id " + idOrder));
-
-        // Kiểm tra xem món này đã có trong đơn chưa
-        var existingOrderDetailOpt = orderDetailRepository.findByOrderIdAndProductId(idOrder, idProduct);
-
-        OrderDetail savedOrderDetail;
-
-        if (existingOrderDetailOpt.isPresent()) {
-            // Nếu đã có -> tăng số lượng
-            OrderDetail existingOrderDetail = existingOrderDetailOpt.get();
-            existingOrderDetail.setQuantity(existingOrderDetail.getQuantity() + newOrderDetail.getQuantity());
-
-            // Tính lại subTotal
-            existingOrderDetail.setSubTotal(existingOrderDetail.getQuantity() * product.getPriceProduct());
-
-            savedOrderDetail = orderDetailRepository.save(existingOrderDetail);
-        } else {
-            // Nếu chưa có -> thêm mới
-            newOrderDetail.setProduct(product);
-            newOrderDetail.setOrder(order);
-            newOrderDetail.setSubTotal(product.getPriceProduct() * newOrderDetail.getQuantity());
+        // Cộng dồn nếu món đã có trong đơn, tổng tiền của Order được cập nhật theo phần chênh lệch
+        return orderDetailService.addItem(idOrder, idProduct, newOrderDetail.getQuantity(), newOrderDetail.getNote());
+    }
 
-            savedOrderDetail = orderDetailRepository.save(newOrderDetail);
+    // Thêm/sửa/xóa nhiều món trong giỏ hàng cùng lúc (một transaction, tính tổng tiền một lần)
+    @PostMapping("/order/{orderId}/batch")
+    ResponseEntity<?> applyBatch(@PathVariable Long orderId, @RequestBody CartBatchDTO.Request request) {
+        if (request.getOperations() == null || request.getOperations().isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of("message", "operations không được để trống"));
+        }
+        try {
+            return ResponseEntity.ok(orderDetailService.applyBatch(orderId, request.getOperations()));
+        } catch (RuntimeException e) {
+            String message = e.getMessage() != null ? e.getMessage() : "Thao tác không hợp lệ";
+            return ResponseEntity.badRequest().body(Map.of("message", message));
         }
-
-        // Cập nhật tổng tiền cho Order
-        orderService.updateTotalPrice(idOrder);
-
-        return savedOrderDetail;
     }
 
-
-
     @GetMapping
     List<OrderDetail> getallOrderDetails() {
         return orderDetailRepository.findAll();
@@ -83,51 +56,21 @@ public class ControllerOrderDetail {
 
     @PutMapping("/{id}")
     OrderDetail updateOrderDetail(@PathVariable Long id, @RequestBody OrderDetail newOrderDetail) {
-        return orderDetailRepository.findById(id)
-                .map(orderDetail -> {
-                    // Cập nhật quantity
-                    orderDetail.setQuantity(newOrderDetail.getQuantity());
-                    
-                    // Nếu product thay đổi, cập nhật product
-                    if (newOrderDetail.getProduct() != null && newOrderDetail.getProduct().getIdProduct() != null) {
-                        Long idProduct = newOrderDetail.getProduct().getIdProduct();
-                        var product = productRepository.findById(idProduct)
-                                .orElseThrow(() -> new RuntimeException("Product not found with id " + idProduct));
-                        orderDetail.setProduct(product);
-                    }
-                    
-                    // Tính lại subTotal
-                    orderDetailService.setCalculatedSubTotal(orderDetail);
-                    
-                    // Lưu orderDetail
-                    OrderDetail updatedOrderDetail = orderDetailRepository.save(orderDetail);
-                    
-                    // Cập nhật lại totalPrice cho Order
-                    Long orderId = orderDetail.getOrder().getIdOrder();
-                    orderService.updateTotalPrice(orderId);
-                    
-                    return updatedOrderDetail;
-                })
-                .orElseThrow(() -> new RuntimeException("OrderDetail not found with id " + id));
+        // Nếu product thay đổi thì cập nhật product, subTotal và tổng tiền Order được tính lại
+        Long idProduct = newOrderDetail.getProduct() != null ? newOrderDetail.getProduct().getIdProduct() : null;
+        return orderDetailService.updateItem(id, newOrderDetail.getQuantity(), idProduct);
     }
 
     @DeleteMapping("/{id}")
     String deleteUser(@PathVariable Long id) {
-        if (!orderDetailRepository.existsById(id)) {
-            throw new RuntimeException("OrderDetail not found with id " + id);
-        }
-        
-        // Lấy orderId trước khi xóa
-        OrderDetail orderDetail = orderDetailRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("OrderDetail not found with id " + id));
-        Long orderId = orderDetail.getOrder().getIdOrder();
-        
-        // Xóa orderDetail
-        orderDetailRepository.deleteById(id);
-        
-        // Cập nhật lại totalPrice cho Order sau khi xóa
-        orderService.updateTotalPrice(orderId);
-        
+        orderDetailService.removeItem(id);
         return "OrderDetail " + id + " has been deleted";
     }
+
+    // Đơn hàng đã bị request khác sửa cùng lúc
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    ResponseEntity<?> handleConcurrentUpdate(ObjectOptimisticLockingFailureException e) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("message", "Đơn hàng vừa được cập nhật, vui lòng thử lại"));
+    }
 }
@@ -1,8 +1,16 @@
 package com.example.OrderFoodSystem.controller;
 
 import com.example.OrderFoodSystem.entity.Category;
+import com.example.OrderFoodSystem.service.BestSellerService;
+import com.example.OrderFoodSystem.service.CatalogCacheService;
+import com.example.OrderFoodSystem.service.ImageProcessingService;
+import com.example.OrderFoodSystem.service.MenuPayloadService;
+import com.example.OrderFoodSystem.service.ProductSearchService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -10,13 +18,9 @@ import com.example.OrderFoodSystem.entity.Product;
 import com.example.OrderFoodSystem.repository.ProductRepository;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
 import java.util.List;
-import java.util.UUID;
+import java.util.Map;
 
 @RestController
 @RequestMapping("products")
@@ -25,6 +29,21 @@ public class ControllerProduct {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private BestSellerService bestSellerService;
+
+    @Autowired
+    private CatalogCacheService catalogCacheService;
+
+    @Autowired
+    private MenuPayloadService menuPayloadService;
+
+    @Autowired
+    private ProductSearchService productSearchService;
+
+    @Autowired
+    private ImageProcessingService imageProcessingService;
+
     @PostMapping
     public Product newProduct(
             @RequestParam("nameProduct") String nameProduct,
@@ -45,18 +64,43 @@ public class ControllerProduct {
             product.setCategory(category);
         }
 
-        String imageUrl = saveImage(image);
+        String imageUrl = imageProcessingService.storeOriginal(image);
         product.setImageUrl(imageUrl);
 
-        return productRepository.save(product);
+        Product saved = productRepository.save(product);
+        catalogCacheService.refresh();
+        imageProcessingService.generateVariantsAsync(saved.getIdProduct(), saved.getImageUrl());
+        return saved;
     }
 
     @GetMapping
-    List<Product> getallProducts() {
+    ResponseEntity<byte[]> getallProducts(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         // Chỉ trả về sản phẩm đang active (chưa xóa)
-        return productRepository.findAll().stream()
-                .filter(p -> p.getIsActive() != null && p.getIsActive())
-                .toList();
+        return menuResponse(menuPayloadService.getAllProducts(), ifNoneMatch, acceptEncoding);
+    }
+
+    // Món bán chạy (toàn menu hoặc theo category)
+    @GetMapping("/best-sellers")
+    List<Product> getBestSellers(
+            @RequestParam(value = "categoryId", required = false) Long categoryId,
+            @RequestParam(value = "limit", defaultValue = "5") int limit) {
+        return bestSellerService.getBestSellers(categoryId, Math.max(1, Math.min(limit, BestSellerService.TOP_K)));
+    }
+
+    // Tìm món theo tên, mô tả, category (không phân biệt dấu, chấp nhận gõ sai nhẹ)
+    @GetMapping("/search")
+    List<Product> searchProducts(
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        return productSearchService.search(query, limit);
+    }
+
+    // Số liệu của catalog cache (hit ratio, thời gian dựng lại)
+    @GetMapping("/cache-stats")
+    Map<String, Object> getCacheStats() {
+        return catalogCacheService.getStats();
     }
 
     @GetMapping("/all-including-deleted")
@@ -67,12 +111,49 @@ public class ControllerProduct {
 
     // Lấy sản phẩm theo category (chỉ sản phẩm active)
     @GetMapping("/category/{categoryId}")
-    List<Product> getProductsByCategory(@PathVariable Long categoryId) {
-        List<Product> allProducts = productRepository.findAll();
-        return allProducts.stream()
-                .filter(p -> p.getIsActive() != null && p.getIsActive())
-                .filter(p -> p.getCategory() != null && categoryId.equals(p.getCategory().getIdCategory()))
-                .toList();
+    ResponseEntity<byte[]> getProductsByCategory(
+            @PathVariable Long categoryId,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return menuResponse(menuPayloadService.getProductsByCategory(categoryId), ifNoneMatch, acceptEncoding);
+    }
+
+    // Trả JSON đã serialize sẵn: 304 nếu client đã có đúng bản, gzip nếu client chấp nhận
+    private ResponseEntity<byte[]> menuResponse(MenuPayloadService.Payload payload, String ifNoneMatch,
+            String acceptEncoding) {
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String etag = gzip ? payload.getGzipEtag() : payload.getEtag();
+
+        if (payload.matches(ifNoneMatch)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(payload.getGzip());
+        }
+        return builder.body(payload.getJson());
+    }
+
+    private boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                return parts.length == 1 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
     }
 
     @PutMapping("/{id}")
@@ -84,7 +165,7 @@ public class ControllerProduct {
             @RequestParam(value = "idCategory", required = false) Long idCategory,
             @RequestParam(value = "image", required = false) MultipartFile image) throws IOException {
 
-        return productRepository.findById(id)
+        Product updated = productRepository.findById(id)
                 .map(product -> {
                     product.setNameProduct(nameProduct);
                     product.setDescriptionProduct(descriptionProduct);
@@ -98,8 +179,14 @@ public class ControllerProduct {
 
                     if (image != null && !image.isEmpty()) {
                         try {
-                            String imageUrl = saveImage(image);
-                            product.setImageUrl(imageUrl);
+                            String imageUrl = imageProcessingService.storeOriginal(image);
+                            if (!imageUrl.equals(product.getImageUrl())) {
+                                // Bản thu nhỏ của ảnh cũ không còn đúng, dùng ảnh gốc cho đến khi resize xong
+                                product.setImageUrl(imageUrl);
+                                product.setImageThumbUrl(null);
+                                product.setImageCardUrl(null);
+                                product.setImageDetailUrl(null);
+                            }
                         } catch (IOException e) {
                             throw new RuntimeException("Error saving image", e);
                         }
@@ -108,6 +195,11 @@ public class ControllerProduct {
                     return productRepository.save(product);
                 })
                 .orElseThrow(() -> new RuntimeException("Product not found with id " + id));
+        catalogCacheService.refresh();
+        if (updated.getImageThumbUrl() == null) {
+            imageProcessingService.generateVariantsAsync(updated.getIdProduct(), updated.getImageUrl());
+        }
+        return updated;
     }
 
     @DeleteMapping("/{id}")
@@ -117,6 +209,7 @@ public class ControllerProduct {
                     // Soft delete: Chỉ đánh dấu là inactive thay vì xóa thật
                     product.setIsActive(false);
                     productRepository.save(product);
+                    catalogCacheService.refresh();
                     return ResponseEntity.ok("Món ăn đã được xóa. Lịch sử đơn hàng vẫn được giữ nguyên.");
                 })
                 .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -130,38 +223,10 @@ public class ControllerProduct {
                 .map(product -> {
                     product.setIsActive(true);
                     productRepository.save(product);
+                    catalogCacheService.refresh();
                     return ResponseEntity.ok("Món ăn đã được khôi phục thành công.");
                 })
                 .orElse(ResponseEntity.status(HttpStatus.NOT_FOUND)
                         .body("Product not found with id " + id));
     }
-
-    private String saveImage(MultipartFile image) throws IOException {
-        if (image == null || image.isEmpty()) {
-            return null;
-        }
-
-        String contentType = image.getContentType();
-        if (contentType == null || !contentType.startsWith("image/")) {
-            throw new RuntimeException("Only image files are allowed");
-        }
-
-        File uploadDir = new File("uploads");
-        if (!uploadDir.exists()) {
-            uploadDir.mkdirs();
-        }
-
-        String originalFilename = image.getOriginalFilename();
-        String extension = "";
-        if (originalFilename != null && originalFilename.contains(".")) {
-            extension = originalFilename.substring(originalFilename.lastIndexOf("."));
-        }
-
-        String newFilename = UUID.randomUUID().toString() + extension;
-
-        Path path = Paths.get("uploads", newFilename);
-        Files.copy(image.getInputStream(), path);
-
-        return "http://localhost:8080/uploads/" + newFilename;
-    }
 }
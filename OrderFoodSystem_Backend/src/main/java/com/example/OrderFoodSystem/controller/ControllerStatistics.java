@@ -0,0 +1,83 @@
+package com.example.OrderFoodSystem.controller;
+
+import com.example.OrderFoodSystem.service.SalesRollupService;
+import com.example.OrderFoodSystem.service.StatisticsService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/statistics")
+@CrossOrigin("*")
+public class ControllerStatistics {
+
+    @Autowired
+    private StatisticsService statisticsService;
+
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    // Dữ liệu tổng hợp cho trang thống kê (today, thisWeek, thisMonth, all)
+    @GetMapping
+    public ResponseEntity<?> getDashboard(@RequestParam(defaultValue = "today") String range) {
+        try {
+            return ResponseEntity.ok(statisticsService.getDashboard(range));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // Doanh thu theo giờ/ngày/tuần/tháng
+    @GetMapping("/revenue")
+    public ResponseEntity<?> getRevenue(
+            @RequestParam(defaultValue = "day") String granularity,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        try {
+            return ResponseEntity.ok(statisticsService.getRevenue(
+                    StatisticsService.Granularity.from(granularity), from, to));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", e.getMessage()));
+        }
+    }
+
+    // Số đơn hàng theo từng trạng thái
+    @GetMapping("/status")
+    public Map<String, Long> getStatusCounts(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return statisticsService.getStatusCounts(from, to);
+    }
+
+    // Món bán chạy theo số lượng
+    @GetMapping("/top-products")
+    public ResponseEntity<?> getTopProducts(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) Integer limit) {
+        return ResponseEntity.ok(statisticsService.getTopProducts(from, to, limit));
+    }
+
+    // Đối chiếu bảng daily_sales_rollup với orders trong [from, to) và dựng lại những ngày bị lệch
+    @PostMapping("/rollup/reconcile")
+    public ResponseEntity<?> reconcileRollup(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (!from.isBefore(to)) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("message", "from phải trước to"));
+        }
+        List<LocalDate> rebuiltDays = salesRollupService.reconcile(from, to);
+        statisticsService.invalidate();
+        return ResponseEntity.ok(Map.of("rebuiltDays", rebuiltDays));
+    }
+}
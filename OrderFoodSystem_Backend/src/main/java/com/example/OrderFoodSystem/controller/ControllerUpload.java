@@ -0,0 +1,196 @@
+package com.example.OrderFoodSystem.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.bind.annotation.CrossOrigin;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Trả file ảnh trong uploads/ (kho ảnh local).
+ *
+ * File tên theo hash nội dung không bao giờ đổi nên được cache 1 năm (immutable).
+ * Nội dung được gửi bằng sendfile của Tomcat nếu connector hỗ trợ (không chiếm thread
+ * request và không copy qua heap), nếu không thì dùng FileChannel.transferTo.
+ * Hỗ trợ Range một đoạn và bản nén sẵn (.br, .gz) đặt cạnh file gốc.
+ */
+@Controller
+@CrossOrigin("*")
+public class ControllerUpload {
+
+    private static final Pattern SAFE_NAME = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]*");
+    private static final Pattern HASHED_NAME = Pattern.compile("([0-9a-f]{64})(-[a-z]+)?\\.[a-z0-9]+");
+    private static final Pattern SINGLE_RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    private static final String IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String REVALIDATE = "public, max-age=0, must-revalidate";
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private final Path uploadDir;
+
+    public ControllerUpload(@Value("${image.store.local.dir:uploads}") String dir) {
+        this.uploadDir = Paths.get(dir).toAbsolutePath().normalize();
+    }
+
+    @GetMapping("/uploads/{filename:.+}")
+    public void serve(@PathVariable String filename, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (!SAFE_NAME.matcher(filename).matches()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        Path file = uploadDir.resolve(filename).normalize();
+        if (!file.startsWith(uploadDir) || !Files.isRegularFile(file)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        Matcher hashed = HASHED_NAME.matcher(filename);
+        boolean immutable = hashed.matches();
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        String etag = immutable
+                ? "\"" + hashed.group(1) + (hashed.group(2) != null ? hashed.group(2) : "") + "\""
+                : "\"" + Long.toHexString(Files.size(file)) + "-" + Long.toHexString(lastModified) + "\"";
+
+        // Bản nén sẵn chỉ dùng khi trả cả file
+        String rangeHeader = request.getHeader(HttpHeaders.RANGE);
+        String encoding = null;
+        if (rangeHeader == null) {
+            encoding = precompressedEncoding(file, request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, immutable ? IMMUTABLE : REVALIDATE);
+        response.setHeader(HttpHeaders.ETAG, encoding == null ? etag : withSuffix(etag, encoding));
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        response.setContentType(MediaTypeFactory.getMediaType(filename)
+                .map(Object::toString)
+                .orElse("application/octet-stream"));
+
+        if (notModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        if (encoding != null) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+            file = file.resolveSibling(file.getFileName() + extensionOf(encoding));
+        }
+
+        long length = Files.size(file);
+        long start = 0;
+        long end = length - 1;
+        if (rangeHeader != null) {
+            Matcher range = SINGLE_RANGE.matcher(rangeHeader.trim());
+            // Nhiều đoạn (a-b,c-d) ít gặp: bỏ qua Range và trả cả file
+            if (range.matches() && !(range.group(1).isEmpty() && range.group(2).isEmpty())) {
+                if (range.group(1).isEmpty()) {
+                    // bytes=-N: N byte cuối
+                    start = Math.max(0, length - Long.parseLong(range.group(2)));
+                } else {
+                    start = Long.parseLong(range.group(1));
+                    if (!range.group(2).isEmpty()) {
+                        end = Math.min(end, Long.parseLong(range.group(2)));
+                    }
+                }
+                if (start > end || start >= length) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        long count = end - start + 1;
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count <= 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, end + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            while (position <= end) {
+                position += channel.transferTo(position, end + 1 - position, out);
+            }
+        }
+    }
+
+    private boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                String candidate = tag.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                // Chấp nhận cả ETag của bản nén sẵn
+                if (candidate.equals("*") || candidate.equals(etag)
+                        || candidate.equals(withSuffix(etag, "br")) || candidate.equals(withSuffix(etag, "gzip"))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince;
+        try {
+            ifModifiedSince = request.getDateHeader(HttpHeaders.IF_MODIFIED_SINCE);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        // Header HTTP chỉ chính xác tới giây
+        return ifModifiedSince != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    // Bản .br/.gz nằm cạnh file gốc, nếu client chấp nhận
+    private String precompressedEncoding(Path file, String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        String accepted = acceptEncoding.toLowerCase();
+        for (String encoding : new String[] {"br", "gzip"}) {
+            if (accepted.contains(encoding)
+                    && Files.isRegularFile(file.resolveSibling(file.getFileName() + extensionOf(encoding)))) {
+                return encoding;
+            }
+        }
+        return null;
+    }
+
+    private static String extensionOf(String encoding) {
+        return "br".equals(encoding) ? ".br" : ".gz";
+    }
+
+    private static String withSuffix(String etag, String encoding) {
+        return etag.substring(0, etag.length() - 1) + "-" + encoding + "\"";
+    }
+}
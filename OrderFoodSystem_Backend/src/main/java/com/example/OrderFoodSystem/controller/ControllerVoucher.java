@@ -2,12 +2,13 @@ package com.example.OrderFoodSystem.controller;
 
 import com.example.OrderFoodSystem.entity.Voucher;
 import com.example.OrderFoodSystem.repository.VoucherRepository;
+import com.example.OrderFoodSystem.service.VoucherCacheService;
+import com.example.OrderFoodSystem.service.VoucherRedemptionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.time.LocalDate;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,6 +22,12 @@ public class ControllerVoucher {
     @Autowired
     private VoucherRepository voucherRepository;
 
+    @Autowired
+    private VoucherRedemptionService voucherRedemptionService;
+
+    @Autowired
+    private VoucherCacheService voucherCacheService;
+
     // Get all vouchers
     @GetMapping
     public ResponseEntity<List<Voucher>> getAllVouchers() {
@@ -43,7 +50,7 @@ public class ControllerVoucher {
     // Get all valid vouchers
     @GetMapping("/valid")
     public ResponseEntity<List<Voucher>> getValidVouchers() {
-        List<Voucher> vouchers = voucherRepository.findValidVouchers(LocalDate.now());
+        List<Voucher> vouchers = voucherCacheService.findValidVouchers();
         return ResponseEntity.ok(vouchers);
     }
 
@@ -60,7 +67,7 @@ public class ControllerVoucher {
         String code = (String) request.get("code");
         Double orderValue = Double.parseDouble(request.get("orderValue").toString());
 
-        Optional<Voucher> voucherOpt = voucherRepository.findByCode(code);
+        Optional<Voucher> voucherOpt = voucherCacheService.findByCode(code);
         
         if (voucherOpt.isEmpty()) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND)
@@ -118,6 +125,7 @@ public class ControllerVoucher {
             }
 
             Voucher savedVoucher = voucherRepository.save(voucher);
+            voucherCacheService.invalidate(savedVoucher.getCode());
             return ResponseEntity.status(HttpStatus.CREATED).body(savedVoucher);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -152,6 +160,7 @@ public class ControllerVoucher {
             }
 
             // Update fields
+            voucherCacheService.invalidate(voucher.getCode());
             voucher.setCode(voucherDetails.getCode());
             voucher.setDiscountType(voucherDetails.getDiscountType());
             voucher.setDiscountValue(voucherDetails.getDiscountValue());
@@ -163,6 +172,7 @@ public class ControllerVoucher {
             voucher.setStatus(voucherDetails.getStatus());
 
             Voucher updatedVoucher = voucherRepository.save(voucher);
+            voucherCacheService.invalidate(updatedVoucher.getCode());
             return ResponseEntity.ok(updatedVoucher);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -182,6 +192,7 @@ public class ControllerVoucher {
             }
 
             voucherRepository.deleteById(id);
+            voucherCacheService.invalidate(voucher.get().getCode());
             return ResponseEntity.ok(Map.of("message", "Xóa voucher thành công"));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -203,6 +214,7 @@ public class ControllerVoucher {
             Voucher voucher = voucherOpt.get();
             voucher.setStatus(!voucher.getStatus());
             voucherRepository.save(voucher);
+            voucherCacheService.invalidate(voucher.getCode());
 
             String message = voucher.getStatus() ? "Kích hoạt voucher thành công" : "Vô hiệu hóa voucher thành công";
             return ResponseEntity.ok(Map.of("message", message, "status", voucher.getStatus()));
@@ -223,17 +235,14 @@ public class ControllerVoucher {
                         .body(Map.of("message", "Không tìm thấy voucher"));
             }
 
-            Voucher voucher = voucherOpt.get();
-
-            if (!voucher.isValid()) {
+            // Trừ quantity có điều kiện để không dùng quá số lượng khi có nhiều request đồng thời
+            if (!voucherRedemptionService.take(id)) {
                 return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                         .body(Map.of("message", "Voucher không hợp lệ"));
             }
 
-            voucher.setQuantity(voucher.getQuantity() - 1);
-            voucherRepository.save(voucher);
-
-            return ResponseEntity.ok(Map.of("message", "Áp dụng voucher thành công", "remainingQuantity", voucher.getQuantity()));
+            Integer remainingQuantity = voucherRepository.findById(id).map(Voucher::getQuantity).orElse(0);
+            return ResponseEntity.ok(Map.of("message", "Áp dụng voucher thành công", "remainingQuantity", remainingQuantity));
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("message", "Lỗi khi áp dụng voucher: " + e.getMessage()));
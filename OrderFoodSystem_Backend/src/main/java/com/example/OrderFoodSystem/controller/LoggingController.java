@@ -0,0 +1,86 @@
+package com.example.OrderFoodSystem.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggerConfiguration;
+import org.springframework.boot.logging.LoggingSystem;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Xem/đổi mức log lúc chạy, không cần khởi động lại (vd: bật DEBUG cho
+ * com.example.OrderFoodSystem.controller.PaymentController khi điều tra một giao dịch).
+ *
+ * Chỉ có khi logging.runtime-levels.enabled=true (mặc định tắt) và chỉ nhận request từ chính máy chủ.
+ * Không mở CORS: trình duyệt của người dùng không được gọi API này.
+ */
+@RestController
+@RequestMapping("/api/logging")
+@ConditionalOnProperty(name = "logging.runtime-levels.enabled", havingValue = "true")
+public class LoggingController {
+
+    @Autowired
+    private LoggingSystem loggingSystem;
+
+    @GetMapping("/levels/{name}")
+    public ResponseEntity<?> getLevel(@PathVariable String name, HttpServletRequest request) {
+        if (!isLocal(request)) {
+            return forbidden();
+        }
+        LoggerConfiguration configuration = loggingSystem.getLoggerConfiguration(name);
+        if (configuration == null) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("message", "Không tìm thấy logger " + name));
+        }
+        return ResponseEntity.ok(levelsOf(configuration));
+    }
+
+    // Bỏ trống level để trả logger về mức kế thừa từ logger cha
+    @PutMapping("/levels/{name}")
+    public ResponseEntity<?> setLevel(@PathVariable String name, @RequestParam(required = false) String level,
+                                      HttpServletRequest request) {
+        if (!isLocal(request)) {
+            return forbidden();
+        }
+        LogLevel logLevel;
+        try {
+            logLevel = level == null || level.isBlank() ? null : LogLevel.valueOf(level.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                    .body(Map.of("message", "Mức log không hợp lệ: " + level));
+        }
+        loggingSystem.setLogLevel(name, logLevel);
+        return ResponseEntity.ok(levelsOf(loggingSystem.getLoggerConfiguration(name)));
+    }
+
+    // Sau reverse proxy cùng máy mọi request đều là loopback: khi đó proxy phải chặn /api/logging
+    private static boolean isLocal(HttpServletRequest request) {
+        try {
+            return InetAddress.getByName(request.getRemoteAddr()).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+
+    private static ResponseEntity<?> forbidden() {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(Map.of("message", "Chỉ được đổi mức log từ chính máy chủ"));
+    }
+
+    private static Map<String, Object> levelsOf(LoggerConfiguration configuration) {
+        Map<String, Object> levels = new LinkedHashMap<>();
+        levels.put("name", configuration.getName());
+        levels.put("configuredLevel", configuration.getConfiguredLevel());
+        levels.put("effectiveLevel", configuration.getEffectiveLevel());
+        return levels;
+    }
+}
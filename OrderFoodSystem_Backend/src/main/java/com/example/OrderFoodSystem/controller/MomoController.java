@@ -1,8 +1,9 @@
 package com.example.OrderFoodSystem.controller;
 
-import com.example.OrderFoodSystem.entity.Order;
-import com.example.OrderFoodSystem.repository.OrderRepository;
 import com.example.OrderFoodSystem.service.MomoService;
+import com.example.OrderFoodSystem.service.PaymentEventService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -13,18 +14,20 @@ import java.util.Map;
 @CrossOrigin("*")
 public class MomoController {
 
+    private static final Logger log = LoggerFactory.getLogger(MomoController.class);
+
     @Autowired
     private MomoService momoService;
 
     @Autowired
-    private OrderRepository orderRepository;
+    private PaymentEventService paymentEventService;
 
     @PostMapping("/momo/callback")
     public ResponseEntity<Void> momoCallback(@RequestBody Map<String, String> body) {
         try {
             // 1. Verify Signature
             if (!momoService.verifySignature(body)) {
-                System.err.println("MoMo IPN Signature verification failed!");
+                log.warn("MoMo IPN: invalid signature for orderId={}", body.get("orderId"));
                 return ResponseEntity.noContent().build(); // Always return 204 to MoMo
             }
 
@@ -32,35 +35,32 @@ public class MomoController {
             int resultCode = Integer.parseInt(body.get("resultCode"));
 
             // 2. Log Result
-            System.out.println("MoMo IPN received for Order ID: " + orderIdStr);
-            System.out.println("Result Code: " + resultCode);
-            System.out.println("Message: " + body.get("message"));
+            log.debug("MoMo IPN: orderId={} resultCode={} message={}", orderIdStr, resultCode, body.get("message"));
 
             if (resultCode != 0) {
-                System.err.println("Payment failed for order: " + orderIdStr);
+                log.info("MoMo IPN: orderId={} failed with resultCode={}", orderIdStr, resultCode);
                 return ResponseEntity.noContent().build();
             }
 
-            // 3. Update Order Status (Idempotent)
+            // 3. Update Order Status (mỗi transId chỉ áp dụng một lần)
             Long orderId = Long.parseLong(orderIdStr.split("_")[0]);
-            Order order = orderRepository.findById(orderId).orElse(null);
-
-            if (order != null) {
-                if ("PAID".equalsIgnoreCase(order.getPaymentStatus())) {
-                    System.out.println("Order " + orderId + " is already marked as PAID. Ignoring duplicate IPN.");
-                } else {
-                    order.setPaymentStatus("PAID");
-                    order.setStatus("confirmed");
-                    orderRepository.save(order);
-                    System.out.println("Order " + orderId + " updated to PAID successfully.");
-                }
-            }
+            PaymentEventService.Result result = paymentEventService.apply(new PaymentEventService.Callback(
+                    PaymentEventService.MOMO, body.get("transId"), orderIdStr, orderId,
+                    Long.parseLong(body.get("amount")), String.valueOf(resultCode), true));
+            log.info("MoMo IPN: order={} orderId={} transId={} result={}",
+                    orderId, orderIdStr, body.get("transId"), result);
 
         } catch (Exception e) {
-            System.err.println("Error processing MoMo IPN: " + e.getMessage());
+            log.error("MoMo IPN: cannot process orderId={}", body.get("orderId"), e);
         }
 
         // 4. Always return HTTP 204 No Content to acknowledge
         return ResponseEntity.noContent().build();
     }
+
+    // Trạng thái circuit breaker/bulkhead của client MoMo
+    @GetMapping("/momo/stats")
+    public Map<String, Object> momoStats() {
+        return momoService.getStats();
+    }
 }
@@ -1,14 +1,17 @@
 package com.example.OrderFoodSystem.controller;
 
+import com.example.OrderFoodSystem.entity.Order;
+import com.example.OrderFoodSystem.service.PaymentEventService;
 import com.example.OrderFoodSystem.service.VNPayService;
 import com.example.OrderFoodSystem.service.OrderService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.servlet.http.HttpServletRequest;
-import java.io.UnsupportedEncodingException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -17,12 +20,17 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class PaymentController {
 
+    private static final Logger log = LoggerFactory.getLogger(PaymentController.class);
+
     @Autowired
     private VNPayService vnPayService;
     
     @Autowired
     private OrderService orderService;
 
+    @Autowired
+    private PaymentEventService paymentEventService;
+
     @PostMapping("/vnpay/create")
     public ResponseEntity<String> createPayment(
             @RequestParam(value = "amount", defaultValue = "100000") long amount,
@@ -30,16 +38,14 @@ public class PaymentController {
             @RequestParam(value = "orderId", required = true) String orderId,
             HttpServletRequest request) {
         try {
-            // Cập nhật paymentMethod của order thành VNPAY
+            // Cập nhật paymentMethod của order thành VNPAY và lưu mã giao dịch để đối soát
             Long orderIdLong = Long.parseLong(orderId);
-            orderService.updatePaymentMethod(orderIdLong, "VNPAY");
+            Order order = orderService.recordPaymentRequest(orderIdLong, "VNPAY");
             
             String ipAddress = getIpAddress(request);
-            String paymentUrl = vnPayService.createPaymentUrl(amount, orderInfo, ipAddress, orderId);
+            String paymentUrl = vnPayService.createPaymentUrl(amount, orderInfo, ipAddress, order.getPaymentRef(),
+                    order.getPaymentRequestedAt());
             return ResponseEntity.ok(paymentUrl);
-        } catch (UnsupportedEncodingException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
-                    .body("Error creating payment URL: " + e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body("Error: " + e.getMessage());
@@ -49,13 +55,9 @@ public class PaymentController {
     @GetMapping("/vnpay/return")
     public ResponseEntity<Map<String, Object>> paymentReturn(@RequestParam Map<String, String> params) {
         Map<String, Object> response = new HashMap<>();
-        
-        System.out.println("=== VNPay Return URL ===");
-        System.out.println("All params: " + params);
-        
+
         boolean isValid = vnPayService.verifyPayment(params);
-        System.out.println("Signature valid: " + isValid);
-        
+
         if (isValid) {
             String responseCode = params.get("vnp_ResponseCode");
             String transactionNo = params.get("vnp_TransactionNo");
@@ -63,21 +65,25 @@ public class PaymentController {
             String amount = params.get("vnp_Amount");
             String bankCode = params.get("vnp_BankCode");
             String payDate = params.get("vnp_PayDate");
-            
-            System.out.println("Response Code: " + responseCode);
-            System.out.println("TxnRef: " + txnRef);
-            
+
             if ("00".equals(responseCode)) {
                 // Thanh toán thành công - Cập nhật trạng thái đơn hàng
                 try {
-                    // Parse orderId từ txnRef (format: orderId_timestamp hoặc chỉ orderId)
-                    String orderIdStr = txnRef.contains("_") ? txnRef.split("_")[0] : txnRef;
-                    Long orderId = Long.parseLong(orderIdStr);
-                    
-                    System.out.println("=== Confirming payment for Order #" + orderId + " ===");
-                    orderService.confirmPayment(orderId);
-                    System.out.println(" Order #" + orderId + " payment confirmed successfully!");
-                    
+                    PaymentEventService.Callback callback = vnpayCallback(params);
+                    Long orderId = callback.idOrder();
+
+                    // IPN có thể đã xác nhận giao dịch này trước, khi đó DUPLICATE vẫn là thành công
+                    PaymentEventService.Result result = paymentEventService.apply(callback);
+                    log.info("VNPay return: order={} txnRef={} transactionNo={} result={}",
+                            orderId, txnRef, transactionNo, result);
+                    if (result == PaymentEventService.Result.ORDER_NOT_FOUND
+                            || result == PaymentEventService.Result.INVALID_AMOUNT) {
+                        response.put("status", "error");
+                        response.put("message", result == PaymentEventService.Result.ORDER_NOT_FOUND
+                                ? "Không tìm thấy đơn hàng" : "Số tiền thanh toán không khớp với đơn hàng");
+                        return ResponseEntity.ok(response);
+                    }
+
                     response.put("status", "success");
                     response.put("message", "Thanh toán thành công");
                     response.put("orderId", orderId);
@@ -87,26 +93,23 @@ public class PaymentController {
                     response.put("bankCode", bankCode);
                     response.put("payDate", payDate);
                 } catch (NumberFormatException e) {
-                    System.err.println(" Error parsing orderId from txnRef: " + txnRef);
-                    e.printStackTrace();
+                    log.warn("VNPay return: cannot parse orderId from txnRef={}", txnRef);
                     response.put("status", "error");
                     response.put("message", "Lỗi parse orderId: " + e.getMessage());
                 } catch (Exception e) {
-                    System.err.println(" Error updating order: " + e.getMessage());
-                    e.printStackTrace();
+                    log.error("VNPay return: cannot update order for txnRef={}", txnRef, e);
                     response.put("status", "error");
                     response.put("message", "Lỗi cập nhật đơn hàng: " + e.getMessage());
                 }
             } else {
                 // Thanh toán thất bại
                 try {
-                    String orderIdStr = txnRef.contains("_") ? txnRef.split("_")[0] : txnRef;
-                    Long orderId = Long.parseLong(orderIdStr);
-                    orderService.failPayment(orderId, "VNPay response code: " + responseCode);
-                    System.out.println("Order #" + orderId + " payment failed with code: " + responseCode);
+                    PaymentEventService.Callback callback = vnpayCallback(params);
+                    PaymentEventService.Result result = paymentEventService.apply(callback);
+                    log.info("VNPay return: order={} txnRef={} failed with code={} result={}",
+                            callback.idOrder(), txnRef, responseCode, result);
                 } catch (Exception e) {
-                    System.err.println("Error updating failed order: " + e.getMessage());
-                    e.printStackTrace();
+                    log.error("VNPay return: cannot mark txnRef={} as failed", txnRef, e);
                 }
                 
                 response.put("status", "failed");
@@ -114,12 +117,11 @@ public class PaymentController {
                 response.put("responseCode", responseCode);
             }
         } else {
-            System.err.println(" Invalid signature!");
+            log.warn("VNPay return: invalid signature for txnRef={}", params.get("vnp_TxnRef"));
             response.put("status", "error");
             response.put("message", "Chữ ký không hợp lệ");
         }
-        
-        System.out.println("=== Response: " + response + " ===");
+
         return ResponseEntity.ok(response);
     }
 
@@ -129,39 +131,70 @@ public class PaymentController {
         
         boolean isValid = vnPayService.verifyPayment(params);
         
-        if (isValid) {
-            String responseCode = params.get("vnp_ResponseCode");
-            String transactionNo = params.get("vnp_TransactionNo");
-            String txnRef = params.get("vnp_TxnRef");
-            String amount = params.get("vnp_Amount");
-            
-            if ("00".equals(responseCode)) {
-                // Kiểm tra đơn hàng tồn tại trong DB
-                // Kiểm tra số tiền thanh toán có đúng không
-                // Kiểm tra trạng thái đơn hàng (chưa được xử lý)
-                // Cập nhật trạng thái đơn hàng thành công
-                
-                // TODO: Implement logic cập nhật database
-                System.out.println("IPN: Payment success for order " + txnRef);
-                System.out.println("Transaction No: " + transactionNo);
-                System.out.println("Amount: " + Long.parseLong(amount) / 100);
-                
-                response.put("RspCode", "00");
-                response.put("Message", "Confirm Success");
-            } else {
-                // Thanh toán thất bại, cập nhật trạng thái đơn hàng
-                System.out.println("IPN: Payment failed for order " + txnRef);
-                response.put("RspCode", "00");
-                response.put("Message", "Confirm Success");
-            }
-        } else {
+        if (!isValid) {
+            log.warn("VNPay IPN: invalid signature for txnRef={}", params.get("vnp_TxnRef"));
             response.put("RspCode", "97");
             response.put("Message", "Invalid Signature");
+            return ResponseEntity.ok(response);
         }
-        
+
+        try {
+            PaymentEventService.Callback callback;
+            try {
+                callback = vnpayCallback(params);
+            } catch (RuntimeException e) {
+                response.put("RspCode", "01");
+                response.put("Message", "Order not found");
+                return ResponseEntity.ok(response);
+            }
+
+            // Kiểm tra đơn hàng, số tiền và giao dịch đã xử lý chưa, rồi cập nhật đơn hàng đúng một lần
+            PaymentEventService.Result result = paymentEventService.apply(callback);
+            log.info("VNPay IPN: txnRef={} transactionNo={} code={} result={}",
+                    callback.orderRef(), callback.transactionId(), callback.resultCode(), result);
+            switch (result) {
+                case ORDER_NOT_FOUND -> {
+                    response.put("RspCode", "01");
+                    response.put("Message", "Order not found");
+                }
+                case INVALID_AMOUNT -> {
+                    response.put("RspCode", "04");
+                    response.put("Message", "Invalid amount");
+                }
+                case DUPLICATE -> {
+                    response.put("RspCode", "02");
+                    response.put("Message", "Order already confirmed");
+                }
+                default -> {
+                    response.put("RspCode", "00");
+                    response.put("Message", "Confirm Success");
+                }
+            }
+        } catch (Exception e) {
+            log.error("VNPay IPN: cannot process txnRef={}", params.get("vnp_TxnRef"), e);
+            response.put("RspCode", "99");
+            response.put("Message", "Unknown error");
+        }
+
         return ResponseEntity.ok(response);
     }
 
+    // Thống kê callback đã áp dụng/trùng lặp
+    @GetMapping("/events/stats")
+    public Map<String, Object> paymentEventStats() {
+        return paymentEventService.getStats();
+    }
+
+    // Parse orderId từ txnRef (format: orderId_timestamp hoặc chỉ orderId), vnp_Amount nhân 100
+    private PaymentEventService.Callback vnpayCallback(Map<String, String> params) {
+        String txnRef = params.get("vnp_TxnRef");
+        String responseCode = params.get("vnp_ResponseCode");
+        Long orderId = Long.parseLong(txnRef.contains("_") ? txnRef.split("_")[0] : txnRef);
+        String amount = params.get("vnp_Amount");
+        return new PaymentEventService.Callback(PaymentEventService.VNPAY, params.get("vnp_TransactionNo"), txnRef,
+                orderId, amount != null ? Long.parseLong(amount) / 100 : null, responseCode, "00".equals(responseCode));
+    }
+
     private String getIpAddress(HttpServletRequest request) {
         String ipAddress = request.getHeader("X-FORWARDED-FOR");
         if (ipAddress == null || ipAddress.isEmpty()) {
@@ -0,0 +1,79 @@
+package com.example.OrderFoodSystem.dto;
+
+import java.util.List;
+
+/**
+ * Nhiều thao tác thêm/sửa/xóa món trong giỏ hàng, áp dụng trong một request
+ */
+public class CartBatchDTO {
+
+    public static final String OP_ADD = "add";
+    public static final String OP_SET = "set";
+    public static final String OP_REMOVE = "remove";
+
+    public static class Request {
+        private List<Operation> operations;
+
+        public List<Operation> getOperations() {
+            return operations;
+        }
+
+        public void setOperations(List<Operation> operations) {
+            this.operations = operations;
+        }
+    }
+
+    /**
+     * add: cộng thêm quantity (tạo dòng mới nếu chưa có món)
+     * set: đặt quantity (0 = xóa món)
+     * remove: xóa món khỏi giỏ
+     * Món được xác định bằng idProduct hoặc idOrderDetail.
+     */
+    public static class Operation {
+        private String op;
+        private Long idProduct;
+        private Long idOrderDetail;
+        private Integer quantity;
+        private String note;
+
+        public String getOp() {
+            return op;
+        }
+
+        public void setOp(String op) {
+            this.op = op;
+        }
+
+        public Long getIdProduct() {
+            return idProduct;
+        }
+
+        public void setIdProduct(Long idProduct) {
+            this.idProduct = idProduct;
+        }
+
+        public Long getIdOrderDetail() {
+            return idOrderDetail;
+        }
+
+        public void setIdOrderDetail(Long idOrderDetail) {
+            this.idOrderDetail = idOrderDetail;
+        }
+
+        public Integer getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(Integer quantity) {
+            this.quantity = quantity;
+        }
+
+        public String getNote() {
+            return note;
+        }
+
+        public void setNote(String note) {
+            this.note = note;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.example.OrderFoodSystem.dto;
+
+import com.example.OrderFoodSystem.entity.Product;
+
+import java.util.List;
+
+/**
+ * Giỏ hàng của customer, giá tính theo catalog hiện tại
+ */
+public class CartDTO {
+
+    private Long idCustomer;
+    private List<Item> items;
+    private Double totalPrice;
+    private int itemCount;
+
+    public CartDTO(Long idCustomer, List<Item> items) {
+        this.idCustomer = idCustomer;
+        this.items = items;
+        this.totalPrice = items.stream().mapToDouble(Item::getSubTotal).sum();
+        this.itemCount = items.stream().mapToInt(Item::getQuantity).sum();
+    }
+
+    public Long getIdCustomer() {
+        return idCustomer;
+    }
+
+    public List<Item> getItems() {
+        return items;
+    }
+
+    public Double getTotalPrice() {
+        return totalPrice;
+    }
+
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    public static class Item {
+        private Long idProduct;
+        private Product product;
+        private int quantity;
+        private String note;
+        private Double subTotal;
+
+        public Item(Product product, int quantity, String note) {
+            this.idProduct = product.getIdProduct();
+            this.product = product;
+            this.quantity = quantity;
+            this.note = note;
+            this.subTotal = quantity * product.getPriceProduct();
+        }
+
+        public Long getIdProduct() {
+            return idProduct;
+        }
+
+        public Product getProduct() {
+            return product;
+        }
+
+        public int getQuantity() {
+            return quantity;
+        }
+
+        public String getNote() {
+            return note;
+        }
+
+        public Double getSubTotal() {
+            return subTotal;
+        }
+    }
+
+    /**
+     * Body của API thêm/sửa món: idProduct chỉ cần khi thêm, note null = giữ ghi chú cũ
+     */
+    public static class ItemRequest {
+        private Long idProduct;
+        private Integer quantity;
+        private String note;
+
+        public Long getIdProduct() {
+            return idProduct;
+        }
+
+        public void setIdProduct(Long idProduct) {
+            this.idProduct = idProduct;
+        }
+
+        public Integer getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(Integer quantity) {
+            this.quantity = quantity;
+        }
+
+        public String getNote() {
+            return note;
+        }
+
+        public void setNote(String note) {
+            this.note = note;
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.OrderFoodSystem.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Thông tin rút gọn của đơn hàng dùng cho danh sách (không kèm orderDetails)
+ */
+public class OrderSummaryDTO {
+    private Long idOrder;
+    private LocalDateTime orderDate;
+    private Double totalPrice;
+    private String status;
+    private String paymentMethod;
+    private String paymentStatus;
+    private Long idCustomer;
+    private String nameCustomer;
+
+    public OrderSummaryDTO() {
+    }
+
+    public OrderSummaryDTO(Long idOrder, LocalDateTime orderDate, Double totalPrice, String status,
+                           String paymentMethod, String paymentStatus, Long idCustomer, String nameCustomer) {
+        this.idOrder = idOrder;
+        this.orderDate = orderDate;
+        this.totalPrice = totalPrice;
+        this.status = status;
+        this.paymentMethod = paymentMethod;
+        this.paymentStatus = paymentStatus;
+        this.idCustomer = idCustomer;
+        this.nameCustomer = nameCustomer;
+    }
+
+    public Long getIdOrder() {
+        return idOrder;
+    }
+
+    public void setIdOrder(Long idOrder) {
+        this.idOrder = idOrder;
+    }
+
+    public LocalDateTime getOrderDate() {
+        return orderDate;
+    }
+
+    public void setOrderDate(LocalDateTime orderDate) {
+        this.orderDate = orderDate;
+    }
+
+    public Double getTotalPrice() {
+        return totalPrice;
+    }
+
+    public void setTotalPrice(Double totalPrice) {
+        this.totalPrice = totalPrice;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public String getPaymentMethod() {
+        return paymentMethod;
+    }
+
+    public void setPaymentMethod(String paymentMethod) {
+        this.paymentMethod = paymentMethod;
+    }
+
+    public String getPaymentStatus() {
+        return paymentStatus;
+    }
+
+    public void setPaymentStatus(String paymentStatus) {
+        this.paymentStatus = paymentStatus;
+    }
+
+    public Long getIdCustomer() {
+        return idCustomer;
+    }
+
+    public void setIdCustomer(Long idCustomer) {
+        this.idCustomer = idCustomer;
+    }
+
+    public String getNameCustomer() {
+        return nameCustomer;
+    }
+
+    public void setNameCustomer(String nameCustomer) {
+        this.nameCustomer = nameCustomer;
+    }
+
+    /**
+     * Một trang kết quả theo keyset: nextCursor là idOrder cuối cùng của trang,
+     * null nếu đã hết dữ liệu
+     */
+    public static class Page {
+        private List<OrderSummaryDTO> items;
+        private Long nextCursor;
+
+        public Page(List<OrderSummaryDTO> items, Long nextCursor) {
+            this.items = items;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<OrderSummaryDTO> getItems() {
+            return items;
+        }
+
+        public void setItems(List<OrderSummaryDTO> items) {
+            this.items = items;
+        }
+
+        public Long getNextCursor() {
+            return nextCursor;
+        }
+
+        public void setNextCursor(Long nextCursor) {
+            this.nextCursor = nextCursor;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.OrderFoodSystem.dto;
+
+import java.util.List;
+import java.util.Map;
+
+public class StatisticsDTO {
+
+    // Doanh thu của một khoảng thời gian (giờ, ngày, tuần hoặc tháng)
+    public static class RevenuePoint {
+        private String bucket;
+        private Double revenue;
+        private Long orderCount;
+
+        public RevenuePoint(String bucket, Double revenue, Long orderCount) {
+            this.bucket = bucket;
+            this.revenue = revenue;
+            this.orderCount = orderCount;
+        }
+
+        public String getBucket() {
+            return bucket;
+        }
+
+        public void setBucket(String bucket) {
+            this.bucket = bucket;
+        }
+
+        public Double getRevenue() {
+            return revenue;
+        }
+
+        public void setRevenue(Double revenue) {
+            this.revenue = revenue;
+        }
+
+        public Long getOrderCount() {
+            return orderCount;
+        }
+
+        public void setOrderCount(Long orderCount) {
+            this.orderCount = orderCount;
+        }
+    }
+
+    public static class TopProduct {
+        private Long idProduct;
+        private String nameProduct;
+        private Long quantity;
+        private Double revenue;
+
+        public TopProduct(Long idProduct, String nameProduct, Long quantity, Double revenue) {
+            this.idProduct = idProduct;
+            this.nameProduct = nameProduct;
+            this.quantity = quantity;
+            this.revenue = revenue;
+        }
+
+        public Long getIdProduct() {
+            return idProduct;
+        }
+
+        public void setIdProduct(Long idProduct) {
+            this.idProduct = idProduct;
+        }
+
+        public String getNameProduct() {
+            return nameProduct;
+        }
+
+        public void setNameProduct(String nameProduct) {
+            this.nameProduct = nameProduct;
+        }
+
+        public Long getQuantity() {
+            return quantity;
+        }
+
+        public void setQuantity(Long quantity) {
+            this.quantity = quantity;
+        }
+
+        public Double getRevenue() {
+            return revenue;
+        }
+
+        public void setRevenue(Double revenue) {
+            this.revenue = revenue;
+        }
+    }
+
+    public static class Dashboard {
+        private String range;
+        private String granularity;
+        private Long totalOrders;
+        private Double revenue;
+        private Long totalCustomers;
+        private Long totalProducts;
+        private List<RevenuePoint> revenueChart;
+        private Map<String, Long> statusCounts;
+        private List<TopProduct> topProducts;
+
+        public String getRange() {
+            return range;
+        }
+
+        public void setRange(String range) {
+            this.range = range;
+        }
+
+        public String getGranularity() {
+            return granularity;
+        }
+
+        public void setGranularity(String granularity) {
+            this.granularity = granularity;
+        }
+
+        public Long getTotalOrders() {
+            return totalOrders;
+        }
+
+        public void setTotalOrders(Long totalOrders) {
+            this.totalOrders = totalOrders;
+        }
+
+        public Double getRevenue() {
+            return revenue;
+        }
+
+        public void setRevenue(Double revenue) {
+            this.revenue = revenue;
+        }
+
+        public Long getTotalCustomers() {
+            return totalCustomers;
+        }
+
+        public void setTotalCustomers(Long totalCustomers) {
+            this.totalCustomers = totalCustomers;
+        }
+
+        public Long getTotalProducts() {
+            return totalProducts;
+        }
+
+        public void setTotalProducts(Long totalProducts) {
+            this.totalProducts = totalProducts;
+        }
+
+        public List<RevenuePoint> getRevenueChart() {
+            return revenueChart;
+        }
+
+        public void setRevenueChart(List<RevenuePoint> revenueChart) {
+            this.revenueChart = revenueChart;
+        }
+
+        public Map<String, Long> getStatusCounts() {
+            return statusCounts;
+        }
+
+        public void setStatusCounts(Map<String, Long> statusCounts) {
+            this.statusCounts = statusCounts;
+        }
+
+        public List<TopProduct> getTopProducts() {
+            return topProducts;
+        }
+
+        public void setTopProducts(List<TopProduct> topProducts) {
+            this.topProducts = topProducts;
+        }
+    }
+}
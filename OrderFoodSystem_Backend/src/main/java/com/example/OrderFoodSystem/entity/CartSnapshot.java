@@ -0,0 +1,58 @@
+package com.example.OrderFoodSystem.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Bản lưu giỏ hàng của CartStore (ghi trễ), dùng để khôi phục giỏ hàng sau khi restart.
+ * items là danh sách món dạng JSON [{idProduct, quantity, note}].
+ */
+@Entity
+@Table(name = "cart_snapshots", indexes = {
+        @Index(name = "idx_cart_snapshots_updated_at", columnList = "updated_at")
+})
+public class CartSnapshot {
+
+    @Id
+    @Column(name = "id_customer")
+    private Long idCustomer;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String items;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    public CartSnapshot() {
+    }
+
+    public CartSnapshot(Long idCustomer, String items, LocalDateTime updatedAt) {
+        this.idCustomer = idCustomer;
+        this.items = items;
+        this.updatedAt = updatedAt;
+    }
+
+    public Long getIdCustomer() {
+        return idCustomer;
+    }
+
+    public void setIdCustomer(Long idCustomer) {
+        this.idCustomer = idCustomer;
+    }
+
+    public String getItems() {
+        return items;
+    }
+
+    public void setItems(String items) {
+        this.items = items;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+}
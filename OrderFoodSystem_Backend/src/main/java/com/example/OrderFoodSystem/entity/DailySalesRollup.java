@@ -0,0 +1,96 @@
+package com.example.OrderFoodSystem.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+
+/**
+ * Số liệu bán hàng cộng dồn theo ngày, trạng thái đơn hàng và món.
+ * Dòng có idProduct = 0 là tổng của cả đơn hàng (revenue = totalPrice, quantity = tổng số món).
+ * Đơn hàng ở trạng thái pending (giỏ hàng) không được tính.
+ */
+@Entity
+@Table(name = "daily_sales_rollup", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_rollup_date_status_product", columnNames = {"sales_date", "status", "id_product"})
+})
+public class DailySalesRollup {
+
+    public static final long ORDER_TOTAL = 0L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long idRollup;
+
+    @Column(name = "sales_date", nullable = false)
+    private LocalDate salesDate;
+
+    @Column(nullable = false, length = 20)
+    private String status;
+
+    @Column(name = "id_product", nullable = false)
+    private Long idProduct;
+
+    @Column(nullable = false)
+    private Long quantity = 0L;
+
+    @Column(nullable = false)
+    private Double revenue = 0.0;
+
+    @Column(name = "order_count", nullable = false)
+    private Long orderCount = 0L;
+
+    public Long getIdRollup() {
+        return idRollup;
+    }
+
+    public void setIdRollup(Long idRollup) {
+        this.idRollup = idRollup;
+    }
+
+    public LocalDate getSalesDate() {
+        return salesDate;
+    }
+
+    public void setSalesDate(LocalDate salesDate) {
+        this.salesDate = salesDate;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public Long getIdProduct() {
+        return idProduct;
+    }
+
+    public void setIdProduct(Long idProduct) {
+        this.idProduct = idProduct;
+    }
+
+    public Long getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(Long quantity) {
+        this.quantity = quantity;
+    }
+
+    public Double getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(Double revenue) {
+        this.revenue = revenue;
+    }
+
+    public Long getOrderCount() {
+        return orderCount;
+    }
+
+    public void setOrderCount(Long orderCount) {
+        this.orderCount = orderCount;
+    }
+}
@@ -6,15 +6,30 @@ import jakarta.persistence.*;
 import java.time.LocalDateTime;
 import java.util.List;
 
+// Production chạy với ddl-auto=none nên index khai báo ở đây phải được tạo bằng tay:
+//   CREATE INDEX idx_orders_status_date ON orders (status, order_date);
+//   CREATE INDEX idx_orders_customer_status ON orders (id_customer, status);
 @Entity
-@Table(name = "orders") // tránh trùng từ khóa ORDER
+@Table(name = "orders", indexes = { // tránh trùng từ khóa ORDER
+        @Index(name = "idx_orders_status_date", columnList = "status, order_date"),
+        @Index(name = "idx_orders_customer_status", columnList = "id_customer, status"),
+        @Index(name = "idx_orders_payment_pending", columnList = "status, payment_status, id_order")
+})
 public class Order {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long idOrder;
 
     private LocalDateTime orderDate;
-    private Double totalPrice;
+    private Double totalPrice; // = max(0, subtotal - discountAmount), do OrderPricingService duy trì
+    private Double subtotal; // tổng subTotal của các orderDetail
+    @Column(name = "discount_amount")
+    private Double discountAmount; // số tiền giảm từ voucher
+
+    // Khóa lạc quan: từ chối ghi đè khi đơn đã bị request khác sửa
+    @Version
+    @Column(nullable = false)
+    private Long version;
     private String status; // pending, confirmed, preparing, ready, delivered, cancelled
     
     @Column(name = "payment_method", nullable = false)
@@ -23,6 +38,13 @@ public class Order {
     @Column(name = "payment_status", nullable = false)
     private String paymentStatus = "UNPAID"; // UNPAID, PAID, FAILED
 
+    // Mã đơn gửi sang MoMo/VNPay lần gần nhất (orderId_timestamp) và thời điểm gửi, dùng để đối soát
+    @Column(name = "payment_ref", length = 64)
+    private String paymentRef;
+
+    @Column(name = "payment_requested_at")
+    private LocalDateTime paymentRequestedAt;
+
     // Nhiều order thuộc 1 customer
     @ManyToOne
     @JoinColumn(name = "id_customer")
@@ -63,6 +85,30 @@ public class Order {
         this.totalPrice = totalPrice;
     }
 
+    public Double getSubtotal() {
+        return subtotal;
+    }
+
+    public void setSubtotal(Double subtotal) {
+        this.subtotal = subtotal;
+    }
+
+    public Double getDiscountAmount() {
+        return discountAmount;
+    }
+
+    public void setDiscountAmount(Double discountAmount) {
+        this.discountAmount = discountAmount;
+    }
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     public Customer getCustomer() {
         return customer;
     }
@@ -110,4 +156,20 @@ public class Order {
     public void setPaymentStatus(String paymentStatus) {
         this.paymentStatus = paymentStatus;
     }
+
+    public String getPaymentRef() {
+        return paymentRef;
+    }
+
+    public void setPaymentRef(String paymentRef) {
+        this.paymentRef = paymentRef;
+    }
+
+    public LocalDateTime getPaymentRequestedAt() {
+        return paymentRequestedAt;
+    }
+
+    public void setPaymentRequestedAt(LocalDateTime paymentRequestedAt) {
+        this.paymentRequestedAt = paymentRequestedAt;
+    }
 }
\ No newline at end of file
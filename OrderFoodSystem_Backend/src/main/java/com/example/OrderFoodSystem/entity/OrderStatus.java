@@ -0,0 +1,64 @@
+package com.example.OrderFoodSystem.entity;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Vòng đời của đơn hàng: pending → confirmed → preparing → ready → delivered,
+ * có thể hủy (cancelled) trước khi giao. delivered và cancelled là trạng thái cuối.
+ * Cột orders.status lưu value() dạng chữ thường.
+ */
+public enum OrderStatus {
+    PENDING("pending"),
+    CONFIRMED("confirmed"),
+    PREPARING("preparing"),
+    READY("ready"),
+    DELIVERED("delivered"),
+    CANCELLED("cancelled");
+
+    private final String value;
+
+    OrderStatus(String value) {
+        this.value = value;
+    }
+
+    public String value() {
+        return value;
+    }
+
+    /**
+     * Trạng thái tiếp theo hợp lệ (không tính giữ nguyên trạng thái)
+     */
+    public Set<OrderStatus> next() {
+        return switch (this) {
+            case PENDING -> EnumSet.of(CONFIRMED, CANCELLED);
+            case CONFIRMED -> EnumSet.of(PREPARING, CANCELLED);
+            case PREPARING -> EnumSet.of(READY, CANCELLED);
+            case READY -> EnumSet.of(DELIVERED, CANCELLED);
+            case DELIVERED, CANCELLED -> EnumSet.noneOf(OrderStatus.class);
+        };
+    }
+
+    public boolean canTransitionTo(OrderStatus target) {
+        return next().contains(target);
+    }
+
+    public boolean isTerminal() {
+        return this == DELIVERED || this == CANCELLED;
+    }
+
+    /**
+     * Đơn hàng cũ chưa có status được coi là pending
+     */
+    public static OrderStatus of(String value) {
+        if (value == null || value.isEmpty()) {
+            return PENDING;
+        }
+        for (OrderStatus status : values()) {
+            if (status.value.equalsIgnoreCase(value)) {
+                return status;
+            }
+        }
+        throw new IllegalArgumentException("Trạng thái đơn hàng không hợp lệ: " + value);
+    }
+}
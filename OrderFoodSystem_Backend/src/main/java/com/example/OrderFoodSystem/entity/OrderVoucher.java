@@ -21,6 +21,14 @@ public class OrderVoucher {
     @Column(nullable = false)
     private Double discountAmount;
 
+    // RESERVED khi áp dụng vào giỏ hàng, COMMITTED khi thanh toán thành công, RELEASED khi hủy/thất bại
+    @Column(nullable = false, length = 20)
+    private String status = STATUS_RESERVED;
+
+    public static final String STATUS_RESERVED = "RESERVED";
+    public static final String STATUS_COMMITTED = "COMMITTED";
+    public static final String STATUS_RELEASED = "RELEASED";
+
     // Constructors
     public OrderVoucher() {
     }
@@ -63,4 +71,12 @@ public class OrderVoucher {
     public void setDiscountAmount(Double discountAmount) {
         this.discountAmount = discountAmount;
     }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
 }
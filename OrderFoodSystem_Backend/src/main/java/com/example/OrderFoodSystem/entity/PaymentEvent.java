@@ -0,0 +1,137 @@
+package com.example.OrderFoodSystem.entity;
+
+import jakarta.persistence.*;
+import java.time.LocalDateTime;
+
+/**
+ * Sổ ghi các callback/IPN của cổng thanh toán. Mỗi giao dịch (gateway + transaction_id) chỉ có
+ * một dòng, được ghi cùng transaction với việc cập nhật đơn hàng nên kết quả chỉ áp dụng một lần.
+ */
+@Entity
+@Table(name = "payment_events", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_payment_events_transaction", columnNames = {"gateway", "transaction_id"})
+}, indexes = {
+        @Index(name = "idx_payment_events_order", columnList = "id_order")
+})
+public class PaymentEvent {
+
+    // Đã cập nhật đơn hàng theo kết quả thanh toán
+    public static final String OUTCOME_APPLIED = "APPLIED";
+    // Hợp lệ nhưng không áp dụng được (vd: báo thất bại sau khi đơn đã thanh toán)
+    public static final String OUTCOME_REJECTED = "REJECTED";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id_payment_event")
+    private Long idPaymentEvent;
+
+    @Column(nullable = false, length = 10)
+    private String gateway;
+
+    @Column(name = "transaction_id", nullable = false, length = 100)
+    private String transactionId;
+
+    @Column(name = "id_order", nullable = false)
+    private Long idOrder;
+
+    private Long amount;
+
+    @Column(name = "result_code", length = 10)
+    private String resultCode;
+
+    @Column(nullable = false)
+    private boolean success;
+
+    @Column(nullable = false, length = 20)
+    private String outcome;
+
+    @Column(name = "received_at", nullable = false)
+    private LocalDateTime receivedAt;
+
+    public PaymentEvent() {
+    }
+
+    public PaymentEvent(String gateway, String transactionId, Long idOrder, Long amount, String resultCode,
+                        boolean success, String outcome, LocalDateTime receivedAt) {
+        this.gateway = gateway;
+        this.transactionId = transactionId;
+        this.idOrder = idOrder;
+        this.amount = amount;
+        this.resultCode = resultCode;
+        this.success = success;
+        this.outcome = outcome;
+        this.receivedAt = receivedAt;
+    }
+
+    public Long getIdPaymentEvent() {
+        return idPaymentEvent;
+    }
+
+    public void setIdPaymentEvent(Long idPaymentEvent) {
+        this.idPaymentEvent = idPaymentEvent;
+    }
+
+    public String getGateway() {
+        return gateway;
+    }
+
+    public void setGateway(String gateway) {
+        this.gateway = gateway;
+    }
+
+    public String getTransactionId() {
+        return transactionId;
+    }
+
+    public void setTransactionId(String transactionId) {
+        this.transactionId = transactionId;
+    }
+
+    public Long getIdOrder() {
+        return idOrder;
+    }
+
+    public void setIdOrder(Long idOrder) {
+        this.idOrder = idOrder;
+    }
+
+    public Long getAmount() {
+        return amount;
+    }
+
+    public void setAmount(Long amount) {
+        this.amount = amount;
+    }
+
+    public String getResultCode() {
+        return resultCode;
+    }
+
+    public void setResultCode(String resultCode) {
+        this.resultCode = resultCode;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public void setSuccess(boolean success) {
+        this.success = success;
+    }
+
+    public String getOutcome() {
+        return outcome;
+    }
+
+    public void setOutcome(String outcome) {
+        this.outcome = outcome;
+    }
+
+    public LocalDateTime getReceivedAt() {
+        return receivedAt;
+    }
+
+    public void setReceivedAt(LocalDateTime receivedAt) {
+        this.receivedAt = receivedAt;
+    }
+}
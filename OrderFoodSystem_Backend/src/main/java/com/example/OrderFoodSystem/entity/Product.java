@@ -13,6 +13,9 @@ public class Product {
     private String descriptionProduct;
     private Double priceProduct;
     private String imageUrl; // Link ảnh món ăn
+    private String imageThumbUrl; // Ảnh thu nhỏ 160px
+    private String imageCardUrl; // Ảnh 480px cho thẻ món ở trang Menu
+    private String imageDetailUrl; // Ảnh 1024px cho trang chi tiết
     private Boolean isActive = true; // true = hiển thị, false = đã xóa (soft delete)
 
     @ManyToOne
@@ -67,6 +70,30 @@ public class Product {
         this.imageUrl = imageUrl;
     }
 
+    public String getImageThumbUrl() {
+        return imageThumbUrl;
+    }
+
+    public void setImageThumbUrl(String imageThumbUrl) {
+        this.imageThumbUrl = imageThumbUrl;
+    }
+
+    public String getImageCardUrl() {
+        return imageCardUrl;
+    }
+
+    public void setImageCardUrl(String imageCardUrl) {
+        this.imageCardUrl = imageCardUrl;
+    }
+
+    public String getImageDetailUrl() {
+        return imageDetailUrl;
+    }
+
+    public void setImageDetailUrl(String imageDetailUrl) {
+        this.imageDetailUrl = imageDetailUrl;
+    }
+
     public Boolean getIsActive() {
         return isActive;
     }
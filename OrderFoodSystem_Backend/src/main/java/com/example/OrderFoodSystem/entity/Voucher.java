@@ -2,6 +2,7 @@ package com.example.OrderFoodSystem.entity;
 
 import jakarta.persistence.*;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "vouchers")
@@ -38,6 +39,16 @@ public class Voucher {
     @Column(nullable = false)
     private Boolean status = true;
 
+    // Thời điểm sửa gần nhất, dùng làm version stamp cho cache voucher
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+
     // Constructors
     public Voucher() {
     }
@@ -136,6 +147,14 @@ public class Voucher {
         this.status = status;
     }
 
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public void setUpdatedAt(LocalDateTime updatedAt) {
+        this.updatedAt = updatedAt;
+    }
+
     // Helper method to check if voucher is valid
     public boolean isValid() {
         LocalDate today = LocalDate.now();
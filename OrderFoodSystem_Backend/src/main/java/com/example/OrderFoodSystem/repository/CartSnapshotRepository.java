@@ -0,0 +1,20 @@
+package com.example.OrderFoodSystem.repository;
+
+import com.example.OrderFoodSystem.entity.CartSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface CartSnapshotRepository extends JpaRepository<CartSnapshot, Long> {
+
+    // Xóa giỏ hàng bị bỏ quên quá TTL
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM CartSnapshot c WHERE c.updatedAt < :before")
+    int deleteUpdatedBefore(LocalDateTime before);
+}
@@ -0,0 +1,105 @@
+package com.example.OrderFoodSystem.repository;
+
+import com.example.OrderFoodSystem.entity.DailySalesRollup;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface DailySalesRollupRepository extends JpaRepository<DailySalesRollup, Long> {
+
+    // Cộng dồn (có thể âm) vào dòng rollup, tạo mới nếu chưa có
+    @Modifying
+    @Query(value = "INSERT INTO daily_sales_rollup (sales_date, status, id_product, quantity, revenue, order_count) " +
+                   "VALUES (:salesDate, :status, :idProduct, :quantity, :revenue, :orderCount) " +
+                   "ON DUPLICATE KEY UPDATE quantity = quantity + VALUES(quantity), " +
+                   "revenue = revenue + VALUES(revenue), order_count = order_count + VALUES(order_count)",
+           nativeQuery = true)
+    void increment(LocalDate salesDate, String status, Long idProduct, Long quantity, Double revenue, Long orderCount);
+
+    @Modifying
+    @Query("DELETE FROM DailySalesRollup r WHERE r.salesDate >= :fromDate AND r.salesDate < :toDate")
+    void deleteRange(LocalDate fromDate, LocalDate toDate);
+
+    // Tính lại các dòng theo món từ orders/order_details
+    @Modifying
+    @Query(value = "INSERT INTO daily_sales_rollup (sales_date, status, id_product, quantity, revenue, order_count) " +
+                   "SELECT DATE(o.order_date), o.status, od.id_product, SUM(od.quantity), " +
+                   "COALESCE(SUM(od.sub_total), 0), COUNT(DISTINCT o.id_order) " +
+                   "FROM orders o JOIN order_details od ON od.id_order = o.id_order " +
+                   "WHERE o.status <> 'pending' AND od.id_product IS NOT NULL " +
+                   "AND o.order_date >= :fromDate AND o.order_date < :toDate " +
+                   "GROUP BY DATE(o.order_date), o.status, od.id_product", nativeQuery = true)
+    void rebuildProductRows(LocalDateTime fromDate, LocalDateTime toDate);
+
+    // Tính lại các dòng tổng đơn hàng (id_product = 0)
+    @Modifying
+    @Query(value = "INSERT INTO daily_sales_rollup (sales_date, status, id_product, quantity, revenue, order_count) " +
+                   "SELECT DATE(o.order_date), o.status, 0, " +
+                   "COALESCE(SUM((SELECT SUM(od.quantity) FROM order_details od WHERE od.id_order = o.id_order)), 0), " +
+                   "COALESCE(SUM(o.total_price), 0), COUNT(*) " +
+                   "FROM orders o " +
+                   "WHERE o.status <> 'pending' AND o.order_date >= :fromDate AND o.order_date < :toDate " +
+                   "GROUP BY DATE(o.order_date), o.status", nativeQuery = true)
+    void rebuildOrderRows(LocalDateTime fromDate, LocalDateTime toDate);
+
+    // Số đơn và doanh thu theo ngày/trạng thái đang lưu trong rollup
+    @Query("SELECT r.salesDate AS salesDate, r.status AS status, r.orderCount AS orderCount, r.revenue AS revenue " +
+           "FROM DailySalesRollup r WHERE r.idProduct = 0 AND r.salesDate >= :fromDate AND r.salesDate < :toDate")
+    List<DayStatusRow> findOrderRows(LocalDate fromDate, LocalDate toDate);
+
+    // Cùng số liệu nhưng tính trực tiếp từ bảng orders, dùng để phát hiện sai lệch
+    @Query(value = "SELECT DATE(o.order_date) AS salesDate, o.status AS status, COUNT(*) AS orderCount, " +
+                   "COALESCE(SUM(o.total_price), 0) AS revenue " +
+                   "FROM orders o WHERE o.status <> 'pending' " +
+                   "AND o.order_date >= :fromDate AND o.order_date < :toDate " +
+                   "GROUP BY DATE(o.order_date), o.status", nativeQuery = true)
+    List<DayStatusRow> aggregateOrders(LocalDateTime fromDate, LocalDateTime toDate);
+
+    // Doanh thu theo bucket đọc từ rollup (bỏ đơn đã hủy)
+    @Query(value = "SELECT DATE_FORMAT(r.sales_date, :bucketFormat) AS bucket, " +
+                   "SUM(r.revenue) AS revenue, SUM(r.order_count) AS orderCount " +
+                   "FROM daily_sales_rollup r " +
+                   "WHERE r.id_product = 0 AND r.status <> 'cancelled' " +
+                   "AND r.sales_date >= :fromDate AND r.sales_date < :toDate " +
+                   "GROUP BY bucket HAVING SUM(r.order_count) > 0 ORDER BY bucket", nativeQuery = true)
+    List<OrderRepository.RevenueBucketRow> sumRevenueByBucket(String bucketFormat, LocalDate fromDate,
+                                                              LocalDate toDate);
+
+    @Query("SELECT r.idProduct AS idProduct, p.nameProduct AS nameProduct, " +
+           "SUM(r.quantity) AS quantity, SUM(r.revenue) AS revenue " +
+           "FROM DailySalesRollup r, Product p " +
+           "WHERE p.idProduct = r.idProduct AND r.status <> 'cancelled' " +
+           "AND r.salesDate >= :fromDate AND r.salesDate < :toDate " +
+           "GROUP BY r.idProduct, p.nameProduct HAVING SUM(r.quantity) > 0 ORDER BY SUM(r.quantity) DESC")
+    List<OrderDetailRepository.ProductSalesRow> findTopProducts(LocalDate fromDate, LocalDate toDate,
+                                                                Pageable pageable);
+
+    // Tổng số lượng đã bán của từng món (bỏ đơn đã hủy)
+    @Query("SELECT r.idProduct AS idProduct, SUM(r.quantity) AS quantity FROM DailySalesRollup r " +
+           "WHERE r.idProduct <> 0 AND r.status <> 'cancelled' GROUP BY r.idProduct")
+    List<ProductQuantityRow> sumQuantityByProduct();
+
+    interface ProductQuantityRow {
+        Long getIdProduct();
+
+        Long getQuantity();
+    }
+
+    interface DayStatusRow {
+        // LocalDate (JPQL) hoặc java.sql.Date (native query), so sánh qua toString()
+        Object getSalesDate();
+
+        String getStatus();
+
+        Long getOrderCount();
+
+        Double getRevenue();
+    }
+}
@@ -1,12 +1,35 @@
 package com.example.OrderFoodSystem.repository;
 
 import com.example.OrderFoodSystem.entity.OrderDetail;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
 
 public interface OrderDetailRepository extends JpaRepository<OrderDetail, Long> {
 
     @Query("SELECT od FROM OrderDetail od WHERE od.order.idOrder = :orderId AND od.product.idProduct = :productId")
     Optional<OrderDetail> findByOrderIdAndProductId(Long orderId, Long productId);
+
+    // Món bán chạy theo số lượng trong khoảng thời gian (bỏ qua giỏ hàng và đơn đã hủy)
+    @Query("SELECT p.idProduct AS idProduct, p.nameProduct AS nameProduct, " +
+           "SUM(od.quantity) AS quantity, SUM(od.subTotal) AS revenue " +
+           "FROM OrderDetail od JOIN od.product p JOIN od.order o " +
+           "WHERE o.status NOT IN ('pending', 'cancelled') " +
+           "AND o.orderDate >= :fromDate AND o.orderDate < :toDate " +
+           "GROUP BY p.idProduct, p.nameProduct ORDER BY SUM(od.quantity) DESC")
+    List<ProductSalesRow> findTopProducts(LocalDateTime fromDate, LocalDateTime toDate, Pageable pageable);
+
+    interface ProductSalesRow {
+        Long getIdProduct();
+
+        String getNameProduct();
+
+        Long getQuantity();
+
+        Double getRevenue();
+    }
 }
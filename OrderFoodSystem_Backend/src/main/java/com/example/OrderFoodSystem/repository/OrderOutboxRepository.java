@@ -0,0 +1,34 @@
+package com.example.OrderFoodSystem.repository;
+
+import com.example.OrderFoodSystem.entity.OrderOutboxEvent;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OrderOutboxRepository extends JpaRepository<OrderOutboxEvent, Long> {
+
+    // Sự kiện chưa gửi theo thứ tự ghi, sau afterId (keyset), dùng index (status, id_event)
+    List<OrderOutboxEvent> findByStatusAndIdEventGreaterThanOrderByIdEventAsc(String status, Long afterId,
+                                                                              Pageable pageable);
+
+    long countByStatus(String status);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE OrderOutboxEvent e SET e.status = 'PROCESSED', e.processedAt = :processedAt, " +
+           "e.attempts = e.attempts + 1 WHERE e.idEvent IN :ids")
+    int markProcessed(Collection<Long> ids, LocalDateTime processedAt);
+
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM OrderOutboxEvent e WHERE e.status = 'PROCESSED' AND e.processedAt < :before")
+    int deleteProcessedBefore(LocalDateTime before);
+}
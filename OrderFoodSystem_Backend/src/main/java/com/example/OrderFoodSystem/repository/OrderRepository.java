@@ -1,8 +1,128 @@
 package com.example.OrderFoodSystem.repository;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 
+import com.example.OrderFoodSystem.dto.OrderSummaryDTO;
 import com.example.OrderFoodSystem.entity.Order;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
 public interface OrderRepository extends JpaRepository<Order, Long> {
+
+    // Đơn hàng mới nhất của customer không ở trạng thái status (thường là "pending")
+    Optional<Order> findFirstByCustomer_IdCustomerAndStatusNotOrderByIdOrderDesc(Long idCustomer, String status);
+
+    // Danh sách đơn hàng phân trang theo keyset (idOrder giảm dần), lọc phía server
+    @Query("SELECT new com.example.OrderFoodSystem.dto.OrderSummaryDTO(" +
+           "o.idOrder, o.orderDate, o.totalPrice, o.status, o.paymentMethod, o.paymentStatus, " +
+           "c.idCustomer, c.nameCustomer) " +
+           "FROM Order o LEFT JOIN o.customer c " +
+           "WHERE (:cursor IS NULL OR o.idOrder < :cursor) " +
+           "AND (:status IS NULL OR o.status = :status) " +
+           "AND (:paymentStatus IS NULL OR o.paymentStatus = :paymentStatus) " +
+           "AND (:customerId IS NULL OR c.idCustomer = :customerId) " +
+           "AND (:fromDate IS NULL OR o.orderDate >= :fromDate) " +
+           "AND (:toDate IS NULL OR o.orderDate < :toDate) " +
+           "ORDER BY o.idOrder DESC")
+    List<OrderSummaryDTO> findSummaries(Long cursor, String status, String paymentStatus, Long customerId,
+                                        LocalDateTime fromDate, LocalDateTime toDate, Pageable pageable);
+
+    // Tăng version nếu đơn chưa bị request khác sửa (0 = đã bị sửa), dùng để tuần tự hóa thao tác trên một đơn
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Order o SET o.version = o.version + 1 WHERE o.idOrder = :idOrder AND o.version = :expectedVersion")
+    int incrementVersion(Long idOrder, Long expectedVersion);
+
+    // Chuyển trạng thái có điều kiện: chỉ cập nhật khi status và version chưa bị request khác đổi.
+    // Trả về 0 nếu đơn hàng đã thay đổi (hoặc không tồn tại)
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE Order o SET o.status = :newStatus, o.paymentStatus = :paymentStatus, " +
+           "o.paymentMethod = :paymentMethod, o.orderDate = :orderDate, o.version = o.version + 1 " +
+           "WHERE o.idOrder = :idOrder AND o.version = :expectedVersion " +
+           "AND (o.status = :expectedStatus OR (:expectedStatus IS NULL AND o.status IS NULL))")
+    int transition(Long idOrder, String expectedStatus, Long expectedVersion, String newStatus,
+                   String paymentStatus, String paymentMethod, LocalDateTime orderDate);
+
+    // Doanh thu theo khoảng thời gian (bucketFormat là pattern của DATE_FORMAT), bỏ qua giỏ hàng và đơn đã hủy
+    @Query(value = "SELECT DATE_FORMAT(o.order_date, :bucketFormat) AS bucket, " +
+                   "SUM(o.total_price) AS revenue, COUNT(*) AS orderCount " +
+                   "FROM orders o " +
+                   "WHERE o.status NOT IN ('pending', 'cancelled') " +
+                   "AND o.order_date >= :fromDate AND o.order_date < :toDate " +
+                   "GROUP BY bucket ORDER BY bucket", nativeQuery = true)
+    List<RevenueBucketRow> sumRevenueByBucket(String bucketFormat, LocalDateTime fromDate, LocalDateTime toDate);
+
+    @Query("SELECT o.status AS status, COUNT(o) AS orderCount FROM Order o " +
+           "WHERE o.orderDate >= :fromDate AND o.orderDate < :toDate GROUP BY o.status")
+    List<StatusCountRow> countByStatus(LocalDateTime fromDate, LocalDateTime toDate);
+
+    // Subtotal đang lưu so với tổng subTotal thực tế của các dòng (giỏ hàng + đơn từ :since)
+    @Query("SELECT o.idOrder AS idOrder, o.subtotal AS subtotal, o.discountAmount AS discountAmount, " +
+           "o.totalPrice AS totalPrice, COALESCE(SUM(od.subTotal), 0) AS lineTotal " +
+           "FROM Order o LEFT JOIN o.orderDetails od " +
+           "WHERE o.subtotal IS NOT NULL AND (o.status = 'pending' OR o.orderDate >= :since) " +
+           "GROUP BY o.idOrder, o.subtotal, o.discountAmount, o.totalPrice")
+    List<PricingCheckRow> findPricingCheckRows(LocalDateTime since);
+
+    // Đơn MoMo/VNPay còn chờ thanh toán cần đối soát, phân trang theo idOrder, dùng index (status, payment_status, id_order).
+    // Đơn chưa gửi sang cổng (paymentRef null) chỉ lấy khi đã quá :abandonedBefore
+    @Query("SELECT o.idOrder AS idOrder, o.paymentMethod AS paymentMethod, o.paymentRef AS paymentRef, " +
+           "o.paymentRequestedAt AS paymentRequestedAt FROM Order o " +
+           "WHERE o.status = 'pending' AND o.paymentStatus = 'UNPAID' AND o.paymentMethod IN ('MOMO', 'VNPAY') " +
+           "AND o.idOrder > :afterId " +
+           "AND (o.paymentRequestedAt < :requestedBefore " +
+           "OR (o.paymentRequestedAt IS NULL AND o.orderDate < :abandonedBefore)) " +
+           "ORDER BY o.idOrder")
+    List<ReconcileRow> findReconcileCandidates(Long afterId, LocalDateTime requestedBefore,
+                                               LocalDateTime abandonedBefore, Pageable pageable);
+
+    @Query("SELECT COUNT(o) AS backlog, MIN(COALESCE(o.paymentRequestedAt, o.orderDate)) AS oldest FROM Order o " +
+           "WHERE o.status = 'pending' AND o.paymentStatus = 'UNPAID' AND o.paymentMethod IN ('MOMO', 'VNPAY')")
+    ReconcileBacklogRow findReconcileBacklog();
+
+    interface RevenueBucketRow {
+        String getBucket();
+
+        Double getRevenue();
+
+        Long getOrderCount();
+    }
+
+    interface StatusCountRow {
+        String getStatus();
+
+        Long getOrderCount();
+    }
+
+    interface PricingCheckRow {
+        Long getIdOrder();
+
+        Double getSubtotal();
+
+        Double getDiscountAmount();
+
+        Double getTotalPrice();
+
+        Double getLineTotal();
+    }
+
+    interface ReconcileRow {
+        Long getIdOrder();
+
+        String getPaymentMethod();
+
+        String getPaymentRef();
+
+        LocalDateTime getPaymentRequestedAt();
+    }
+
+    interface ReconcileBacklogRow {
+        Long getBacklog();
+
+        LocalDateTime getOldest();
+    }
 }
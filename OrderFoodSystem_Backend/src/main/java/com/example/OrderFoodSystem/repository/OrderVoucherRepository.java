@@ -2,6 +2,8 @@ package com.example.OrderFoodSystem.repository;
 
 import com.example.OrderFoodSystem.entity.OrderVoucher;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.Optional;
@@ -12,4 +14,16 @@ public interface OrderVoucherRepository extends JpaRepository<OrderVoucher, Long
     Optional<OrderVoucher> findByOrder_IdOrder(Long idOrder);
     
     void deleteByOrder_IdOrder(Long idOrder);
+
+    // Đổi trạng thái nếu dòng vẫn ở fromStatus; trả về 0 khi request khác đã đổi trước
+    @Modifying
+    @Query("UPDATE OrderVoucher ov SET ov.status = :toStatus " +
+           "WHERE ov.idOrderVoucher = :idOrderVoucher AND ov.status = :fromStatus")
+    int updateStatus(Long idOrderVoucher, String fromStatus, String toStatus);
+
+    // Trả lại voucher đang giữ chỗ; trả về 0 khi request khác đã trả trước hoặc lượt dùng đã được xác nhận
+    @Modifying
+    @Query("UPDATE OrderVoucher ov SET ov.status = 'RELEASED' " +
+           "WHERE ov.idOrderVoucher = :idOrderVoucher AND ov.status = 'RESERVED'")
+    int markReleased(Long idOrderVoucher);
 }
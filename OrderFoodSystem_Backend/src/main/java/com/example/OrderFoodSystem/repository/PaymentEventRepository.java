@@ -0,0 +1,14 @@
+package com.example.OrderFoodSystem.repository;
+
+import com.example.OrderFoodSystem.entity.PaymentEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface PaymentEventRepository extends JpaRepository<PaymentEvent, Long> {
+
+    // Dùng unique key (gateway, transaction_id)
+    Optional<PaymentEvent> findByGatewayAndTransactionId(String gateway, String transactionId);
+}
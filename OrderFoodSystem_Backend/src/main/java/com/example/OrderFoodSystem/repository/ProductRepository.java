@@ -1,6 +1,10 @@
 package com.example.OrderFoodSystem.repository;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.OrderFoodSystem.entity.Product;
 import java.util.List;
@@ -9,4 +13,30 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     List<Product> findByPriceProductLessThanEqualAndIsActiveTrue(Double price);
 
     List<Product> findByNameProductContainingIgnoreCaseAndIsActiveTrue(String name);
+
+    List<Product> findByIsActiveTrueOrderByIdProductAsc();
+
+    long countByIsActiveTrue();
+
+    // Số món (kể cả đã xóa mềm) đang dùng mỗi ảnh
+    @Query("SELECT p.imageUrl AS imageUrl, COUNT(p) AS productCount FROM Product p " +
+           "WHERE p.imageUrl IS NOT NULL GROUP BY p.imageUrl")
+    List<ImageReferenceRow> countImageReferences();
+
+    // Gắn URL các bản thu nhỏ, chỉ khi món vẫn đang dùng ảnh gốc đó
+    @Modifying
+    @Transactional
+    @Query("UPDATE Product p SET p.imageThumbUrl = :thumbUrl, p.imageCardUrl = :cardUrl, p.imageDetailUrl = :detailUrl " +
+           "WHERE p.idProduct = :idProduct AND p.imageUrl = :imageUrl")
+    int updateImageVariants(@Param("idProduct") Long idProduct,
+                            @Param("imageUrl") String imageUrl,
+                            @Param("thumbUrl") String thumbUrl,
+                            @Param("cardUrl") String cardUrl,
+                            @Param("detailUrl") String detailUrl);
+
+    interface ImageReferenceRow {
+        String getImageUrl();
+
+        Long getProductCount();
+    }
 }
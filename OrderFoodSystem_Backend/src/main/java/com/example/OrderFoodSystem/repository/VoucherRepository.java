@@ -2,10 +2,12 @@ package com.example.OrderFoodSystem.repository;
 
 import com.example.OrderFoodSystem.entity.Voucher;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -31,4 +33,26 @@ public interface VoucherRepository extends JpaRepository<Voucher, Long> {
     
     // Check if voucher code exists
     boolean existsByCode(String code);
+
+    // Atomically take one use of the voucher; returns 0 if it is sold out, disabled or out of date
+    @Modifying
+    @Query("UPDATE Voucher v SET v.quantity = v.quantity - 1 WHERE v.idVoucher = :idVoucher " +
+           "AND v.quantity > 0 AND v.status = true " +
+           "AND v.startDate <= :currentDate AND v.endDate >= :currentDate")
+    int decrementQuantity(Long idVoucher, LocalDate currentDate);
+
+    // Version stamp of the whole table: changes whenever a voucher is created, edited or deleted
+    @Query("SELECT COUNT(v) AS voucherCount, MAX(v.updatedAt) AS lastUpdated FROM Voucher v")
+    VersionStamp findVersionStamp();
+
+    // Give back one use of the voucher (reservation released)
+    @Modifying
+    @Query("UPDATE Voucher v SET v.quantity = v.quantity + 1 WHERE v.idVoucher = :idVoucher")
+    int incrementQuantity(Long idVoucher);
+
+    interface VersionStamp {
+        Long getVoucherCount();
+
+        LocalDateTime getLastUpdated();
+    }
 }
@@ -0,0 +1,170 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.entity.Order;
+import com.example.OrderFoodSystem.entity.OrderDetail;
+import com.example.OrderFoodSystem.entity.OrderOutboxEvent;
+import com.example.OrderFoodSystem.entity.Product;
+import com.example.OrderFoodSystem.repository.DailySalesRollupRepository;
+import com.example.OrderFoodSystem.repository.OrderRepository;
+import com.example.OrderFoodSystem.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Xếp hạng món bán chạy theo số lượng đã bán của các đơn hàng đã xác nhận (không tính
+ * giỏ hàng và đơn đã hủy). Số lượng được nạp lại định kỳ từ daily_sales_rollup và cộng
+ * dồn từ sự kiện đổi trạng thái trong order_outbox; top-K theo từng category được dựng sẵn để đọc O(1).
+ */
+@Service
+public class BestSellerService implements OrderEventListener {
+
+    public static final int TOP_K = 10;
+
+    @Autowired
+    private DailySalesRollupRepository rollupRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    private volatile Map<Long, LongAdder> soldCounts = new ConcurrentHashMap<>();
+    private final AtomicBoolean dirty = new AtomicBoolean(false);
+
+    // null key = tất cả category
+    private volatile Map<Long, List<Product>> topByCategory = Collections.emptyMap();
+
+    /**
+     * Top món bán chạy (tối đa TOP_K), categoryId = null để lấy trên toàn menu
+     */
+    public List<Product> getBestSellers(Long categoryId, int limit) {
+        List<Product> top = topByCategory.getOrDefault(categoryId, Collections.emptyList());
+        return top.size() <= limit ? top : top.subList(0, limit);
+    }
+
+    /**
+     * Cập nhật số lượng đã bán khi đơn hàng chuyển trạng thái, nhận từ outbox sau khi transaction đã commit.
+     * Sự kiện nhận trùng có thể làm lệch số lượng tới lần reload kế tiếp.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void onOrderEvent(OrderOutboxEvent event, Map<String, Object> payload) {
+        if (OrderEventService.ORDER_DELETED.equals(event.getEventType())) {
+            onOrderDeleted(payload);
+            return;
+        }
+        if (!OrderEventService.STATUS_CHANGED.equals(event.getEventType())) {
+            return;
+        }
+        int sign = (isCounted((String) payload.get("toStatus")) ? 1 : 0)
+                - (isCounted((String) payload.get("fromStatus")) ? 1 : 0);
+        if (sign == 0) {
+            return;
+        }
+        Order order = orderRepository.findById(event.getIdOrder()).orElse(null);
+        if (order == null || order.getOrderDetails() == null) {
+            return;
+        }
+
+        Map<Long, Long> delta = new HashMap<>();
+        for (OrderDetail detail : order.getOrderDetails()) {
+            if (detail.getProduct() != null) {
+                delta.merge(detail.getProduct().getIdProduct(), (long) sign * detail.getQuantity(), Long::sum);
+            }
+        }
+        applyDelta(delta);
+    }
+
+    // Đơn hàng đã bị xóa: trừ số lượng lưu trong payload nếu đơn đang được tính
+    private void onOrderDeleted(Map<String, Object> payload) {
+        if (!isCounted((String) payload.get("status")) || !(payload.get("items") instanceof Map<?, ?> items)) {
+            return;
+        }
+        Map<Long, Long> delta = new HashMap<>();
+        items.forEach((idProduct, quantity) ->
+                delta.put(Long.valueOf(String.valueOf(idProduct)), -((Number) quantity).longValue()));
+        applyDelta(delta);
+    }
+
+    private void applyDelta(Map<Long, Long> delta) {
+        Map<Long, LongAdder> counts = soldCounts;
+        delta.forEach((idProduct, quantity) -> counts.computeIfAbsent(idProduct, id -> new LongAdder()).add(quantity));
+        dirty.set(true);
+    }
+
+    private boolean isCounted(String status) {
+        return status != null && !"pending".equals(status) && !"cancelled".equals(status);
+    }
+
+    // Nạp lại toàn bộ số lượng từ rollup
+    @Scheduled(initialDelayString = "${bestseller.initial-delay-ms:0}", fixedDelayString = "${bestseller.reload-ms:600000}")
+    public void reload() {
+        Map<Long, LongAdder> counts = new ConcurrentHashMap<>();
+        for (DailySalesRollupRepository.ProductQuantityRow row : rollupRepository.sumQuantityByProduct()) {
+            LongAdder adder = new LongAdder();
+            adder.add(row.getQuantity() != null ? row.getQuantity() : 0);
+            counts.put(row.getIdProduct(), adder);
+        }
+        soldCounts = counts;
+        rebuildRanking();
+    }
+
+    // Dựng lại bảng xếp hạng nếu số lượng đã thay đổi từ lần trước
+    @Scheduled(fixedDelayString = "${bestseller.rebuild-ms:30000}")
+    public void rebuildIfDirty() {
+        if (dirty.compareAndSet(true, false)) {
+            rebuildRanking();
+        }
+    }
+
+    /**
+     * Dựng lại top-K (toàn menu và theo category) từ số lượng hiện tại
+     */
+    public void rebuildRanking() {
+        dirty.set(false);
+        Map<Long, Long> snapshot = new HashMap<>();
+        soldCounts.forEach((idProduct, adder) -> {
+            long quantity = adder.sum();
+            if (quantity > 0) {
+                snapshot.put(idProduct, quantity);
+            }
+        });
+
+        Comparator<Product> bySold = Comparator.comparingLong((Product p) -> snapshot.get(p.getIdProduct()))
+                .reversed();
+        List<Product> ranked = productRepository.findAllById(snapshot.keySet()).stream()
+                .filter(p -> p.getIsActive() != null && p.getIsActive())
+                .sorted(bySold)
+                .toList();
+
+        Map<Long, List<Product>> top = new HashMap<>();
+        for (Product product : ranked) {
+            addIfRoom(top, null, product);
+            if (product.getCategory() != null) {
+                addIfRoom(top, product.getCategory().getIdCategory(), product);
+            }
+        }
+        top.replaceAll((categoryId, products) -> List.copyOf(products));
+        topByCategory = top;
+    }
+
+    private void addIfRoom(Map<Long, List<Product>> top, Long categoryId, Product product) {
+        List<Product> products = top.computeIfAbsent(categoryId, id -> new ArrayList<>());
+        if (products.size() < TOP_K) {
+            products.add(product);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.dto.CartDTO;
+import com.example.OrderFoodSystem.entity.Customer;
+import com.example.OrderFoodSystem.entity.Order;
+import com.example.OrderFoodSystem.entity.OrderDetail;
+import com.example.OrderFoodSystem.entity.OrderStatus;
+import com.example.OrderFoodSystem.entity.Product;
+import com.example.OrderFoodSystem.repository.CustomerRepository;
+import com.example.OrderFoodSystem.repository.OrderRepository;
+import com.example.OrderFoodSystem.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Giỏ hàng của customer nằm trong CartStore; bảng orders chỉ có đơn hàng thật,
+ * được tạo ở bước checkout.
+ */
+@Service
+public class CartService {
+
+    @Autowired
+    private CartStore cartStore;
+
+    @Autowired
+    private CatalogCacheService catalogCacheService;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderPricingService orderPricingService;
+
+    @Autowired
+    private OrderEventService orderEventService;
+
+    @Autowired
+    private OrderOutboxService orderOutboxService;
+
+    public CartDTO getCart(Long customerId) {
+        return toDTO(customerId, cartStore.getLines(customerId));
+    }
+
+    /**
+     * Thêm món (cộng dồn số lượng nếu món đã có trong giỏ)
+     */
+    public CartDTO addItem(Long customerId, Long productId, int quantity, String note) {
+        if (quantity <= 0) {
+            throw new RuntimeException("Số lượng thêm phải lớn hơn 0");
+        }
+        requireActiveProduct(productId);
+        List<CartStore.Line> lines = cartStore.update(customerId, current -> {
+            CartStore.Line line = current.get(productId);
+            current.put(productId, line == null
+                    ? new CartStore.Line(productId, quantity, note)
+                    : new CartStore.Line(productId, line.quantity() + quantity, note != null ? note : line.note()));
+        });
+        return toDTO(customerId, lines);
+    }
+
+    /**
+     * Đặt số lượng (0 = xóa món) và ghi chú của một món
+     */
+    public CartDTO updateItem(Long customerId, Long productId, int quantity, String note) {
+        if (quantity < 0) {
+            throw new RuntimeException("Số lượng không hợp lệ");
+        }
+        if (quantity > 0) {
+            requireActiveProduct(productId);
+        }
+        List<CartStore.Line> lines = cartStore.update(customerId, current -> {
+            if (quantity == 0) {
+                current.remove(productId);
+                return;
+            }
+            CartStore.Line line = current.get(productId);
+            String newNote = note != null ? note : line != null ? line.note() : null;
+            current.put(productId, new CartStore.Line(productId, quantity, newNote));
+        });
+        return toDTO(customerId, lines);
+    }
+
+    public CartDTO removeItem(Long customerId, Long productId) {
+        return toDTO(customerId, cartStore.update(customerId, current -> current.remove(productId)));
+    }
+
+    public void clear(Long customerId) {
+        cartStore.remove(customerId);
+    }
+
+    /**
+     * Chuyển giỏ hàng thành đơn hàng (status pending, chờ thanh toán) trong một transaction.
+     * Giỏ hàng được lấy ra trước để hai lần bấm đặt hàng không tạo hai đơn; transaction
+     * rollback thì các món được trả lại giỏ hàng.
+     */
+    @Transactional
+    public Order checkout(Long customerId) {
+        Customer customer = customerRepository.findById(customerId)
+                .orElseThrow(() -> new RuntimeException("Customer not found with id " + customerId));
+
+        List<CartStore.Line> lines = cartStore.remove(customerId);
+        if (lines.isEmpty()) {
+            throw new RuntimeException("Giỏ hàng trống");
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    cartStore.restore(customerId, lines);
+                }
+            }
+        });
+
+        // Giá lấy từ database tại thời điểm đặt hàng, món đã ngừng bán bị bỏ qua như khi hiển thị giỏ hàng
+        Map<Long, Product> products = productRepository.findAllById(
+                        lines.stream().map(CartStore.Line::idProduct).toList()).stream()
+                .collect(Collectors.toMap(Product::getIdProduct, Function.identity()));
+
+        Order order = new Order();
+        order.setCustomer(customer);
+        order.setStatus(OrderStatus.PENDING.value());
+        order.setOrderDate(LocalDateTime.now());
+        List<OrderDetail> details = new ArrayList<>();
+        for (CartStore.Line line : lines) {
+            Product product = products.get(line.idProduct());
+            if (product == null || !Boolean.TRUE.equals(product.getIsActive())) {
+                continue;
+            }
+            OrderDetail detail = new OrderDetail(line.quantity(), line.quantity() * product.getPriceProduct());
+            detail.setNote(line.note());
+            detail.setProduct(product);
+            detail.setOrder(order);
+            details.add(detail);
+        }
+        if (details.isEmpty()) {
+            throw new RuntimeException("Các món trong giỏ hàng đã ngừng bán");
+        }
+        order.setOrderDetails(details);
+        orderPricingService.recalculate(order);
+        Order savedOrder = orderRepository.save(order);
+        orderOutboxService.orderCreated(savedOrder);
+        orderEventService.publishAfterCommit(OrderEventService.ORDER_CREATED, savedOrder);
+        return savedOrder;
+    }
+
+    private void requireActiveProduct(Long productId) {
+        if (productId == null || catalogCacheService.findActiveProduct(productId).isEmpty()) {
+            throw new RuntimeException("Product not found with id " + productId);
+        }
+    }
+
+    // Món đã ngừng bán không hiển thị
+    private CartDTO toDTO(Long customerId, List<CartStore.Line> lines) {
+        List<CartDTO.Item> items = new ArrayList<>(lines.size());
+        for (CartStore.Line line : lines) {
+            catalogCacheService.findActiveProduct(line.idProduct())
+                    .ifPresent(product -> items.add(new CartDTO.Item(product, line.quantity(), line.note())));
+        }
+        return new CartDTO(customerId, items);
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.entity.CartSnapshot;
+import com.example.OrderFoodSystem.repository.CartSnapshotRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Giỏ hàng giữ trong bộ nhớ, tách khỏi bảng orders: đọc/ghi giỏ hàng không chạm database.
+ *
+ * Giỏ hàng hết hạn sau cart.ttl-ms không dùng tới và số giỏ hàng bị giới hạn bởi cart.max-size
+ * (bỏ giỏ hàng lâu không dùng nhất). Khi bật cart.persistence.enabled, giỏ hàng thay đổi được ghi
+ * trễ vào bảng cart_snapshots theo chu kỳ và nạp lại khi không còn trong bộ nhớ (sau restart
+ * hoặc sau khi bị bỏ vì vượt giới hạn). Không bật thì giỏ hàng mất khi restart.
+ */
+@Service
+public class CartStore {
+
+    private static final Logger log = LoggerFactory.getLogger(CartStore.class);
+
+    /**
+     * Một món trong giỏ hàng (giá lấy từ catalog khi hiển thị và khi checkout)
+     */
+    public record Line(Long idProduct, int quantity, String note) {
+    }
+
+    private static final TypeReference<List<Line>> LINES_TYPE = new TypeReference<>() {
+    };
+
+    @Autowired
+    private CartSnapshotRepository cartSnapshotRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${cart.ttl-ms:86400000}")
+    private long ttlMillis;
+
+    @Value("${cart.max-size:10000}")
+    private int maxSize;
+
+    @Value("${cart.persistence.enabled:false}")
+    private boolean persistenceEnabled;
+
+    // accessOrder = true: phần tử đầu là giỏ hàng lâu không dùng nhất
+    private final LinkedHashMap<Long, Cart> carts = new LinkedHashMap<>(16, 0.75f, true);
+
+    // Giỏ hàng chờ ghi vào cart_snapshots (Cart.removed = chờ xóa)
+    private final Map<Long, Cart> dirty = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder flushed = new LongAdder();
+
+    public List<Line> getLines(Long customerId) {
+        Cart cart = find(customerId, false);
+        if (cart == null) {
+            return List.of();
+        }
+        synchronized (cart) {
+            return List.copyOf(cart.lines.values());
+        }
+    }
+
+    /**
+     * Sửa các món của giỏ hàng (key là idProduct, giữ thứ tự thêm vào)
+     *
+     * @return các món sau khi sửa
+     */
+    public List<Line> update(Long customerId, Consumer<Map<Long, Line>> mutation) {
+        while (true) {
+            Cart cart = find(customerId, true);
+            List<Line> result;
+            synchronized (cart) {
+                // Giỏ hàng vừa bị checkout/hết hạn giữa lúc tìm và lúc khóa: lấy lại giỏ hàng mới
+                synchronized (carts) {
+                    if (carts.get(customerId) != cart) {
+                        continue;
+                    }
+                }
+                mutation.accept(cart.lines);
+                cart.updatedAt = System.currentTimeMillis();
+                cart.version++;
+                result = List.copyOf(cart.lines.values());
+            }
+            if (persistenceEnabled) {
+                dirty.put(customerId, cart);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Lấy giỏ hàng ra khỏi store (checkout hoặc xóa giỏ hàng)
+     *
+     * @return các món của giỏ hàng vừa lấy ra, rỗng nếu giỏ hàng đã bị lấy ra bởi lần gọi khác
+     */
+    public List<Line> remove(Long customerId) {
+        Cart cart = find(customerId, false);
+        if (cart == null) {
+            return List.of();
+        }
+        synchronized (carts) {
+            // Hai checkout cùng lúc: chỉ lần gọi lấy được giỏ hàng ra mới nhận các món
+            if (!carts.remove(customerId, cart)) {
+                return List.of();
+            }
+        }
+        if (persistenceEnabled) {
+            dirty.put(customerId, Cart.removed());
+        }
+        synchronized (cart) {
+            return List.copyOf(cart.lines.values());
+        }
+    }
+
+    /**
+     * Trả lại các món đã lấy ra bằng remove (checkout thất bại), món đã có trong giỏ hàng mới được giữ nguyên
+     */
+    public void restore(Long customerId, List<Line> lines) {
+        if (lines.isEmpty()) {
+            return;
+        }
+        update(customerId, current -> lines.forEach(line -> current.putIfAbsent(line.idProduct(), line)));
+    }
+
+    private Cart find(Long customerId, boolean create) {
+        long now = System.currentTimeMillis();
+        Cart cart;
+        synchronized (carts) {
+            cart = carts.get(customerId);
+            if (cart != null && now - cart.lastAccess > ttlMillis) {
+                carts.remove(customerId);
+                expired.increment();
+                cart = null;
+            }
+        }
+
+        if (cart != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            Cart loaded = load(customerId, now);
+            if (loaded == null && !create) {
+                return null;
+            }
+            synchronized (carts) {
+                cart = carts.get(customerId);
+                if (cart == null) {
+                    cart = loaded != null ? loaded : new Cart(now);
+                    carts.put(customerId, cart);
+                    evictOverflow();
+                }
+            }
+        }
+        cart.lastAccess = now;
+        return cart;
+    }
+
+    // Giỏ hàng đang chờ ghi (vừa bị bỏ khỏi bộ nhớ) mới hơn bản trong database
+    private Cart load(Long customerId, long now) {
+        if (!persistenceEnabled) {
+            return null;
+        }
+        Cart pending = dirty.get(customerId);
+        if (pending != null) {
+            return pending.isRemoved() || now - pending.updatedAt > ttlMillis ? null : pending;
+        }
+        try {
+            CartSnapshot snapshot = cartSnapshotRepository.findById(customerId).orElse(null);
+            if (snapshot == null) {
+                return null;
+            }
+            long updatedAt = snapshot.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            if (now - updatedAt > ttlMillis) {
+                return null;
+            }
+            Cart cart = new Cart(updatedAt);
+            for (Line line : objectMapper.readValue(snapshot.getItems(), LINES_TYPE)) {
+                cart.lines.put(line.idProduct(), line);
+            }
+            return cart;
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Cannot load cart snapshot of customer {}", customerId, e);
+            return null;
+        }
+    }
+
+    // Gọi khi đang giữ khóa carts
+    private void evictOverflow() {
+        Iterator<Cart> eldest = carts.values().iterator();
+        while (carts.size() > maxSize && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            evicted.increment();
+        }
+    }
+
+    // Bỏ giỏ hàng hết hạn (đầu danh sách là giỏ hàng lâu không dùng nhất nên dừng ở giỏ hàng đầu tiên còn hạn)
+    @Scheduled(fixedDelayString = "${cart.sweep-ms:60000}")
+    public void evictExpired() {
+        long cutoff = System.currentTimeMillis() - ttlMillis;
+        synchronized (carts) {
+            Iterator<Cart> iterator = carts.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().lastAccess >= cutoff) {
+                    break;
+                }
+                iterator.remove();
+                expired.increment();
+            }
+        }
+        if (persistenceEnabled) {
+            try {
+                cartSnapshotRepository.deleteUpdatedBefore(toLocalDateTime(cutoff));
+            } catch (RuntimeException e) {
+                log.warn("Cannot delete expired cart snapshots", e);
+            }
+        }
+    }
+
+    /**
+     * Ghi các giỏ hàng đã thay đổi vào cart_snapshots
+     */
+    @Scheduled(fixedDelayString = "${cart.persistence.flush-ms:5000}")
+    @PreDestroy
+    public void flush() {
+        if (!persistenceEnabled) {
+            return;
+        }
+        for (Map.Entry<Long, Cart> entry : dirty.entrySet()) {
+            Long customerId = entry.getKey();
+            Cart cart = entry.getValue();
+            long version = cart.version;
+            try {
+                List<Line> lines = List.of();
+                long updatedAt;
+                synchronized (cart) {
+                    if (!cart.isRemoved()) {
+                        lines = List.copyOf(cart.lines.values());
+                    }
+                    updatedAt = cart.updatedAt;
+                }
+                if (lines.isEmpty()) {
+                    cartSnapshotRepository.deleteById(customerId);
+                } else {
+                    cartSnapshotRepository.save(new CartSnapshot(customerId,
+                            objectMapper.writeValueAsString(lines), toLocalDateTime(updatedAt)));
+                }
+                // Giỏ hàng sửa tiếp trong lúc ghi thì vẫn giữ lại cho lần ghi sau
+                dirty.remove(customerId, cart);
+                if (cart.version != version) {
+                    dirty.putIfAbsent(customerId, cart);
+                }
+                flushed.increment();
+            } catch (JsonProcessingException | RuntimeException e) {
+                log.error("Cart write-behind stopped, {} carts pending", dirty.size(), e);
+                return;
+            }
+        }
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        int size;
+        synchronized (carts) {
+            size = carts.size();
+        }
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size);
+        stats.put("maxSize", maxSize);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("expired", expired.sum());
+        stats.put("evicted", evicted.sum());
+        stats.put("persistenceEnabled", persistenceEnabled);
+        stats.put("pendingWrites", dirty.size());
+        stats.put("flushed", flushed.sum());
+        return stats;
+    }
+
+    // Các thao tác trên lines phải giữ khóa của chính Cart
+    private static final class Cart {
+        private final LinkedHashMap<Long, Line> lines;
+        private long updatedAt;
+        private volatile long version;
+        private volatile long lastAccess;
+
+        private Cart(long updatedAt) {
+            this(updatedAt, new LinkedHashMap<>());
+        }
+
+        private Cart(long updatedAt, LinkedHashMap<Long, Line> lines) {
+            this.updatedAt = updatedAt;
+            this.lastAccess = updatedAt;
+            this.lines = lines;
+        }
+
+        // Đánh dấu giỏ hàng đã bị xóa, chờ xóa bản lưu
+        private static Cart removed() {
+            return new Cart(System.currentTimeMillis(), null);
+        }
+
+        private boolean isRemoved() {
+            return lines == null;
+        }
+    }
+}
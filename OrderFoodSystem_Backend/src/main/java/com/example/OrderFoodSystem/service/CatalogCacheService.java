@@ -0,0 +1,172 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.entity.Product;
+import com.example.OrderFoodSystem.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache danh sách món đang bán (isActive = true) cho trang Menu, chatbot và wishlist.
+ *
+ * Dữ liệu được giữ trong một snapshot bất biến, đánh chỉ mục theo category và theo giá.
+ * Khi món ăn/category thay đổi, snapshot mới được dựng từ database rồi thay thế snapshot
+ * cũ một lần (copy-on-write) nên request đọc không bao giờ thấy dữ liệu dựng dở.
+ * Mỗi snapshot có một version tăng dần; thay đổi từ instance khác được nạp lại định kỳ.
+ */
+@Service
+public class CatalogCacheService {
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    private volatile Snapshot snapshot;
+    private final AtomicLong versionCounter = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private volatile long lastRebuildMillis;
+    private volatile long lastRebuildNanos;
+
+    /**
+     * Tất cả món đang bán, theo thứ tự idProduct
+     */
+    public List<Product> getActiveProducts() {
+        return current().products;
+    }
+
+    /**
+     * Món đang bán thuộc một category
+     */
+    public List<Product> getActiveProductsByCategory(Long categoryId) {
+        return current().byCategory.getOrDefault(categoryId, Collections.emptyList());
+    }
+
+    /**
+     * Món đang bán có giá <= maxPrice, sắp xếp theo giá tăng dần
+     */
+    public List<Product> getActiveProductsUpToPrice(double maxPrice) {
+        Snapshot current = current();
+        // Tìm nhị phân vị trí đầu tiên có giá > maxPrice
+        int low = 0;
+        int high = current.sortedPrices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (current.sortedPrices[mid] <= maxPrice) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return current.byPrice.subList(0, low);
+    }
+
+    public Optional<Product> findActiveProduct(Long idProduct) {
+        return Optional.ofNullable(current().byId.get(idProduct));
+    }
+
+    /**
+     * Version của snapshot hiện tại, đổi mỗi lần dựng lại
+     */
+    public long getVersion() {
+        return current().version;
+    }
+
+    /**
+     * Dựng lại snapshot từ database (gọi sau khi tạo/sửa/xóa/khôi phục món hoặc sửa category)
+     */
+    public synchronized void refresh() {
+        long start = System.nanoTime();
+        List<Product> products = productRepository.findByIsActiveTrueOrderByIdProductAsc();
+        snapshot = new Snapshot(versionCounter.incrementAndGet(), products);
+        rebuilds.increment();
+        lastRebuildNanos = System.nanoTime() - start;
+        lastRebuildMillis = System.currentTimeMillis();
+    }
+
+    // Nạp lại định kỳ để nhận thay đổi từ instance khác
+    @Scheduled(initialDelayString = "${catalog.refresh-ms:300000}", fixedDelayString = "${catalog.refresh-ms:300000}")
+    public void scheduledRefresh() {
+        refresh();
+    }
+
+    /**
+     * Số liệu của cache: tỉ lệ hit, số lần dựng lại, thời gian dựng lại gần nhất
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        Snapshot current = snapshot;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("version", current != null ? current.version : 0);
+        stats.put("productCount", current != null ? current.products.size() : 0);
+        stats.put("hits", hitCount);
+        stats.put("misses", missCount);
+        stats.put("hitRatio", hitCount + missCount == 0 ? 0.0 : (double) hitCount / (hitCount + missCount));
+        stats.put("rebuilds", rebuilds.sum());
+        stats.put("lastRebuildMs", lastRebuildNanos / 1_000_000.0);
+        stats.put("lastRebuildAt", lastRebuildMillis);
+        return stats;
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null) {
+            hits.increment();
+            return current;
+        }
+        misses.increment();
+        synchronized (this) {
+            if (snapshot == null) {
+                refresh();
+            }
+            return snapshot;
+        }
+    }
+
+    private static class Snapshot {
+        private final long version;
+        private final List<Product> products;
+        private final Map<Long, Product> byId;
+        private final Map<Long, List<Product>> byCategory;
+        private final List<Product> byPrice;
+        private final double[] sortedPrices;
+
+        Snapshot(long version, List<Product> products) {
+            this.version = version;
+            this.products = List.copyOf(products);
+
+            Map<Long, Product> ids = new HashMap<>();
+            Map<Long, List<Product>> categories = new HashMap<>();
+            for (Product product : products) {
+                ids.put(product.getIdProduct(), product);
+                if (product.getCategory() != null) {
+                    categories.computeIfAbsent(product.getCategory().getIdCategory(), id -> new ArrayList<>())
+                            .add(product);
+                }
+            }
+            categories.replaceAll((categoryId, list) -> List.copyOf(list));
+            this.byId = Map.copyOf(ids);
+            this.byCategory = Map.copyOf(categories);
+
+            this.byPrice = products.stream()
+                    .filter(p -> p.getPriceProduct() != null)
+                    .sorted(Comparator.comparingDouble(Product::getPriceProduct))
+                    .toList();
+            this.sortedPrices = byPrice.stream().mapToDouble(Product::getPriceProduct).toArray();
+        }
+    }
+}
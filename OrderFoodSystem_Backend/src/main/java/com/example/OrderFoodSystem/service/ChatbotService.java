@@ -1,12 +1,11 @@
 package com.example.OrderFoodSystem.service;
 
+import com.example.OrderFoodSystem.dto.CartDTO;
 import com.example.OrderFoodSystem.dto.ChatbotDTO;
 import com.example.OrderFoodSystem.entity.*;
-import com.example.OrderFoodSystem.repository.*;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
@@ -17,19 +16,19 @@ import java.util.stream.Collectors;
 public class ChatbotService {
 
     @Autowired
-    private ProductRepository productRepository;
+    private OrderService orderService;
 
     @Autowired
-    private OrderRepository orderRepository;
+    private CartService cartService;
 
     @Autowired
-    private CustomerRepository customerRepository;
+    private BestSellerService bestSellerService;
 
     @Autowired
-    private OrderDetailRepository orderDetailRepository;
+    private CatalogCacheService catalogCacheService;
 
     @Autowired
-    private OrderService orderService;
+    private ProductSearchService productSearchService;
 
     private final Map<String, ChatSession> sessions = new ConcurrentHashMap<>();
 
@@ -73,8 +72,7 @@ public class ChatbotService {
     }
 
     private ChatbotDTO.Response handleFindProducts(ChatSession session, ChatbotDTO.Response response) {
-        List<Product> products = productRepository.findAll().stream()
-                .filter(p -> p.getIsActive() != null && p.getIsActive())
+        List<Product> products = catalogCacheService.getActiveProducts().stream()
                 .limit(5)
                 .collect(Collectors.toList());
 
@@ -101,7 +99,7 @@ public class ChatbotService {
             maxPrice = 50000;
         }
 
-        List<Product> products = productRepository.findByPriceProductLessThanEqualAndIsActiveTrue(maxPrice);
+        List<Product> products = catalogCacheService.getActiveProductsUpToPrice(maxPrice);
         session.setLastProductList(products);
         session.setLastIntent("PRICE_FILTER");
 
@@ -118,7 +116,7 @@ public class ChatbotService {
 
     private ChatbotDTO.Response handleSearchProduct(ChatSession session, ChatbotDTO.Response response, String message) {
         String query = message.replace("tìm", "").replace("có", "").replace("không", "").replace("món", "").trim();
-        List<Product> products = productRepository.findByNameProductContainingIgnoreCaseAndIsActiveTrue(query);
+        List<Product> products = productSearchService.search(query, 5);
 
         session.setLastProductList(products);
         session.setLastIntent("SEARCH_PRODUCT");
@@ -134,12 +132,13 @@ public class ChatbotService {
     }
 
     private ChatbotDTO.Response handleBestSellers(ChatSession session, ChatbotDTO.Response response) {
-        // Simple mock: just return 3 random active products since we don't have
-        // soldCount yet
-        List<Product> products = productRepository.findAll().stream()
-                .filter(p -> p.getIsActive() != null && p.getIsActive())
-                .limit(3)
-                .collect(Collectors.toList());
+        List<Product> products = bestSellerService.getBestSellers(null, 3);
+        if (products.isEmpty()) {
+            // Chưa có dữ liệu bán hàng: gợi ý vài món đang bán
+            products = catalogCacheService.getActiveProducts().stream()
+                    .limit(3)
+                    .collect(Collectors.toList());
+        }
 
         session.setLastProductList(products);
         session.setLastIntent("GET_BEST_SELLERS");
@@ -156,19 +155,15 @@ public class ChatbotService {
             return response;
         }
 
-        Optional<Order> pendingOrder = orderRepository.findAll().stream()
-                .filter(o -> o.getCustomer() != null && o.getCustomer().getIdCustomer().equals(session.getCustomerId())
-                        && "pending".equals(o.getStatus()))
-                .findFirst();
+        CartDTO cart = cartService.getCart(session.getCustomerId());
 
-        if (pendingOrder.isEmpty() || pendingOrder.get().getOrderDetails().isEmpty()) {
+        if (cart.getItems().isEmpty()) {
             response.setReply("Giỏ hàng của bạn đang trống.");
         } else {
-            Order order = pendingOrder.get();
-            String items = order.getOrderDetails().stream()
+            String items = cart.getItems().stream()
                     .map(d -> d.getProduct().getNameProduct() + " (x" + d.getQuantity() + ")")
                     .collect(Collectors.joining(", "));
-            response.setReply("Giỏ hàng của bạn đang có: " + items + ". Tổng cộng: " + order.getTotalPrice() + " VNĐ.");
+            response.setReply("Giỏ hàng của bạn đang có: " + items + ". Tổng cộng: " + cart.getTotalPrice() + " VNĐ.");
         }
         response.setIntent("CART_VIEW");
         return response;
@@ -197,10 +192,8 @@ public class ChatbotService {
             return response;
         }
 
-        // Logic to add to cart (using existing "pending" order logic)
         try {
-            Order cart = getOrCreateCart(session.getCustomerId());
-            addToOrder(cart, productToAdd);
+            cartService.addItem(session.getCustomerId(), productToAdd.getIdProduct(), 1, null);
             response.setReply("Đã thêm '" + productToAdd.getNameProduct() + "' vào giỏ hàng cho bạn rồi nhé!");
         } catch (Exception e) {
             response.setReply("Hệ thống gặp lỗi khi thêm món. Bạn vui lòng thử lại sau.");
@@ -216,16 +209,12 @@ public class ChatbotService {
             return response;
         }
 
-        List<Order> orders = orderRepository.findAll().stream()
-                .filter(o -> o.getCustomer() != null && o.getCustomer().getIdCustomer().equals(session.getCustomerId())
-                        && !"pending".equals(o.getStatus()))
-                .sorted((a, b) -> b.getIdOrder().compareTo(a.getIdOrder()))
-                .collect(Collectors.toList());
+        Optional<Order> latestOrder = orderService.findLatestPlacedOrder(session.getCustomerId());
 
-        if (orders.isEmpty()) {
+        if (latestOrder.isEmpty()) {
             response.setReply("Bạn chưa có đơn hàng nào được đặt.");
         } else {
-            Order lastOrder = orders.get(0);
+            Order lastOrder = latestOrder.get();
             response.setReply("Đơn hàng #" + lastOrder.getIdOrder() + " của bạn đang có trạng thái: "
                     + translateStatus(lastOrder.getStatus()));
         }
@@ -240,44 +229,6 @@ public class ChatbotService {
         return response;
     }
 
-    private Order getOrCreateCart(Long customerId) {
-        Optional<Order> pendingOrder = orderRepository.findAll().stream()
-                .filter(o -> o.getCustomer() != null && o.getCustomer().getIdCustomer().equals(customerId)
-                        && "pending".equals(o.getStatus()))
-                .findFirst();
-
-        if (pendingOrder.isPresent())
-            return pendingOrder.get();
-
-        Order newOrder = new Order();
-        Customer customer = customerRepository.findById(customerId).orElseThrow();
-        newOrder.setCustomer(customer);
-        newOrder.setStatus("pending");
-        newOrder.setOrderDate(LocalDateTime.now());
-        newOrder.setTotalPrice(0.0);
-        return orderRepository.save(newOrder);
-    }
-
-    private void addToOrder(Order order, Product product) {
-        Optional<OrderDetail> existingDetail = orderDetailRepository.findByOrderIdAndProductId(order.getIdOrder(),
-                product.getIdProduct());
-
-        if (existingDetail.isPresent()) {
-            OrderDetail detail = existingDetail.get();
-            detail.setQuantity(detail.getQuantity() + 1);
-            detail.setSubTotal(detail.getQuantity() * product.getPriceProduct());
-            orderDetailRepository.save(detail);
-        } else {
-            OrderDetail detail = new OrderDetail();
-            detail.setOrder(order);
-            detail.setProduct(product);
-            detail.setQuantity(1);
-            detail.setSubTotal(product.getPriceProduct());
-            orderDetailRepository.save(detail);
-        }
-        orderService.updateTotalPrice(order.getIdOrder());
-    }
-
     private String translateStatus(String status) {
         switch (status) {
             case "confirmed":
@@ -0,0 +1,24 @@
+package com.example.OrderFoodSystem.service;
+
+/**
+ * Trạng thái giao dịch tra cứu từ cổng thanh toán (MoMo query, VNPay querydr)
+ *
+ * @param transactionId mã giao dịch của cổng, null nếu chưa có
+ * @param amount        số tiền VND, null nếu cổng không trả về
+ * @param resultCode    mã kết quả gốc của cổng
+ */
+public record GatewayPaymentStatus(State state, String transactionId, Long amount, String resultCode) {
+
+    public enum State {
+        PAID,
+        FAILED,
+        // Người dùng chưa hoàn tất, hỏi lại ở lần đối soát sau
+        PENDING,
+        // Không tra cứu được (lỗi cổng, chữ ký...), hỏi lại ở lần sau
+        UNKNOWN
+    }
+
+    public static GatewayPaymentStatus unknown(String resultCode) {
+        return new GatewayPaymentStatus(State.UNKNOWN, null, null, resultCode);
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.OrderFoodSystem.service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ký HMAC và trả về chuỗi hex thường, dùng cho chữ ký MoMo (HmacSHA256) và VNPay (HmacSHA512).
+ *
+ * Mỗi (thuật toán, key) có một Mac đã init làm mẫu; mỗi thread dùng bản clone của mẫu cùng với
+ * buffer đầu vào/digest/hex riêng, nên một lần ký chỉ cấp phát chuỗi kết quả. Mac không thread-safe
+ * nên không được dùng chung giữa các thread.
+ */
+public final class HmacSigner {
+
+    public static final String HMAC_SHA256 = "HmacSHA256";
+    public static final String HMAC_SHA512 = "HmacSHA512";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int INITIAL_INPUT_SIZE = 1024;
+
+    private static final Map<String, HmacSigner> SIGNERS = new ConcurrentHashMap<>();
+
+    private final SecretKeySpec key;
+    private final Mac prototype;
+    private final ThreadLocal<Buffers> buffers;
+
+    private HmacSigner(String algorithm, String key) {
+        this.key = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), algorithm);
+        try {
+            prototype = Mac.getInstance(algorithm);
+            prototype.init(this.key);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot initialize " + algorithm, e);
+        }
+        buffers = ThreadLocal.withInitial(() -> new Buffers(newMac()));
+    }
+
+    /**
+     * Signer dùng chung cho (thuật toán, key), tạo một lần rồi cache
+     */
+    public static HmacSigner of(String algorithm, String key) {
+        return SIGNERS.computeIfAbsent(algorithm + ':' + key, id -> new HmacSigner(algorithm, key));
+    }
+
+    public static HmacSigner hmacSha256(String key) {
+        return of(HMAC_SHA256, key);
+    }
+
+    public static HmacSigner hmacSha512(String key) {
+        return of(HMAC_SHA512, key);
+    }
+
+    /**
+     * HMAC của data (UTF-8), dạng hex chữ thường
+     */
+    public String sign(String data) {
+        Buffers b = buffers.get();
+        Mac mac = b.mac;
+        int length = b.encode(data);
+        if (length >= 0) {
+            mac.update(b.input, 0, length);
+        } else {
+            mac.update(data.getBytes(StandardCharsets.UTF_8));
+        }
+        try {
+            mac.doFinal(b.digest, 0);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+        return toHex(b.digest, b.hex);
+    }
+
+    private Mac newMac() {
+        try {
+            return (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            // Provider không hỗ trợ clone: init lại từ đầu cho thread này
+            try {
+                Mac mac = Mac.getInstance(key.getAlgorithm());
+                mac.init(key);
+                return mac;
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException(ex);
+            }
+        }
+    }
+
+    private static String toHex(byte[] bytes, char[] out) {
+        for (int i = 0; i < bytes.length; i++) {
+            int v = bytes[i] & 0xff;
+            out[i * 2] = HEX[v >>> 4];
+            out[i * 2 + 1] = HEX[v & 0x0f];
+        }
+        return new String(out);
+    }
+
+    private static final class Buffers {
+        final Mac mac;
+        final byte[] digest;
+        final char[] hex;
+        byte[] input = new byte[INITIAL_INPUT_SIZE];
+
+        Buffers(Mac mac) {
+            this.mac = mac;
+            this.digest = new byte[mac.getMacLength()];
+            this.hex = new char[digest.length * 2];
+        }
+
+        /**
+         * Chép data vào input nếu toàn ký tự ASCII (chuỗi ký của MoMo/VNPay chủ yếu đã URL-encode).
+         *
+         * @return số byte đã chép, -1 nếu có ký tự ngoài ASCII
+         */
+        int encode(String data) {
+            int length = data.length();
+            if (input.length < length) {
+                input = new byte[Math.max(length, input.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                char c = data.charAt(i);
+                if (c >= 0x80) {
+                    return -1;
+                }
+                input[i] = (byte) c;
+            }
+            return length;
+        }
+    }
+}
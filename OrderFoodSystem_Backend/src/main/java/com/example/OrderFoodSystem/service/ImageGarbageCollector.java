@@ -0,0 +1,73 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.repository.ProductRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Dọn ảnh trong ImageStore không còn món nào tham chiếu.
+ *
+ * Số tham chiếu của mỗi hash được đếm từ Product.imageUrl (kể cả món đã xóa mềm, vì lịch sử
+ * đơn hàng vẫn hiển thị ảnh). Ảnh gốc và các bản thu nhỏ có hash không còn tham chiếu sẽ bị
+ * xóa, trừ các object mới ghi trong khoảng grace (ảnh vừa upload nhưng món chưa lưu xong).
+ */
+@Service
+public class ImageGarbageCollector {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageGarbageCollector.class);
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private ImageStore imageStore;
+
+    @Value("${image.store.gc-grace-ms:3600000}")
+    private long graceMillis;
+
+    /**
+     * Số món đang dùng mỗi ảnh, theo hash nội dung
+     */
+    public Map<String, Long> referenceCounts() {
+        Map<String, Long> counts = new HashMap<>();
+        for (ProductRepository.ImageReferenceRow row : productRepository.countImageReferences()) {
+            String hash = ImageStore.hashOf(row.getImageUrl());
+            if (hash != null) {
+                counts.merge(hash, row.getProductCount(), Long::sum);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return số object đã xóa
+     */
+    @Scheduled(initialDelayString = "${image.store.gc-ms:3600000}", fixedDelayString = "${image.store.gc-ms:3600000}")
+    public int collect() {
+        Map<String, Long> counts = referenceCounts();
+        long cutoff = System.currentTimeMillis() - graceMillis;
+        int deleted = 0;
+        try {
+            for (ImageStore.StoredObject object : imageStore.list()) {
+                String hash = ImageStore.hashOf(object.key());
+                // File không theo tên hash (ảnh UUID cũ) không do kho quản lý
+                if (hash == null || counts.getOrDefault(hash, 0L) > 0 || object.lastModified() > cutoff) {
+                    continue;
+                }
+                imageStore.delete(object.key());
+                deleted++;
+            }
+        } catch (IOException e) {
+            log.error("Image garbage collection stopped after {} deletions", deleted, e);
+        }
+        return deleted;
+    }
+}
@@ -0,0 +1,304 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Lưu ảnh món ăn upload vào ImageStore và tạo các bản thu nhỏ (thumbnail, card, detail).
+ *
+ * Ảnh gốc được ghi ngay trong request với key là hash nội dung (ảnh trùng nội dung chỉ
+ * được lưu một lần); việc giải mã và resize
+ * chạy trên một thread pool có giới hạn, xong thì ghi URL các bản thu nhỏ vào Product.
+ * Khi pool đầy, món ăn tạm dùng ảnh gốc cho đến lần upload sau.
+ */
+@Service
+public class ImageProcessingService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageProcessingService.class);
+
+    private static final float JPEG_QUALITY = 0.82f;
+
+    public enum Variant {
+        THUMB(160),
+        CARD(480),
+        DETAIL(1024);
+
+        private final int width;
+
+        Variant(int width) {
+            this.width = width;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        String suffix() {
+            return name().toLowerCase();
+        }
+    }
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private CatalogCacheService catalogCacheService;
+
+    @Autowired
+    private ImageStore imageStore;
+
+    private final ThreadPoolExecutor executor;
+    // Số điểm ảnh tối đa được giải mã: một file PNG vài MB có thể giải nén ra hàng GB
+    private final long maxPixels;
+
+    public ImageProcessingService(
+            @Value("${image.pipeline.threads:2}") int threads,
+            @Value("${image.pipeline.queue:50}") int queueSize,
+            @Value("${image.max-pixels:25000000}") long maxPixels) {
+        this.maxPixels = maxPixels;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-pipeline-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Lưu ảnh gốc với key là hash SHA-256 của nội dung
+     *
+     * @return URL của ảnh gốc, null nếu không có ảnh
+     */
+    public String storeOriginal(MultipartFile image) throws IOException {
+        if (image == null || image.isEmpty()) {
+            return null;
+        }
+
+        String contentType = image.getContentType();
+        if (contentType == null || !contentType.startsWith("image/")) {
+            throw new RuntimeException("Only image files are allowed");
+        }
+
+        byte[] bytes = image.getBytes();
+        // Chỉ đọc kích thước trong header, chưa giải mã ảnh
+        long pixels = pixelCount(bytes);
+        if (pixels > maxPixels) {
+            throw new RuntimeException("Image is too large (" + pixels + " pixels, max " + maxPixels + ")");
+        }
+        String key = sha256(bytes) + extension(contentType, image.getOriginalFilename());
+        // Ghi đè cả khi đã có: cùng key nên không tốn thêm chỗ, và thời điểm ghi mới giúp
+        // ImageGarbageCollector không xóa ảnh trước khi món kịp lưu tham chiếu tới nó
+        imageStore.put(key, bytes, contentType);
+        return imageStore.url(key);
+    }
+
+    /**
+     * Tạo các bản thu nhỏ ở background rồi cập nhật Product (chỉ khi ảnh của món chưa đổi)
+     */
+    public void generateVariantsAsync(Long idProduct, String imageUrl) {
+        // Ảnh cũ (tên UUID) không do kho quản lý thì giữ nguyên
+        if (idProduct == null || ImageStore.hashOf(imageUrl) == null) {
+            return;
+        }
+        try {
+            executor.execute(() -> generateVariants(idProduct, imageUrl));
+        } catch (RejectedExecutionException e) {
+            log.warn("Image pipeline is full, product {} keeps its original image", idProduct);
+        }
+    }
+
+    private void generateVariants(Long idProduct, String imageUrl) {
+        try {
+            String key = imageUrl.substring(imageUrl.lastIndexOf('/') + 1);
+            String hash = ImageStore.hashOf(key);
+            // URL của bản thu nhỏ dùng chung phần đầu với URL ảnh gốc
+            String baseUrl = imageUrl.substring(0, imageUrl.length() - key.length());
+
+            String[] urls = new String[Variant.values().length];
+            BufferedImage source = null;
+            for (Variant variant : Variant.values()) {
+                String variantKey = hash + "-" + variant.suffix() + ".jpg";
+                if (!imageStore.exists(variantKey)) {
+                    if (source == null) {
+                        source = decode(imageStore.read(key));
+                        if (source == null) {
+                            log.warn("Unsupported image format for product {}: {}", idProduct, key);
+                            return;
+                        }
+                    }
+                    imageStore.put(variantKey, encodeJpeg(resize(source, variant.getWidth())), "image/jpeg");
+                }
+                urls[variant.ordinal()] = baseUrl + variantKey;
+            }
+
+            int updated = productRepository.updateImageVariants(idProduct, imageUrl,
+                    urls[Variant.THUMB.ordinal()], urls[Variant.CARD.ordinal()], urls[Variant.DETAIL.ordinal()]);
+            if (updated > 0) {
+                catalogCacheService.refresh();
+            }
+        } catch (Exception e) {
+            log.error("Failed to generate image variants for product {}", idProduct, e);
+        }
+    }
+
+    /**
+     * Số điểm ảnh của ảnh đầu tiên, đọc từ header; 0 nếu ImageIO không đọc được định dạng này
+     */
+    private static long pixelCount(byte[] bytes) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return 0;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return (long) reader.getWidth(0) * reader.getHeight(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Giải mã ảnh sau khi kiểm tra kích thước trong header (ảnh lưu trước khi có giới hạn vẫn có thể quá lớn)
+     *
+     * @return null nếu không hỗ trợ định dạng hoặc ảnh vượt quá image.max-pixels
+     */
+    private BufferedImage decode(byte[] bytes) throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(new ByteArrayInputStream(bytes))) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                if (pixels > maxPixels) {
+                    log.warn("Image has {} pixels, over the {} limit", pixels, maxPixels);
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Thu nhỏ theo chiều rộng (không phóng to), giảm dần từng nửa để ảnh không bị răng cưa
+    private static BufferedImage resize(BufferedImage source, int targetWidth) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        if (width > targetWidth) {
+            height = Math.max(1, (int) Math.round((double) height * targetWidth / width));
+            width = targetWidth;
+        }
+
+        BufferedImage current = source;
+        int currentWidth = source.getWidth();
+        int currentHeight = source.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+
+            BufferedImage step = new BufferedImage(currentWidth, currentHeight, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = step.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            // Nền trắng cho ảnh PNG trong suốt
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, currentWidth, currentHeight);
+            graphics.drawImage(current, 0, 0, currentWidth, currentHeight, null);
+            graphics.dispose();
+            current = step;
+        } while (currentWidth != width || currentHeight != height);
+        return current;
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ImageWriteParam param = writer.getDefaultWriteParam();
+        param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        param.setCompressionQuality(JPEG_QUALITY);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ImageOutputStream imageOut = ImageIO.createImageOutputStream(out)) {
+            writer.setOutput(imageOut);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return out.toByteArray();
+    }
+
+    // Đuôi file theo content type để cùng nội dung luôn ra cùng key (.jpg/.jpeg -> .jpg)
+    private static String extension(String contentType, String originalFilename) {
+        switch (contentType.toLowerCase()) {
+            case "image/jpeg":
+            case "image/jpg":
+                return ".jpg";
+            case "image/png":
+                return ".png";
+            case "image/gif":
+                return ".gif";
+            case "image/webp":
+                return ".webp";
+            default:
+                break;
+        }
+        if (originalFilename != null && originalFilename.contains(".")) {
+            String extension = originalFilename.substring(originalFilename.lastIndexOf(".")).toLowerCase();
+            if (extension.matches("\\.[a-z0-9]{1,5}")) {
+                return extension;
+            }
+        }
+        return "";
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.OrderFoodSystem.service;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Kho lưu ảnh theo nội dung: key của ảnh gốc là "<sha256>.<ext>", các bản thu nhỏ là
+ * "<sha256>-<variant>.jpg". Cùng một nội dung luôn có cùng key nên không bị lưu trùng.
+ */
+public interface ImageStore {
+
+    Pattern HASHED_KEY = Pattern.compile("([0-9a-f]{64})(-[a-z]+)?(\\.[a-z0-9]{1,5})?");
+
+    boolean exists(String key) throws IOException;
+
+    byte[] read(String key) throws IOException;
+
+    void put(String key, byte[] data, String contentType) throws IOException;
+
+    void delete(String key) throws IOException;
+
+    /**
+     * Tất cả object trong kho (dùng cho việc dọn ảnh không còn được tham chiếu)
+     */
+    List<StoredObject> list() throws IOException;
+
+    /**
+     * URL công khai của key
+     */
+    String url(String key);
+
+    /**
+     * Hash nội dung trong key hoặc URL (phần tên file cuối cùng), null nếu không phải ảnh do kho quản lý
+     */
+    static String hashOf(String keyOrUrl) {
+        if (keyOrUrl == null) {
+            return null;
+        }
+        String name = keyOrUrl.substring(keyOrUrl.lastIndexOf('/') + 1);
+        Matcher matcher = HASHED_KEY.matcher(name);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
+    record StoredObject(String key, long lastModified) {
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.OrderFoodSystem.service;
+
+/**
+ * Đơn hàng không thể chuyển sang trạng thái yêu cầu từ trạng thái hiện tại
+ */
+public class InvalidStatusTransitionException extends RuntimeException {
+
+    public InvalidStatusTransitionException(Long orderId, String fromStatus, String toStatus) {
+        super("Không thể chuyển đơn hàng #" + orderId + " từ '" + fromStatus + "' sang '" + toStatus + "'");
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.OrderFoodSystem.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Kho ảnh trên ổ đĩa local (thư mục uploads/, được trả bởi ControllerUpload)
+ */
+@Service
+@ConditionalOnProperty(name = "image.store.type", havingValue = "local", matchIfMissing = true)
+public class LocalImageStore implements ImageStore {
+
+    private final Path root;
+    private final String publicBaseUrl;
+
+    public LocalImageStore(
+            @Value("${image.store.local.dir:uploads}") String dir,
+            @Value("${image.store.public-base-url:}") String publicBaseUrl) {
+        this.root = Paths.get(dir).toAbsolutePath().normalize();
+        this.publicBaseUrl = publicBaseUrl.isBlank() || publicBaseUrl.endsWith("/")
+                ? publicBaseUrl
+                : publicBaseUrl + "/";
+    }
+
+    @Override
+    public boolean exists(String key) {
+        return Files.isRegularFile(resolve(key));
+    }
+
+    @Override
+    public byte[] read(String key) throws IOException {
+        return Files.readAllBytes(resolve(key));
+    }
+
+    @Override
+    public void put(String key, byte[] data, String contentType) throws IOException {
+        Path path = resolve(key);
+        Files.createDirectories(root);
+        // Ghi ra file tạm rồi đổi tên để request khác không đọc được file ghi dở
+        Path temp = Files.createTempFile(root, "upload-", ".tmp");
+        try {
+            Files.write(temp, data);
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        Files.deleteIfExists(resolve(key));
+    }
+
+    @Override
+    public List<StoredObject> list() throws IOException {
+        List<StoredObject> objects = new ArrayList<>();
+        if (!Files.isDirectory(root)) {
+            return objects;
+        }
+        try (Stream<Path> files = Files.list(root)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file)) {
+                    objects.add(new StoredObject(file.getFileName().toString(),
+                            Files.getLastModifiedTime(file).toMillis()));
+                }
+            }
+        }
+        return objects;
+    }
+
+    @Override
+    public String url(String key) {
+        if (!publicBaseUrl.isBlank()) {
+            return publicBaseUrl + key;
+        }
+        try {
+            // Không cấu hình thì lấy theo địa chỉ mà client đang gọi tới
+            return ServletUriComponentsBuilder.fromCurrentContextPath().path("/uploads/").path(key).toUriString();
+        } catch (IllegalStateException e) {
+            return "/uploads/" + key;
+        }
+    }
+
+    private Path resolve(String key) {
+        Path path = root.resolve(key).normalize();
+        if (!path.getParent().equals(root)) {
+            throw new IllegalArgumentException("Invalid image key: " + key);
+        }
+        return path;
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.entity.Product;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * JSON của menu (/products, /products/category/{id}) được serialize sẵn một lần cho mỗi
+ * version của catalog, kèm bản nén gzip và ETag tính từ nội dung.
+ * Giữa hai lần sửa menu, mọi request chỉ trả lại các byte đã có.
+ */
+@Service
+public class MenuPayloadService {
+
+    private static final int MAX_CACHED_PAYLOADS = 1000;
+
+    @Autowired
+    private CatalogCacheService catalogCacheService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private volatile VersionedPayloads cached;
+
+    public Payload getAllProducts() {
+        return get("all", null);
+    }
+
+    public Payload getProductsByCategory(Long categoryId) {
+        return get("category:" + categoryId, categoryId);
+    }
+
+    private Payload get(String key, Long categoryId) {
+        // Đọc version trước danh sách món: nếu catalog đổi giữa chừng, lần gọi sau sẽ thấy version mới và serialize lại
+        long version = catalogCacheService.getVersion();
+        VersionedPayloads current = cached;
+        if (current == null || current.version != version) {
+            current = new VersionedPayloads(version);
+            cached = current;
+        }
+
+        Payload payload = current.payloads.get(key);
+        if (payload == null) {
+            List<Product> products = categoryId == null
+                    ? catalogCacheService.getActiveProducts()
+                    : catalogCacheService.getActiveProductsByCategory(categoryId);
+            payload = serialize(products);
+            if (current.payloads.size() < MAX_CACHED_PAYLOADS) {
+                current.payloads.putIfAbsent(key, payload);
+            }
+        }
+        return payload;
+    }
+
+    private Payload serialize(List<Product> products) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(products);
+            return new Payload(json, gzip(json), contentHash(json));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Error serializing menu", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new RuntimeException("Error compressing menu", e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String contentHash(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            return HexFormat.of().formatHex(digest, 0, 16);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static class VersionedPayloads {
+        private final long version;
+        private final Map<String, Payload> payloads = new ConcurrentHashMap<>();
+
+        VersionedPayloads(long version) {
+            this.version = version;
+        }
+    }
+
+    /**
+     * Nội dung JSON đã serialize và bản gzip, mỗi bản có ETag mạnh riêng
+     */
+    public static class Payload {
+        private final byte[] json;
+        private final byte[] gzip;
+        private final String etag;
+        private final String gzipEtag;
+
+        Payload(byte[] json, byte[] gzip, String hash) {
+            this.json = json;
+            this.gzip = gzip;
+            this.etag = "\"" + hash + "\"";
+            this.gzipEtag = "\"" + hash + "-gz\"";
+        }
+
+        public byte[] getJson() {
+            return json;
+        }
+
+        public byte[] getGzip() {
+            return gzip;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public String getGzipEtag() {
+            return gzipEtag;
+        }
+
+        /**
+         * Header If-None-Match có chứa ETag của một trong hai bản (hoặc "*") hay không
+         */
+        public boolean matches(String ifNoneMatch) {
+            if (ifNoneMatch == null || ifNoneMatch.isBlank()) {
+                return false;
+            }
+            for (String tag : ifNoneMatch.split(",")) {
+                String candidate = tag.trim();
+                if (candidate.startsWith("W/")) {
+                    candidate = candidate.substring(2);
+                }
+                if (candidate.equals("*") || candidate.equals(etag) || candidate.equals(gzipEtag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
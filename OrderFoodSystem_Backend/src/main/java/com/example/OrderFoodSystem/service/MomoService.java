@@ -1,30 +1,246 @@
 package com.example.OrderFoodSystem.service;
 
+import com.example.OrderFoodSystem.config.CorrelationIdFilter;
 import com.example.OrderFoodSystem.config.MomoConfig;
 import com.example.OrderFoodSystem.entity.Order;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.SignalType;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.nio.charset.StandardCharsets;
-import java.util.Formatter;
+import java.security.MessageDigest;
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Client của cổng MoMo.
+ *
+ * Lời gọi tạo/tra cứu thanh toán không chặn thread: dùng WebClient trên connection pool riêng, có timeout
+ * kết nối/đọc, giới hạn số lời gọi đồng thời (bulkhead) và circuit breaker. Khi MoMo chậm hoặc lỗi,
+ * lời gọi thất bại nhanh với PaymentGatewayUnavailableException thay vì giữ thread chờ.
+ */
 @Service
 public class MomoService {
 
+    private static final Logger log = LoggerFactory.getLogger(MomoService.class);
+
+    private static final ParameterizedTypeReference<Map<String, Object>> RESPONSE_TYPE =
+            new ParameterizedTypeReference<>() {
+            };
+    // Mã kết quả tra cứu: giao dịch đang chờ người dùng xác nhận/đang xử lý
+    private static final Set<Integer> PENDING_RESULT_CODES = Set.of(1000, 7000, 7002, 9000);
+    // Các trường ký của phản hồi tra cứu (sau accessKey), theo thứ tự tên như tài liệu MoMo
+    private static final String[] QUERY_RESPONSE_FIELDS = {"amount", "extraData", "message", "orderId",
+            "partnerCode", "payType", "requestId", "responseTime", "resultCode", "transId"};
+
+    private final String createUrl;
+    private final String queryUrl;
+    private final ConnectionProvider connectionProvider;
     private final WebClient webClient;
+    private final Duration callTimeout;
+    private final int maxConcurrent;
+    private final Semaphore bulkhead;
+    private final CircuitBreaker circuitBreaker;
+
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder bulkheadRejected = new LongAdder();
+
+    public MomoService(
+            @Value("${momo.create-url:" + MomoConfig.CREATE_ORDER_URL + "}") String createUrl,
+            @Value("${momo.query-url:" + MomoConfig.QUERY_ORDER_URL + "}") String queryUrl,
+            @Value("${momo.connect-timeout-ms:3000}") int connectTimeoutMillis,
+            @Value("${momo.read-timeout-ms:10000}") long readTimeoutMillis,
+            @Value("${momo.max-connections:50}") int maxConnections,
+            @Value("${momo.max-concurrent:20}") int maxConcurrent,
+            @Value("${momo.circuit.failure-threshold:5}") int failureThreshold,
+            @Value("${momo.circuit.open-ms:30000}") long openMillis) {
+        this.createUrl = createUrl;
+        this.queryUrl = queryUrl;
+        // Tổng thời gian một lời gọi: lấy kết nối + kết nối + đọc phản hồi
+        this.callTimeout = Duration.ofMillis(2L * connectTimeoutMillis + readTimeoutMillis);
+        this.connectionProvider = ConnectionProvider.builder("momo")
+                .maxConnections(maxConnections)
+                .pendingAcquireTimeout(Duration.ofMillis(connectTimeoutMillis))
+                .maxIdleTime(Duration.ofSeconds(30))
+                .evictInBackground(Duration.ofSeconds(60))
+                .build();
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connectTimeoutMillis)
+                .responseTimeout(Duration.ofMillis(readTimeoutMillis));
+        this.webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+        this.maxConcurrent = maxConcurrent;
+        this.bulkhead = new Semaphore(maxConcurrent);
+        this.circuitBreaker = new CircuitBreaker(failureThreshold, openMillis);
+    }
+
+    /**
+     * Tạo yêu cầu thanh toán và trả về payUrl khi MoMo phản hồi.
+     * Future lỗi với PaymentGatewayUnavailableException nếu MoMo không dùng được lúc này.
+     */
+    public CompletableFuture<String> createPaymentRequest(Order order) {
+        Map<String, Object> body;
+        try {
+            body = buildCreateRequest(order);
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return post(createUrl, body).thenApply(this::payUrlOf);
+    }
+
+    /**
+     * Tra cứu trạng thái giao dịch theo mã đơn đã gửi sang MoMo (paymentRef).
+     * Phản hồi sai chữ ký hoặc của orderId khác được coi là UNKNOWN, không dùng để xác nhận/hủy đơn.
+     */
+    public CompletableFuture<GatewayPaymentStatus> queryPaymentStatus(String paymentRef) {
+        String requestId = UUID.randomUUID().toString();
+        String rawHash = "accessKey=" + MomoConfig.ACCESS_KEY +
+                "&orderId=" + paymentRef +
+                "&partnerCode=" + MomoConfig.PARTNER_CODE +
+                "&requestId=" + requestId;
+
+        Map<String, Object> body = new HashMap<>();
+        body.put("partnerCode", MomoConfig.PARTNER_CODE);
+        body.put("requestId", requestId);
+        body.put("orderId", paymentRef);
+        body.put("lang", "vi");
+        body.put("signature", hmacSha256(rawHash, MomoConfig.SECRET_KEY));
+        return post(queryUrl, body).thenApply(response ->
+                response != null && verifyQueryResponse(response) && paymentRef.equals(response.get("orderId"))
+                        ? statusOf(response)
+                        : GatewayPaymentStatus.unknown("INVALID_SIGNATURE"));
+    }
+
+    boolean verifyQueryResponse(Map<String, Object> response) {
+        if (!(response.get("signature") instanceof String signature)) {
+            return false;
+        }
+        StringBuilder rawHash = new StringBuilder(256).append("accessKey=").append(MomoConfig.ACCESS_KEY);
+        for (String field : QUERY_RESPONSE_FIELDS) {
+            Object value = response.get(field);
+            rawHash.append('&').append(field).append('=').append(value != null ? value : "");
+        }
+        String calculatedSignature = hmacSha256(rawHash.toString(), MomoConfig.SECRET_KEY);
+        return MessageDigest.isEqual(calculatedSignature.getBytes(StandardCharsets.US_ASCII),
+                signature.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // Gọi MoMo qua bulkhead và circuit breaker
+    private CompletableFuture<Map<String, Object>> post(String url, Map<String, Object> body) {
+        if (!bulkhead.tryAcquire()) {
+            bulkheadRejected.increment();
+            return CompletableFuture.failedFuture(
+                    new PaymentGatewayUnavailableException("MoMo đang quá tải, vui lòng thử lại sau"));
+        }
+        if (!circuitBreaker.tryAcquire()) {
+            bulkhead.release();
+            return CompletableFuture.failedFuture(
+                    new PaymentGatewayUnavailableException("MoMo tạm thời không khả dụng, vui lòng thử lại sau"));
+        }
 
-    public MomoService() {
-        this.webClient = WebClient.builder().baseUrl(MomoConfig.CREATE_ORDER_URL).build();
+        // Callback chạy trên thread của reactor-netty, mang theo correlation id của request gọi
+        String correlationId = MDC.get(CorrelationIdFilter.MDC_KEY);
+        return webClient.post()
+                .uri(url)
+                .bodyValue(body)
+                .retrieve()
+                .bodyToMono(RESPONSE_TYPE)
+                .timeout(callTimeout)
+                .doOnSuccess(response -> {
+                    succeeded.increment();
+                    circuitBreaker.onSuccess();
+                })
+                .onErrorMap(this::isGatewayFailure, e -> {
+                    failed.increment();
+                    circuitBreaker.onFailure();
+                    logFailure(correlationId, url, body.get("orderId"), e);
+                    return new PaymentGatewayUnavailableException("MoMo không phản hồi: " + e.getMessage(), e);
+                })
+                .doOnError(e -> {
+                    // Lỗi 4xx: MoMo vẫn hoạt động, không tính vào circuit breaker
+                    if (!(e instanceof PaymentGatewayUnavailableException)) {
+                        circuitBreaker.onSuccess();
+                    }
+                })
+                .doFinally(signal -> {
+                    if (signal == SignalType.CANCEL) {
+                        circuitBreaker.release();
+                    }
+                    bulkhead.release();
+                })
+                .toFuture();
+    }
+
+    // Timeout, lỗi kết nối và 5xx được tính là MoMo gặp sự cố
+    private static void logFailure(String correlationId, String url, Object orderId, Throwable e) {
+        if (correlationId != null) {
+            MDC.put(CorrelationIdFilter.MDC_KEY, correlationId);
+        }
+        try {
+            log.warn("MoMo call to {} failed for orderId={}: {}", url, orderId, e.toString());
+        } finally {
+            MDC.remove(CorrelationIdFilter.MDC_KEY);
+        }
+    }
+
+    private boolean isGatewayFailure(Throwable e) {
+        if (e instanceof WebClientResponseException responseException) {
+            return responseException.getStatusCode().is5xxServerError();
+        }
+        return e instanceof WebClientRequestException || e instanceof TimeoutException;
+    }
+
+    private String payUrlOf(Map<String, Object> response) {
+        if (response != null && response.get("payUrl") != null) {
+            return (String) response.get("payUrl");
+        }
+        String message = response != null ? (String) response.get("message") : "Unknown error";
+        throw new RuntimeException("MoMo Error: " + message);
     }
 
-    public String createPaymentRequest(Order order) throws Exception {
+    // resultCode 0 là đã thanh toán, mã chờ xử lý hỏi lại sau, còn lại là thất bại/hết hạn
+    private GatewayPaymentStatus statusOf(Map<String, Object> response) {
+        if (response == null || !(response.get("resultCode") instanceof Number code)) {
+            return GatewayPaymentStatus.unknown(null);
+        }
+        int resultCode = code.intValue();
+        Object transId = response.get("transId");
+        String transactionId = transId != null && !"0".equals(String.valueOf(transId)) ? String.valueOf(transId) : null;
+        Long amount = response.get("amount") instanceof Number n ? n.longValue() : null;
+        GatewayPaymentStatus.State state = resultCode == 0 ? GatewayPaymentStatus.State.PAID
+                : PENDING_RESULT_CODES.contains(resultCode) ? GatewayPaymentStatus.State.PENDING
+                : GatewayPaymentStatus.State.FAILED;
+        return new GatewayPaymentStatus(state, transactionId, amount, String.valueOf(resultCode));
+    }
+
+    private Map<String, Object> buildCreateRequest(Order order) throws Exception {
         String requestId = UUID.randomUUID().toString();
-        String orderId = order.getIdOrder() + "_" + System.currentTimeMillis();
+        String orderId = order.getPaymentRef() != null
+                ? order.getPaymentRef()
+                : order.getIdOrder() + "_" + System.currentTimeMillis();
         String orderInfo = "Thanh toán đơn hàng #" + order.getIdOrder();
         String amount = String.valueOf(Math.round(order.getTotalPrice()));
         String extraData = ""; // Can pass base64 encoded JSON here
@@ -57,20 +273,23 @@ public class MomoService {
         body.put("extraData", extraData);
         body.put("requestType", "captureWallet");
         body.put("signature", signature);
+        return body;
+    }
 
-        @SuppressWarnings("unchecked")
-        Map<String, Object> response = webClient.post()
-                .bodyValue(body)
-                .retrieve()
-                .bodyToMono(Map.class)
-                .block();
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("circuit", circuitBreaker.getState());
+        stats.put("circuitRejected", circuitBreaker.getRejected());
+        stats.put("inFlight", maxConcurrent - bulkhead.availablePermits());
+        stats.put("bulkheadRejected", bulkheadRejected.sum());
+        stats.put("succeeded", succeeded.sum());
+        stats.put("failed", failed.sum());
+        return stats;
+    }
 
-        if (response != null && response.containsKey("payUrl")) {
-            return (String) response.get("payUrl");
-        } else {
-            String message = response != null ? (String) response.get("message") : "Unknown error";
-            throw new RuntimeException("MoMo Error: " + message);
-        }
+    @PreDestroy
+    public void shutdown() {
+        connectionProvider.dispose();
     }
 
     public boolean verifySignature(Map<String, String> data) throws Exception {
@@ -105,21 +324,7 @@ public class MomoService {
         return calculatedSignature.equalsIgnoreCase(signature);
     }
 
-    private String hmacSha256(String data, String key) throws Exception {
-        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
-        SecretKeySpec secretKeySpec = new SecretKeySpec(keyBytes, "HmacSHA256");
-        Mac mac = Mac.getInstance("HmacSHA256");
-        mac.init(secretKeySpec);
-        byte[] rawHmac = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
-        return toHexString(rawHmac);
-    }
-
-    private String toHexString(byte[] bytes) {
-        try (Formatter formatter = new Formatter()) {
-            for (byte b : bytes) {
-                formatter.format("%02x", b);
-            }
-            return formatter.toString();
-        }
+    private String hmacSha256(String data, String key) {
+        return HmacSigner.hmacSha256(key).sign(data);
     }
 }
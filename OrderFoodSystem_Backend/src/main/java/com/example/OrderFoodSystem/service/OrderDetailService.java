@@ -1,11 +1,40 @@
 package com.example.OrderFoodSystem.service;
 
+import com.example.OrderFoodSystem.dto.CartBatchDTO;
+import com.example.OrderFoodSystem.entity.Order;
 import com.example.OrderFoodSystem.entity.OrderDetail;
+import com.example.OrderFoodSystem.entity.OrderStatus;
+import com.example.OrderFoodSystem.entity.Product;
+import com.example.OrderFoodSystem.repository.OrderDetailRepository;
+import com.example.OrderFoodSystem.repository.OrderRepository;
+import com.example.OrderFoodSystem.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Service
 public class OrderDetailService {
 
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderDetailRepository orderDetailRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private OrderPricingService orderPricingService;
+
     public Double calculateSubTotal(OrderDetail orderDetail) {
         if (orderDetail.getProduct() == null || orderDetail.getProduct().getPriceProduct() == null) {
             throw new RuntimeException("Product or price is missing");
@@ -21,4 +50,199 @@ public class OrderDetailService {
         Double subTotal = calculateSubTotal(orderDetail);
         orderDetail.setSubTotal(subTotal);
     }
+
+    /**
+     * Thêm món vào đơn (cộng dồn số lượng nếu món đã có)
+     */
+    @Transactional
+    public OrderDetail addItem(Long orderId, Long productId, int quantity, String note) {
+        Order order = loadPending(orderId);
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new RuntimeException("Product not found with id " + productId));
+
+        // Kiểm tra xem món này đã có trong đơn chưa
+        OrderDetail detail = orderDetailRepository.findByOrderIdAndProductId(orderId, productId)
+                .orElseGet(() -> {
+                    OrderDetail created = new OrderDetail(0, 0.0);
+                    created.setOrder(order);
+                    created.setProduct(product);
+                    return created;
+                });
+        double oldSubTotal = detail.getSubTotal() != null ? detail.getSubTotal() : 0.0;
+
+        detail.setQuantity(detail.getQuantity() + quantity);
+        if (note != null) {
+            detail.setNote(note);
+        }
+        setCalculatedSubTotal(detail);
+        OrderDetail saved = orderDetailRepository.save(detail);
+
+        orderPricingService.applyLineDelta(order, saved.getSubTotal() - oldSubTotal);
+        orderRepository.save(order);
+        return saved;
+    }
+
+    /**
+     * Sửa số lượng (và món nếu productId khác null) của một dòng
+     */
+    @Transactional
+    public OrderDetail updateItem(Long orderDetailId, int quantity, Long productId) {
+        OrderDetail detail = orderDetailRepository.findById(orderDetailId)
+                .orElseThrow(() -> new RuntimeException("OrderDetail not found with id " + orderDetailId));
+        Order order = loadPending(detail.getOrder().getIdOrder());
+        double oldSubTotal = detail.getSubTotal() != null ? detail.getSubTotal() : 0.0;
+
+        detail.setQuantity(quantity);
+        if (productId != null) {
+            Product product = productRepository.findById(productId)
+                    .orElseThrow(() -> new RuntimeException("Product not found with id " + productId));
+            detail.setProduct(product);
+        }
+        setCalculatedSubTotal(detail);
+        OrderDetail saved = orderDetailRepository.save(detail);
+
+        orderPricingService.applyLineDelta(order, saved.getSubTotal() - oldSubTotal);
+        orderRepository.save(order);
+        return saved;
+    }
+
+    @Transactional
+    public void removeItem(Long orderDetailId) {
+        OrderDetail detail = orderDetailRepository.findById(orderDetailId)
+                .orElseThrow(() -> new RuntimeException("OrderDetail not found with id " + orderDetailId));
+        Order order = loadPending(detail.getOrder().getIdOrder());
+
+        order.getOrderDetails().remove(detail);
+        orderDetailRepository.delete(detail);
+
+        orderPricingService.applyLineDelta(order, -(detail.getSubTotal() != null ? detail.getSubTotal() : 0.0));
+        orderRepository.save(order);
+    }
+
+    /**
+     * Áp dụng nhiều thao tác thêm/sửa/xóa món vào giỏ hàng trong một transaction.
+     * Món ăn mới được nạp bằng một câu IN, tổng tiền chỉ cập nhật một lần ở cuối.
+     * Một thao tác không hợp lệ làm hủy toàn bộ batch.
+     */
+    @Transactional
+    public Order applyBatch(Long orderId, List<CartBatchDTO.Operation> operations) {
+        // Thêm/sửa theo món ăn cần idProduct khi không chỉ rõ idOrderDetail
+        for (CartBatchDTO.Operation op : operations) {
+            if ((CartBatchDTO.OP_ADD.equals(op.getOp()) || CartBatchDTO.OP_SET.equals(op.getOp()))
+                    && op.getIdOrderDetail() == null && op.getIdProduct() == null) {
+                throw new RuntimeException("Thiếu idProduct cho thao tác " + op.getOp());
+            }
+        }
+        Order order = loadPending(orderId);
+        if (order.getOrderDetails() == null) {
+            order.setOrderDetails(new ArrayList<>());
+        }
+
+        Map<Long, OrderDetail> byProduct = new HashMap<>();
+        Map<Long, OrderDetail> byId = new HashMap<>();
+        for (OrderDetail detail : order.getOrderDetails()) {
+            byProduct.put(detail.getProduct().getIdProduct(), detail);
+            byId.put(detail.getIdOrderDetail(), detail);
+        }
+
+        // Chỉ món chưa có trong giỏ mới cần nạp từ database
+        Set<Long> newProductIds = operations.stream()
+                .filter(op -> CartBatchDTO.OP_ADD.equals(op.getOp()) || CartBatchDTO.OP_SET.equals(op.getOp()))
+                .map(CartBatchDTO.Operation::getIdProduct)
+                .filter(id -> id != null && !byProduct.containsKey(id))
+                .collect(Collectors.toSet());
+        Map<Long, Product> products = newProductIds.isEmpty()
+                ? Map.of()
+                : productRepository.findAllById(newProductIds).stream()
+                        .collect(Collectors.toMap(Product::getIdProduct, Function.identity()));
+
+        double delta = 0;
+        for (CartBatchDTO.Operation op : operations) {
+            OrderDetail detail = op.getIdOrderDetail() != null
+                    ? byId.get(op.getIdOrderDetail())
+                    : byProduct.get(op.getIdProduct());
+            if (op.getIdOrderDetail() != null && detail == null) {
+                throw new RuntimeException("OrderDetail not found with id " + op.getIdOrderDetail());
+            }
+            int quantity = op.getQuantity() != null ? op.getQuantity() : 0;
+            double oldSubTotal = detail != null && detail.getSubTotal() != null ? detail.getSubTotal() : 0.0;
+
+            switch (op.getOp() != null ? op.getOp() : "") {
+                case CartBatchDTO.OP_ADD:
+                    if (quantity <= 0) {
+                        throw new RuntimeException("Số lượng thêm phải lớn hơn 0");
+                    }
+                    if (detail == null) {
+                        detail = newDetail(order, products, op.getIdProduct());
+                        byProduct.put(op.getIdProduct(), detail);
+                    }
+                    detail.setQuantity(detail.getQuantity() + quantity);
+                    break;
+                case CartBatchDTO.OP_SET:
+                    if (quantity < 0) {
+                        throw new RuntimeException("Số lượng không hợp lệ");
+                    }
+                    if (quantity == 0) {
+                        remove(order, byProduct, byId, detail);
+                        delta -= oldSubTotal;
+                        continue;
+                    }
+                    if (detail == null) {
+                        detail = newDetail(order, products, op.getIdProduct());
+                        byProduct.put(op.getIdProduct(), detail);
+                    }
+                    detail.setQuantity(quantity);
+                    break;
+                case CartBatchDTO.OP_REMOVE:
+                    remove(order, byProduct, byId, detail);
+                    delta -= oldSubTotal;
+                    continue;
+                default:
+                    throw new RuntimeException("Thao tác không hợp lệ: " + op.getOp());
+            }
+
+            if (op.getNote() != null) {
+                detail.setNote(op.getNote());
+            }
+            setCalculatedSubTotal(detail);
+            delta += detail.getSubTotal() - oldSubTotal;
+        }
+
+        orderPricingService.applyLineDelta(order, delta);
+        return orderRepository.save(order);
+    }
+
+    // Chỉ sửa món của đơn chưa đặt: đơn đã đặt đã được tính vào daily_sales_rollup theo các dòng hiện có
+    private Order loadPending(Long orderId) {
+        Order order = orderPricingService.loadForUpdate(orderId);
+        if (OrderStatus.of(order.getStatus()) != OrderStatus.PENDING) {
+            throw new RuntimeException("Chỉ có thể sửa món của đơn chưa đặt (pending)");
+        }
+        return order;
+    }
+
+    private OrderDetail newDetail(Order order, Map<Long, Product> products, Long idProduct) {
+        Product product = products.get(idProduct);
+        if (product == null || !Boolean.TRUE.equals(product.getIsActive())) {
+            throw new RuntimeException("Product not found with id " + idProduct);
+        }
+        OrderDetail detail = new OrderDetail(0, 0.0);
+        detail.setOrder(order);
+        detail.setProduct(product);
+        order.getOrderDetails().add(detail);
+        return detail;
+    }
+
+    private void remove(Order order, Map<Long, OrderDetail> byProduct, Map<Long, OrderDetail> byId,
+            OrderDetail detail) {
+        if (detail == null) {
+            return;
+        }
+        order.getOrderDetails().remove(detail);
+        byProduct.remove(detail.getProduct().getIdProduct());
+        if (detail.getIdOrderDetail() != null) {
+            byId.remove(detail.getIdOrderDetail());
+            orderDetailRepository.delete(detail);
+        }
+    }
 }
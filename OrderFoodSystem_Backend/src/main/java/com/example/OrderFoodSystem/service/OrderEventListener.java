@@ -0,0 +1,21 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.entity.OrderOutboxEvent;
+
+import java.util.Map;
+
+/**
+ * Xử lý sự kiện đơn hàng từ order_outbox, chạy nền trên OrderOutboxRelay.
+ *
+ * Sự kiện được giao ít nhất một lần: khi một listener lỗi, cả sự kiện được gửi lại cho mọi
+ * listener sau một khoảng backoff, nên listener phải chịu được việc nhận trùng.
+ * Các sự kiện của cùng một đơn hàng luôn đến theo thứ tự ghi.
+ */
+public interface OrderEventListener {
+
+    /**
+     * @param payload nội dung JSON của sự kiện đã parse
+     * @throws Exception để yêu cầu gửi lại sau
+     */
+    void onOrderEvent(OrderOutboxEvent event, Map<String, Object> payload) throws Exception;
+}
@@ -0,0 +1,321 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.entity.Order;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Luồng sự kiện đơn hàng (Server-Sent Events) cho màn hình nhân viên.
+ *
+ * Mỗi subscriber có một buffer riêng, tối đa orders.stream.buffer đơn hàng: nhiều sự kiện của
+ * cùng một đơn hàng chưa gửi kịp được gộp lại thành sự kiện mới nhất (đơn tạo rồi xóa trước khi gửi
+ * thì bỏ cả hai). Client chậm làm buffer đầy
+ * thì bỏ hết phần đang chờ và gửi sự kiện "reset" để client tải lại danh sách.
+ * Client kết nối lại với Last-Event-ID nhận lại các sự kiện bị lỡ từ lịch sử gần đây
+ * (orders.stream.history sự kiện), quá xa thì nhận "reset".
+ * Sự kiện chỉ phát trên instance xử lý thay đổi.
+ */
+@Service
+public class OrderEventService {
+
+    public static final String ORDER_CREATED = "order-created";
+    public static final String STATUS_CHANGED = "status-changed";
+    public static final String ORDER_DELETED = "order-deleted";
+    public static final String RESET = "reset";
+
+    /**
+     * Nội dung sự kiện; client tải chi tiết đơn hàng qua GET /orders/{idOrder} khi cần
+     */
+    public record OrderEvent(long id, String type, Long idOrder, String status, String paymentStatus,
+                             Double totalPrice, long at) {
+    }
+
+    private static final Object HEARTBEAT = new Object();
+
+    @Value("${orders.stream.buffer:256}")
+    private int bufferSize;
+
+    @Value("${orders.stream.history:1000}")
+    private int historySize;
+
+    @Value("${orders.stream.max-subscribers:200}")
+    private int maxSubscribers;
+
+    @Value("${orders.stream.timeout-ms:1800000}")
+    private long timeoutMillis;
+
+    private final ThreadPoolExecutor executor;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ArrayDeque<OrderEvent> history = new ArrayDeque<>();
+
+    // Id tăng dần kể cả sau khi restart, client cầm id cũ sẽ nhận reset thay vì bỏ sót sự kiện
+    private long lastEventId = System.currentTimeMillis() * 1000;
+
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder resets = new LongAdder();
+
+    public OrderEventService(@Value("${orders.stream.threads:4}") int threads) {
+        AtomicInteger counter = new AtomicInteger();
+        // Mỗi subscriber có tối đa một tác vụ gửi đang chờ nên hàng đợi bị giới hạn bởi số subscriber
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "order-stream-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Đăng ký nhận sự kiện
+     *
+     * @param lastEventId id sự kiện cuối client đã nhận (header Last-Event-ID), null nếu kết nối mới
+     */
+    public SseEmitter subscribe(Long lastEventId) {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new IllegalStateException("Too many order stream subscribers");
+        }
+        Subscriber subscriber = new Subscriber(new SseEmitter(timeoutMillis));
+        subscriber.emitter.onCompletion(subscriber::close);
+        subscriber.emitter.onTimeout(subscriber::close);
+        subscriber.emitter.onError(e -> subscriber.close());
+
+        synchronized (history) {
+            subscribers.add(subscriber);
+            if (lastEventId != null) {
+                OrderEvent oldest = history.peekFirst();
+                long firstAvailable = oldest != null ? oldest.id() : lastEventId + 1;
+                if (lastEventId + 1 < firstAvailable || lastEventId > this.lastEventId) {
+                    // Sự kiện bị lỡ đã ra khỏi lịch sử (hoặc id từ trước khi restart)
+                    subscriber.offerReset();
+                } else {
+                    for (OrderEvent event : history) {
+                        if (event.id() > lastEventId) {
+                            subscriber.offer(event);
+                        }
+                    }
+                }
+            }
+        }
+        // Gửi ngay một comment để proxy/trình duyệt mở kết nối
+        subscriber.offerHeartbeat();
+        return subscriber.emitter;
+    }
+
+    /**
+     * Phát sự kiện sau khi transaction hiện tại commit (ngay lập tức nếu không có transaction)
+     */
+    public void publishAfterCommit(String type, Order order) {
+        Long idOrder = order.getIdOrder();
+        String status = order.getStatus();
+        String paymentStatus = order.getPaymentStatus();
+        Double totalPrice = order.getTotalPrice();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publish(type, idOrder, status, paymentStatus, totalPrice);
+                }
+            });
+        } else {
+            publish(type, idOrder, status, paymentStatus, totalPrice);
+        }
+    }
+
+    private void publish(String type, Long idOrder, String status, String paymentStatus, Double totalPrice) {
+        synchronized (history) {
+            OrderEvent event = new OrderEvent(++lastEventId, type, idOrder, status, paymentStatus, totalPrice,
+                    System.currentTimeMillis());
+            history.addLast(event);
+            while (history.size() > historySize) {
+                history.removeFirst();
+            }
+            published.increment();
+            for (Subscriber subscriber : subscribers) {
+                subscriber.offer(event);
+            }
+        }
+    }
+
+    // Giữ kết nối qua proxy và phát hiện client đã đóng
+    @Scheduled(fixedDelayString = "${orders.stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offerHeartbeat();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        synchronized (history) {
+            stats.put("lastEventId", lastEventId);
+            stats.put("historySize", history.size());
+        }
+        stats.put("subscribers", subscribers.size());
+        stats.put("published", published.sum());
+        stats.put("delivered", delivered.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("resets", resets.sum());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Subscriber subscriber : new ArrayList<>(subscribers)) {
+            subscriber.emitter.complete();
+        }
+        executor.shutdown();
+    }
+
+    private final class Subscriber {
+        private final SseEmitter emitter;
+        // idOrder -> sự kiện mới nhất chưa gửi, theo thứ tự phát
+        private final LinkedHashMap<Long, OrderEvent> pending = new LinkedHashMap<>();
+        private boolean reset;
+        private boolean heartbeatDue;
+        private boolean draining;
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        private void offer(OrderEvent event) {
+            synchronized (this) {
+                if (closed || reset) {
+                    return;
+                }
+                OrderEvent previous = pending.remove(event.idOrder());
+                if (previous != null) {
+                    coalesced.increment();
+                    if (ORDER_CREATED.equals(previous.type()) && ORDER_DELETED.equals(event.type())) {
+                        // Client chưa từng thấy đơn hàng này: bỏ cả hai sự kiện
+                        return;
+                    }
+                    // Client chưa thấy đơn hàng mới thì vẫn báo là order-created
+                    if (ORDER_CREATED.equals(previous.type())) {
+                        event = new OrderEvent(event.id(), ORDER_CREATED, event.idOrder(), event.status(),
+                                event.paymentStatus(), event.totalPrice(), event.at());
+                    }
+                }
+                pending.put(event.idOrder(), event);
+                if (pending.size() > bufferSize) {
+                    pending.clear();
+                    reset = true;
+                }
+            }
+            scheduleDrain();
+        }
+
+        private void offerReset() {
+            synchronized (this) {
+                pending.clear();
+                reset = true;
+            }
+            scheduleDrain();
+        }
+
+        private void offerHeartbeat() {
+            synchronized (this) {
+                heartbeatDue = true;
+            }
+            scheduleDrain();
+        }
+
+        private void scheduleDrain() {
+            synchronized (this) {
+                if (draining || closed) {
+                    return;
+                }
+                draining = true;
+            }
+            try {
+                executor.execute(this::drain);
+            } catch (RuntimeException e) {
+                close();
+            }
+        }
+
+        // Chỉ một luồng gửi cho mỗi subscriber tại một thời điểm
+        private void drain() {
+            while (true) {
+                Object next;
+                synchronized (this) {
+                    if (closed) {
+                        draining = false;
+                        return;
+                    }
+                    if (reset) {
+                        reset = false;
+                        next = RESET;
+                    } else if (!pending.isEmpty()) {
+                        Iterator<OrderEvent> iterator = pending.values().iterator();
+                        next = iterator.next();
+                        iterator.remove();
+                    } else if (heartbeatDue) {
+                        heartbeatDue = false;
+                        next = HEARTBEAT;
+                    } else {
+                        draining = false;
+                        return;
+                    }
+                }
+                try {
+                    send(next);
+                } catch (IOException | IllegalStateException e) {
+                    close();
+                    emitter.completeWithError(e);
+                    return;
+                }
+            }
+        }
+
+        private void send(Object next) throws IOException {
+            if (next == HEARTBEAT) {
+                emitter.send(SseEmitter.event().comment("ping"));
+            } else if (next == RESET) {
+                long id;
+                synchronized (history) {
+                    id = lastEventId;
+                }
+                emitter.send(SseEmitter.event().id(String.valueOf(id)).name(RESET).data("{}", MediaType.APPLICATION_JSON));
+                resets.increment();
+            } else {
+                OrderEvent event = (OrderEvent) next;
+                emitter.send(SseEmitter.event().id(String.valueOf(event.id())).name(event.type())
+                        .data(event, MediaType.APPLICATION_JSON));
+                delivered.increment();
+            }
+        }
+
+        private void close() {
+            synchronized (this) {
+                closed = true;
+                pending.clear();
+            }
+            subscribers.remove(this);
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.entity.OrderOutboxEvent;
+import com.example.OrderFoodSystem.repository.OrderOutboxRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Đọc order_outbox theo lô và gửi từng sự kiện tới mọi OrderEventListener.
+ *
+ * Sự kiện lỗi được thử lại với backoff tăng gấp đôi (outbox.retry.base-ms tới outbox.retry.max-ms),
+ * quá outbox.max-attempts lần thì chuyển FAILED. Trong lúc một sự kiện đang chờ thử lại, các sự
+ * kiện sau của cùng đơn hàng cũng phải chờ để giữ thứ tự; đơn hàng khác không bị ảnh hưởng.
+ * Mỗi lần poll đọc tiếp các trang theo id_event, bỏ qua sự kiện của đơn đang chờ, tới khi gửi được
+ * outbox.batch-size sự kiện hoặc đã quét outbox.max-scan dòng, nên đơn đang chờ không chặn các đơn sau.
+ * Relay chỉ nên chạy trên một instance (outbox.relay.enabled).
+ */
+@Service
+public class OrderOutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderOutboxRelay.class);
+
+    private static final TypeReference<Map<String, Object>> PAYLOAD_TYPE = new TypeReference<>() {
+    };
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    @Autowired
+    private OrderOutboxRepository orderOutboxRepository;
+
+    @Autowired
+    private List<OrderEventListener> listeners;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${outbox.relay.enabled:true}")
+    private boolean enabled;
+
+    @Value("${outbox.batch-size:100}")
+    private int batchSize;
+
+    @Value("${outbox.max-scan:10000}")
+    private int maxScan;
+
+    @Value("${outbox.max-attempts:10}")
+    private int maxAttempts;
+
+    @Value("${outbox.retry.base-ms:1000}")
+    private long retryBaseMillis;
+
+    @Value("${outbox.retry.max-ms:300000}")
+    private long retryMaxMillis;
+
+    @Value("${outbox.retention-days:7}")
+    private int retentionDays;
+
+    private final LongAdder dispatched = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    @Scheduled(fixedDelayString = "${outbox.poll-ms:500}")
+    public void relay() {
+        if (!enabled) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        // Giữ qua các trang: sự kiện sau của đơn đang chờ thử lại không được gửi trước
+        Set<Long> blockedOrders = new HashSet<>();
+        List<Long> processed = new ArrayList<>();
+        int attempted = 0;
+        int scanned = 0;
+        long afterId = 0;
+        while (attempted < batchSize && scanned < maxScan) {
+            List<OrderOutboxEvent> page = orderOutboxRepository.findByStatusAndIdEventGreaterThanOrderByIdEventAsc(
+                    OrderOutboxEvent.STATUS_PENDING, afterId, PageRequest.of(0, batchSize));
+            for (OrderOutboxEvent event : page) {
+                if (attempted >= batchSize) {
+                    break;
+                }
+                if (blockedOrders.contains(event.getIdOrder())) {
+                    continue;
+                }
+                if (event.getNextAttemptAt().isAfter(now)) {
+                    blockedOrders.add(event.getIdOrder());
+                    continue;
+                }
+                attempted++;
+                try {
+                    Map<String, Object> payload = event.getPayload() != null
+                            ? objectMapper.readValue(event.getPayload(), PAYLOAD_TYPE)
+                            : Map.of();
+                    for (OrderEventListener listener : listeners) {
+                        listener.onOrderEvent(event, payload);
+                    }
+                    processed.add(event.getIdEvent());
+                    dispatched.increment();
+                } catch (Exception e) {
+                    blockedOrders.add(event.getIdOrder());
+                    scheduleRetry(event, e, now);
+                }
+            }
+            scanned += page.size();
+            if (page.size() < batchSize) {
+                break;
+            }
+            afterId = page.get(page.size() - 1).getIdEvent();
+        }
+
+        // Đánh dấu cả lô bằng một câu UPDATE; dừng giữa chừng thì các sự kiện này được gửi lại
+        if (!processed.isEmpty()) {
+            orderOutboxRepository.markProcessed(processed, now);
+        }
+    }
+
+    private void scheduleRetry(OrderOutboxEvent event, Exception error, LocalDateTime now) {
+        int attempts = event.getAttempts() + 1;
+        String message = error.getClass().getSimpleName() + ": " + error.getMessage();
+        event.setAttempts(attempts);
+        event.setLastError(message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message);
+        if (attempts >= maxAttempts) {
+            event.setStatus(OrderOutboxEvent.STATUS_FAILED);
+            failed.increment();
+            log.error("Outbox event {} ({}, order {}) failed after {} attempts: {}",
+                    event.getIdEvent(), event.getEventType(), event.getIdOrder(), attempts, message);
+        } else {
+            long backoff = Math.min(retryMaxMillis, retryBaseMillis << Math.min(attempts - 1, 20));
+            event.setNextAttemptAt(now.plusNanos(backoff * 1_000_000));
+            retried.increment();
+        }
+        orderOutboxRepository.save(event);
+    }
+
+    // Xóa sự kiện đã gửi xong quá outbox.retention-days ngày
+    @Scheduled(cron = "${outbox.cleanup.cron:0 30 3 * * *}")
+    public void cleanup() {
+        orderOutboxRepository.deleteProcessedBefore(LocalDateTime.now().minusDays(retentionDays));
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("pending", orderOutboxRepository.countByStatus(OrderOutboxEvent.STATUS_PENDING));
+        stats.put("failed", orderOutboxRepository.countByStatus(OrderOutboxEvent.STATUS_FAILED));
+        stats.put("dispatched", dispatched.sum());
+        stats.put("retried", retried.sum());
+        stats.put("failedSinceStart", failed.sum());
+        stats.put("listeners", listeners.stream().map(l -> l.getClass().getSimpleName()).toList());
+        return stats;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.entity.Order;
+import com.example.OrderFoodSystem.entity.OrderDetail;
+import com.example.OrderFoodSystem.entity.OrderOutboxEvent;
+import com.example.OrderFoodSystem.repository.OrderOutboxRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Ghi sự kiện đơn hàng vào order_outbox trong cùng transaction với thay đổi của Order:
+ * transaction rollback thì sự kiện cũng không tồn tại, commit thì sự kiện chắc chắn được gửi.
+ */
+@Service
+public class OrderOutboxService {
+
+    @Autowired
+    private OrderOutboxRepository orderOutboxRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void orderCreated(Order order) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("status", order.getStatus());
+        payload.put("totalPrice", order.getTotalPrice());
+        payload.put("idCustomer", order.getCustomer() != null ? order.getCustomer().getIdCustomer() : null);
+        append(order.getIdOrder(), OrderEventService.ORDER_CREATED, payload);
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void statusChanged(Order order, String fromStatus, String fromPaymentStatus) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("fromStatus", fromStatus);
+        payload.put("toStatus", order.getStatus());
+        payload.put("fromPaymentStatus", fromPaymentStatus);
+        payload.put("toPaymentStatus", order.getPaymentStatus());
+        payload.put("paymentMethod", order.getPaymentMethod());
+        payload.put("totalPrice", order.getTotalPrice());
+        append(order.getIdOrder(), OrderEventService.STATUS_CHANGED, payload);
+    }
+
+    /**
+     * Đơn hàng bị xóa: payload giữ lại số lượng từng món vì listener không còn nạp được đơn hàng
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void orderDeleted(Order order) {
+        Map<String, Integer> items = new LinkedHashMap<>();
+        if (order.getOrderDetails() != null) {
+            for (OrderDetail detail : order.getOrderDetails()) {
+                if (detail.getProduct() != null) {
+                    items.merge(String.valueOf(detail.getProduct().getIdProduct()), detail.getQuantity(), Integer::sum);
+                }
+            }
+        }
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("status", order.getStatus());
+        payload.put("paymentStatus", order.getPaymentStatus());
+        payload.put("totalPrice", order.getTotalPrice());
+        payload.put("items", items);
+        append(order.getIdOrder(), OrderEventService.ORDER_DELETED, payload);
+    }
+
+    private void append(Long idOrder, String eventType, Map<String, Object> payload) {
+        try {
+            orderOutboxRepository.save(new OrderOutboxEvent(idOrder, eventType,
+                    objectMapper.writeValueAsString(payload), LocalDateTime.now()));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize outbox payload", e);
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.entity.Order;
+import com.example.OrderFoodSystem.entity.OrderDetail;
+import com.example.OrderFoodSystem.entity.OrderVoucher;
+import com.example.OrderFoodSystem.repository.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Nguồn duy nhất cho tiền của đơn hàng: subtotal (tổng các dòng), discountAmount (voucher)
+ * và totalPrice = max(0, subtotal - discountAmount).
+ *
+ * Mỗi thay đổi dòng chỉ cộng phần chênh lệch vào subtotal (O(1)) thay vì đọc lại toàn bộ
+ * orderDetails. Ghi đồng thời lên cùng một đơn bị chặn bởi cột @Version của Order.
+ * Job kiểm tra định kỳ so subtotal với tổng thực tế của các dòng và báo các đơn bị lệch.
+ */
+@Service
+public class OrderPricingService {
+
+    private static final Logger log = LoggerFactory.getLogger(OrderPricingService.class);
+
+    private static final double TOLERANCE = 0.01;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Value("${pricing.drift.check-days:2}")
+    private int checkDays;
+
+    @Value("${pricing.drift.repair:false}")
+    private boolean repairDrift;
+
+    private volatile List<Map<String, Object>> lastDrift = Collections.emptyList();
+
+    /**
+     * Nạp đơn hàng để sửa tiền; đơn cũ chưa có subtotal được tính một lần từ các dòng hiện tại.
+     * Phải gọi trước khi thay đổi các dòng.
+     */
+    public Order loadForUpdate(Long orderId) {
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new RuntimeException("Order not found with id " + orderId));
+        if (order.getSubtotal() == null || order.getDiscountAmount() == null) {
+            recalculate(order);
+        }
+        return order;
+    }
+
+    /**
+     * Cộng phần thay đổi subTotal của các dòng vào đơn hàng
+     */
+    public void applyLineDelta(Order order, double delta) {
+        if (order.getSubtotal() == null) {
+            throw new IllegalStateException("Order " + order.getIdOrder() + " was not loaded with loadForUpdate");
+        }
+        order.setSubtotal(order.getSubtotal() + delta);
+        updateTotal(order);
+    }
+
+    public void setDiscount(Order order, double discountAmount) {
+        if (order.getSubtotal() == null) {
+            recalculate(order);
+        }
+        order.setDiscountAmount(Math.max(0, discountAmount));
+        updateTotal(order);
+    }
+
+    /**
+     * Tính lại toàn bộ từ các dòng và voucher đang giữ (dùng cho đơn cũ và khi sửa lệch)
+     */
+    public void recalculate(Order order) {
+        double subtotal = 0;
+        if (order.getOrderDetails() != null) {
+            for (OrderDetail detail : order.getOrderDetails()) {
+                subtotal += detail.getSubTotal() != null ? detail.getSubTotal() : 0.0;
+            }
+        }
+        OrderVoucher orderVoucher = order.getOrderVoucher();
+        boolean holdingVoucher = orderVoucher != null
+                && !OrderVoucher.STATUS_RELEASED.equals(orderVoucher.getStatus())
+                && orderVoucher.getDiscountAmount() != null;
+
+        order.setSubtotal(subtotal);
+        order.setDiscountAmount(holdingVoucher ? orderVoucher.getDiscountAmount() : 0.0);
+        updateTotal(order);
+    }
+
+    private void updateTotal(Order order) {
+        double discount = order.getDiscountAmount() != null ? order.getDiscountAmount() : 0.0;
+        order.setTotalPrice(Math.max(0, order.getSubtotal() - discount));
+    }
+
+    /**
+     * Kết quả của lần kiểm tra lệch gần nhất
+     */
+    public List<Map<String, Object>> getLastDrift() {
+        return lastDrift;
+    }
+
+    // So subtotal/totalPrice đang lưu với tổng thực tế của các dòng
+    @Scheduled(cron = "${pricing.drift.cron:0 */15 * * * *}")
+    @Transactional
+    public List<Map<String, Object>> checkDrift() {
+        List<Map<String, Object>> drift = new ArrayList<>();
+        for (OrderRepository.PricingCheckRow row
+                : orderRepository.findPricingCheckRows(LocalDateTime.now().minusDays(checkDays))) {
+            double subtotal = row.getSubtotal();
+            double discount = row.getDiscountAmount() != null ? row.getDiscountAmount() : 0.0;
+            double total = row.getTotalPrice() != null ? row.getTotalPrice() : 0.0;
+            double lineTotal = row.getLineTotal() != null ? row.getLineTotal() : 0.0;
+
+            if (Math.abs(subtotal - lineTotal) <= TOLERANCE
+                    && Math.abs(total - Math.max(0, subtotal - discount)) <= TOLERANCE) {
+                continue;
+            }
+
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("idOrder", row.getIdOrder());
+            entry.put("subtotal", subtotal);
+            entry.put("lineTotal", lineTotal);
+            entry.put("discountAmount", discount);
+            entry.put("totalPrice", total);
+            drift.add(entry);
+            log.warn("Order {} pricing drift: subtotal={} lineTotal={} discount={} total={}",
+                    row.getIdOrder(), subtotal, lineTotal, discount, total);
+
+            if (repairDrift) {
+                orderRepository.findById(row.getIdOrder()).ifPresent(order -> {
+                    recalculate(order);
+                    orderRepository.save(order);
+                });
+            }
+        }
+        lastDrift = List.copyOf(drift);
+        return lastDrift;
+    }
+}
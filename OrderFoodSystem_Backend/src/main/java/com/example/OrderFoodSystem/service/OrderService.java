@@ -1,35 +1,117 @@
 package com.example.OrderFoodSystem.service;
 
+import com.example.OrderFoodSystem.dto.OrderSummaryDTO;
+import com.example.OrderFoodSystem.entity.Customer;
 import com.example.OrderFoodSystem.entity.Order;
+import com.example.OrderFoodSystem.entity.OrderStatus;
 import com.example.OrderFoodSystem.repository.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 @Service
 public class OrderService {
 
+    private static final Logger log = LoggerFactory.getLogger(OrderService.class);
+
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_TRANSITION_ATTEMPTS = 3;
+
     @Autowired
     private OrderRepository orderRepository;
 
-    public Double calculateTotalPrice(Order order) {
-        if (order.getOrderDetails() == null || order.getOrderDetails().isEmpty()) {
-            return 0.0;
-        }
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private OrderOutboxService orderOutboxService;
 
-        double total = order.getOrderDetails().stream()
-                .mapToDouble(orderDetail -> orderDetail.getSubTotal() != null ? orderDetail.getSubTotal() : 0.0)
-                .sum();
+    @Autowired
+    private VoucherRedemptionService voucherRedemptionService;
+
+    @Autowired
+    private OrderPricingService orderPricingService;
+
+    @Autowired
+    private OrderEventService orderEventService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
 
-        return total;
+    /**
+     * Lấy danh sách đơn hàng dạng rút gọn, phân trang theo keyset
+     *
+     * @param cursor idOrder cuối cùng của trang trước (null cho trang đầu)
+     * @param size   số đơn hàng mỗi trang (tối đa 100)
+     * @return trang kết quả kèm nextCursor
+     */
+    public OrderSummaryDTO.Page listOrderSummaries(Long cursor, Integer size, String status, String paymentStatus,
+                                                   Long customerId, LocalDateTime fromDate, LocalDateTime toDate) {
+        int pageSize = size == null || size <= 0 ? DEFAULT_PAGE_SIZE : Math.min(size, MAX_PAGE_SIZE);
+
+        List<OrderSummaryDTO> items = orderRepository.findSummaries(cursor, emptyToNull(status),
+                emptyToNull(paymentStatus), customerId, fromDate, toDate, PageRequest.of(0, pageSize));
+
+        Long nextCursor = items.size() == pageSize ? items.get(items.size() - 1).getIdOrder() : null;
+        return new OrderSummaryDTO.Page(items, nextCursor);
+    }
+
+    /**
+     * Đơn hàng đã đặt gần nhất (không tính giỏ hàng) của customer
+     */
+    public Optional<Order> findLatestPlacedOrder(Long customerId) {
+        return orderRepository.findFirstByCustomer_IdCustomerAndStatusNotOrderByIdOrderDesc(customerId, "pending");
+    }
+
+    private String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Lưu đơn hàng mới và ghi sự kiện ORDER_CREATED vào outbox trong cùng transaction
+     */
+    @Transactional
+    public Order createOrder(Order order) {
+        Order savedOrder = orderRepository.save(order);
+        orderOutboxService.orderCreated(savedOrder);
+        orderEventService.publishAfterCommit(OrderEventService.ORDER_CREATED, savedOrder);
+        return savedOrder;
     }
 
+    /**
+     * Tính lại toàn bộ tiền của đơn hàng từ các dòng và voucher đang giữ
+     */
     public Order updateTotalPrice(Long orderId) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found with id " + orderId));
 
-        Double totalPrice = calculateTotalPrice(order);
-        order.setTotalPrice(totalPrice);
+        orderPricingService.recalculate(order);
+
+        return orderRepository.save(order);
+    }
 
+    // Chỉ đổi giảm giá của đơn chưa đặt: đơn đã đặt đã được tính vào daily_sales_rollup theo tổng tiền hiện có
+    @Transactional
+    public Order applyDiscount(Long orderId, double discountAmount) {
+        Order order = orderPricingService.loadForUpdate(orderId);
+        if (OrderStatus.of(order.getStatus()) != OrderStatus.PENDING) {
+            throw new RuntimeException("Chỉ có thể áp giảm giá cho đơn chưa đặt (pending)");
+        }
+        orderPricingService.setDiscount(order, discountAmount);
         return orderRepository.save(order);
     }
 
@@ -37,82 +119,83 @@ public class OrderService {
      * Xử lý thanh toán cho đơn hàng
      * 
      * @param orderId       ID của đơn hàng
-     * @param paymentMethod Phương thức thanh toán (COD, MOMO)
+     * @param paymentMethod Phương thức thanh toán (COD, MOMO, VNPAY)
      * @return Order đã được cập nhật
      */
     public Order processPayment(Long orderId, String paymentMethod) {
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new RuntimeException("Order not found with id " + orderId));
-
-        // Kiểm tra trạng thái đơn hàng
-        if (order.getStatus() == null || order.getStatus().isEmpty()) {
-            order.setStatus("pending");
-        }
-
-        // Cập nhật phương thức thanh toán
-        order.setPaymentMethod(paymentMethod.toUpperCase());
-
-        // Xử lý theo từng loại thanh toán
-        switch (paymentMethod.toUpperCase()) {
+        String method = paymentMethod.toUpperCase();
+        switch (method) {
             case "COD":
-                return processCODPayment(order);
+                // Thanh toán khi nhận hàng - trạng thái là UNPAID cho đến khi giao hàng
+                return transition(orderId, order -> new StatusChange(OrderStatus.CONFIRMED, "UNPAID", method, null), null);
             case "MOMO":
-                return processMomoPayment(order);
             case "VNPAY":
-                return processVNPayPayment(order);
+                // Giữ pending, chờ cổng thanh toán gọi lại
+                return transition(orderId, order -> new StatusChange(OrderStatus.PENDING, "UNPAID", method, null), null);
             default:
                 throw new RuntimeException("Invalid payment method: " + paymentMethod);
         }
     }
 
     /**
-     * Xử lý thanh toán COD (Cash on Delivery)
-     * Thanh toán khi nhận hàng - trạng thái là UNPAID cho đến khi giao hàng
+     * Cập nhật trạng thái đơn hàng (cho staff/admin)
      */
-    private Order processCODPayment(Order order) {
-        order.setPaymentStatus("UNPAID");
-        order.setStatus("confirmed");
-        return orderRepository.save(order);
+    public Order updateStatus(Long orderId, String status) {
+        OrderStatus target = OrderStatus.of(status);
+        return transition(orderId, order -> new StatusChange(target, null, null, null), saved -> {
+            if (target == OrderStatus.CANCELLED) {
+                voucherRedemptionService.release(orderId);
+            }
+        });
     }
 
-    private Order processMomoPayment(Order order) {
-        // Trạng thái ban đầu khi chờ thanh toán
-        order.setPaymentStatus("UNPAID");
-        order.setStatus("pending");
-        return orderRepository.save(order);
+    /**
+     * Xác nhận đơn hàng khi customer đặt hàng xong, ngày đặt là thời điểm xác nhận
+     */
+    public Order confirmOrder(Long orderId) {
+        return transition(orderId, order -> OrderStatus.of(order.getStatus()) == OrderStatus.PENDING
+                ? new StatusChange(OrderStatus.CONFIRMED, null, null, LocalDateTime.now())
+                : new StatusChange(OrderStatus.CONFIRMED, null, null, null), null);
     }
 
-    private Order processVNPayPayment(Order order) {
-        // Trạng thái ban đầu khi chờ thanh toán VNPay
-        order.setPaymentStatus("UNPAID");
-        order.setStatus("pending");
-        return orderRepository.save(order);
+    /**
+     * Xác nhận thanh toán thành công (dùng cho COD khi giao hàng hoặc VNPay/MoMo)
+     */
+    public Order confirmPayment(Long orderId) {
+        return confirmPayment(orderId, null);
     }
 
     /**
-     * Xác nhận thanh toán thành công (dùng cho COD khi giao hàng hoặc VNPay)
+     * Xác nhận thanh toán, kèm thao tác ghi cùng transaction (vd: ghi sổ payment_events)
+     *
+     * @param inTransaction chạy đầu mỗi lần thử, lỗi thì đơn hàng không đổi (có thể null)
      */
-    public Order confirmPayment(Long orderId) {
-        System.out.println("=== confirmPayment method called for Order #" + orderId + " ===");
-        
-        Order order = orderRepository.findById(orderId)
-                .orElseThrow(() -> new RuntimeException("Order not found with id " + orderId));
+    public Order confirmPayment(Long orderId, Runnable inTransaction) {
+        Order savedOrder = transition(orderId, inTransaction, order -> {
+            // Đơn chờ thanh toán chuyển sang confirmed, đơn COD đang làm/đã giao giữ nguyên trạng thái
+            OrderStatus current = OrderStatus.of(order.getStatus());
+            OrderStatus target = current == OrderStatus.PENDING ? OrderStatus.CONFIRMED : current;
+            return new StatusChange(target, "PAID", null, null);
+        }, saved -> {
+            if (!OrderStatus.CANCELLED.value().equals(saved.getStatus())) {
+                voucherRedemptionService.commit(orderId);
+            }
+        });
 
-        System.out.println("Current paymentStatus: " + order.getPaymentStatus());
-        System.out.println("Current status: " + order.getStatus());
-        
-        order.setPaymentStatus("PAID");
-        order.setStatus("confirmed"); // Cập nhật status từ pending sang confirmed
-        
-        Order savedOrder = orderRepository.save(order);
-        
-        System.out.println("Updated paymentStatus: " + savedOrder.getPaymentStatus());
-        System.out.println("Updated status: " + savedOrder.getStatus());
-        System.out.println("=== Order #" + orderId + " payment confirmed and saved ===");
-        
+        log.debug("Order {} payment confirmed: status={} paymentStatus={}",
+                orderId, savedOrder.getStatus(), savedOrder.getPaymentStatus());
         return savedOrder;
     }
 
+    /**
+     * Cập nhật trạng thái thanh toán (admin/staff), giữ nguyên trạng thái đơn hàng
+     */
+    public Order updatePaymentStatus(Long orderId, String paymentStatus) {
+        return transition(orderId,
+                order -> new StatusChange(OrderStatus.of(order.getStatus()), paymentStatus.toUpperCase(), null, null),
+                null);
+    }
+
     /**
      * Cập nhật phương thức thanh toán
      */
@@ -124,15 +207,159 @@ public class OrderService {
         return orderRepository.save(order);
     }
 
+    /**
+     * Ghi lại lần gửi đơn sang cổng thanh toán: mã đơn mới (orderId_timestamp) và thời điểm gửi (tính đến giây,
+     * VNPay dùng làm vnp_CreateDate), để đối soát tra cứu được giao dịch nếu không nhận được IPN
+     */
+    public Order recordPaymentRequest(Long orderId, String paymentMethod) {
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new RuntimeException("Order not found with id " + orderId));
+
+        LocalDateTime requestedAt = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        order.setPaymentMethod(paymentMethod);
+        order.setPaymentRef(orderId + "_" + System.currentTimeMillis());
+        order.setPaymentRequestedAt(requestedAt);
+        return orderRepository.save(order);
+    }
+
     /**
      * Đánh dấu thanh toán thất bại
      */
     public Order failPayment(Long orderId, String reason) {
+        return failPayment(orderId, reason, null);
+    }
+
+    /**
+     * Đánh dấu thanh toán thất bại, kèm thao tác ghi cùng transaction như confirmPayment
+     */
+    public Order failPayment(Long orderId, String reason, Runnable inTransaction) {
+        return transition(orderId, inTransaction, order -> {
+            OrderStatus current = OrderStatus.of(order.getStatus());
+            // Callback thất bại đến sau khi đã thanh toán hoặc đơn đã được xử lý thì không hủy đơn
+            if ("PAID".equalsIgnoreCase(order.getPaymentStatus())
+                    || (current != OrderStatus.PENDING && current != OrderStatus.CANCELLED)) {
+                throw new InvalidStatusTransitionException(orderId, order.getStatus(), OrderStatus.CANCELLED.value());
+            }
+            return new StatusChange(OrderStatus.CANCELLED, "FAILED", null, null);
+        }, saved -> voucherRedemptionService.release(orderId));
+    }
+
+    /**
+     * Xóa đơn hàng: trả voucher đang giữ, trừ đơn khỏi daily_sales_rollup và ghi sự kiện ORDER_DELETED
+     * trong cùng transaction. DELETE kèm version nên đơn vừa bị request khác sửa sẽ không bị xóa.
+     */
+    @Transactional
+    public void deleteOrder(Long orderId) {
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new RuntimeException("Order not found with id " + orderId));
+
+        voucherRedemptionService.release(orderId);
+        salesRollupService.recordDeletion(order);
+        orderOutboxService.orderDeleted(order);
+        orderRepository.delete(order);
+        orderRepository.flush();
+        orderEventService.publishAfterCommit(OrderEventService.ORDER_DELETED, order);
+    }
+
+    /**
+     * Sửa ngày đặt và khách hàng của đơn hàng. Chỉ đổi được ngày của đơn chưa đặt (pending),
+     * đơn đã đặt đã được tính vào daily_sales_rollup theo ngày cũ.
+     */
+    @Transactional
+    public Order updateOrder(Long orderId, LocalDateTime orderDate, Customer customer) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> new RuntimeException("Order not found with id " + orderId));
 
-        order.setPaymentStatus("FAILED");
-        order.setStatus("cancelled");
+        if (orderDate != null && !orderDate.equals(order.getOrderDate())) {
+            if (OrderStatus.of(order.getStatus()) != OrderStatus.PENDING) {
+                throw new IllegalArgumentException("Không thể đổi ngày của đơn hàng đã đặt #" + orderId);
+            }
+            order.setOrderDate(orderDate);
+        }
+        if (customer != null) {
+            order.setCustomer(customer);
+        }
+        orderPricingService.recalculate(order);
         return orderRepository.save(order);
     }
+
+    /**
+     * Trạng thái mong muốn sau khi chuyển; các trường null được giữ nguyên
+     */
+    private record StatusChange(OrderStatus status, String paymentStatus, String paymentMethod,
+                                LocalDateTime orderDate) {
+    }
+
+    /**
+     * Chuyển trạng thái đơn hàng bằng UPDATE có điều kiện (status + version), không khóa dòng.
+     * Request trùng (đơn đã ở trạng thái đích) là no-op. Nếu request khác vừa đổi đơn hàng,
+     * thử lại trong transaction mới với trạng thái mới nhất.
+     *
+     * @param decide    trạng thái đích, tính từ đơn hàng hiện tại
+     * @param onChanged chạy trong cùng transaction khi đơn hàng thực sự thay đổi (có thể null)
+     */
+    private Order transition(Long orderId, Function<Order, StatusChange> decide, Consumer<Order> onChanged) {
+        return transition(orderId, null, decide, onChanged);
+    }
+
+    // inTransaction chạy đầu mỗi lần thử, trong cùng transaction với UPDATE trạng thái
+    private Order transition(Long orderId, Runnable inTransaction, Function<Order, StatusChange> decide,
+                             Consumer<Order> onChanged) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(tx -> {
+                    if (inTransaction != null) {
+                        inTransaction.run();
+                    }
+                    return attemptTransition(orderId, decide, onChanged);
+                });
+            } catch (ObjectOptimisticLockingFailureException e) {
+                if (attempt >= MAX_TRANSITION_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private Order attemptTransition(Long orderId, Function<Order, StatusChange> decide, Consumer<Order> onChanged) {
+        Order order = orderRepository.findById(orderId)
+                .orElseThrow(() -> new RuntimeException("Order not found with id " + orderId));
+
+        StatusChange change = decide.apply(order);
+        OrderStatus from = OrderStatus.of(order.getStatus());
+        OrderStatus target = change.status();
+        String paymentStatus = change.paymentStatus() != null ? change.paymentStatus() : order.getPaymentStatus();
+        String paymentMethod = change.paymentMethod() != null ? change.paymentMethod() : order.getPaymentMethod();
+        LocalDateTime orderDate = change.orderDate() != null ? change.orderDate() : order.getOrderDate();
+
+        if (from == target && target.value().equals(order.getStatus())
+                && Objects.equals(paymentStatus, order.getPaymentStatus())
+                && Objects.equals(paymentMethod, order.getPaymentMethod())
+                && change.orderDate() == null) {
+            return order;
+        }
+        if (from != target && !from.canTransitionTo(target)) {
+            throw new InvalidStatusTransitionException(orderId, order.getStatus(), target.value());
+        }
+
+        String oldStatus = order.getStatus();
+        String oldPaymentStatus = order.getPaymentStatus();
+        LocalDateTime oldOrderDate = order.getOrderDate();
+        int updated = orderRepository.transition(orderId, oldStatus, order.getVersion(), target.value(),
+                paymentStatus, paymentMethod, orderDate);
+        if (updated == 0) {
+            throw new ObjectOptimisticLockingFailureException(Order.class, orderId);
+        }
+
+        // Persistence context đã được clear sau UPDATE, nạp lại đơn hàng mới
+        Order savedOrder = orderRepository.findById(orderId).orElseThrow();
+        // Cập nhật bảng daily_sales_rollup và ghi sự kiện vào outbox trong cùng transaction
+        salesRollupService.recordStatusChange(savedOrder, oldStatus, oldOrderDate);
+        orderOutboxService.statusChanged(savedOrder, oldStatus, oldPaymentStatus);
+        if (onChanged != null) {
+            onChanged.accept(savedOrder);
+        }
+        orderEventService.publishAfterCommit(OrderEventService.STATUS_CHANGED, savedOrder);
+        return savedOrder;
+    }
 }
@@ -0,0 +1,168 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.entity.Order;
+import com.example.OrderFoodSystem.entity.PaymentEvent;
+import com.example.OrderFoodSystem.repository.OrderRepository;
+import com.example.OrderFoodSystem.repository.PaymentEventRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Áp dụng kết quả thanh toán từ MoMo/VNPay đúng một lần cho mỗi giao dịch.
+ *
+ * Cổng thanh toán gửi lại IPN nhiều lần và trình duyệt cũng có thể gọi return URL, nên mỗi giao dịch
+ * được ghi vào payment_events (unique gateway + transaction_id) trong cùng transaction với việc cập
+ * nhật đơn hàng: lần gửi trùng vi phạm unique key và không đổi gì. Các giao dịch vừa xử lý được nhớ
+ * trong bộ nhớ (payment.dedup.max-size) để bỏ qua lần gửi lại mà không cần vào DB.
+ */
+@Service
+public class PaymentEventService {
+
+    public static final String MOMO = "MOMO";
+    public static final String VNPAY = "VNPAY";
+
+    public enum Result {
+        APPLIED,
+        // Giao dịch đã được xử lý trước đó
+        DUPLICATE,
+        // Kết quả không áp dụng được cho trạng thái hiện tại của đơn hàng, đã ghi sổ
+        REJECTED,
+        ORDER_NOT_FOUND,
+        INVALID_AMOUNT
+    }
+
+    /**
+     * Callback đã xác thực chữ ký.
+     *
+     * @param transactionId mã giao dịch của cổng (transId, vnp_TransactionNo), có thể rỗng khi thất bại
+     * @param orderRef      mã đơn gửi sang cổng (orderId_timestamp)
+     * @param amount        số tiền VND, null nếu không kiểm tra
+     */
+    public record Callback(String gateway, String transactionId, String orderRef, Long idOrder, Long amount,
+                           String resultCode, boolean success) {
+    }
+
+    @Autowired
+    private PaymentEventRepository paymentEventRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Value("${payment.dedup.max-size:10000}")
+    private int maxRecent;
+
+    // Giao dịch đã xử lý gần đây, LRU
+    private final Map<String, Boolean> recent = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+            return size() > maxRecent;
+        }
+    };
+
+    private final LongAdder applied = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder duplicateHits = new LongAdder();
+    private final LongAdder duplicateRows = new LongAdder();
+
+    public Result apply(Callback callback) {
+        String transactionId = transactionKey(callback);
+        String key = callback.gateway() + ":" + transactionId;
+        if (isRecent(key)) {
+            duplicateHits.increment();
+            return Result.DUPLICATE;
+        }
+
+        Order order = orderRepository.findById(callback.idOrder()).orElse(null);
+        if (order == null) {
+            return Result.ORDER_NOT_FOUND;
+        }
+        if (callback.success() && callback.amount() != null && order.getTotalPrice() != null
+                && callback.amount() != Math.round(order.getTotalPrice())) {
+            return Result.INVALID_AMOUNT;
+        }
+
+        Runnable ledger = () -> paymentEventRepository.saveAndFlush(
+                newEvent(callback, transactionId, PaymentEvent.OUTCOME_APPLIED));
+        try {
+            if (callback.success()) {
+                orderService.confirmPayment(callback.idOrder(), ledger);
+            } else {
+                orderService.failPayment(callback.idOrder(),
+                        callback.gateway() + " response code: " + callback.resultCode(), ledger);
+            }
+            applied.increment();
+            remember(key);
+            return Result.APPLIED;
+        } catch (InvalidStatusTransitionException e) {
+            // Transaction đã rollback cả dòng sổ, ghi lại riêng để lần gửi sau không phải xét lại
+            try {
+                paymentEventRepository.save(newEvent(callback, transactionId, PaymentEvent.OUTCOME_REJECTED));
+            } catch (DataIntegrityViolationException dup) {
+                return duplicate(key, callback.gateway(), transactionId, dup);
+            }
+            rejected.increment();
+            remember(key);
+            return Result.REJECTED;
+        } catch (DataIntegrityViolationException e) {
+            return duplicate(key, callback.gateway(), transactionId, e);
+        }
+    }
+
+    // Vi phạm unique key: lần gửi khác của cùng giao dịch đã commit trước
+    private Result duplicate(String key, String gateway, String transactionId, DataIntegrityViolationException e) {
+        if (paymentEventRepository.findByGatewayAndTransactionId(gateway, transactionId).isEmpty()) {
+            throw e;
+        }
+        duplicateRows.increment();
+        remember(key);
+        return Result.DUPLICATE;
+    }
+
+    // Giao dịch thất bại có thể không có mã giao dịch (VNPay trả "0"), khi đó dùng mã đơn + mã lỗi
+    private String transactionKey(Callback callback) {
+        String transactionId = callback.transactionId();
+        if (transactionId == null || transactionId.isBlank() || "0".equals(transactionId)) {
+            return "ref:" + callback.orderRef() + ":" + callback.resultCode();
+        }
+        return transactionId;
+    }
+
+    private PaymentEvent newEvent(Callback callback, String transactionId, String outcome) {
+        return new PaymentEvent(callback.gateway(), transactionId, callback.idOrder(), callback.amount(),
+                callback.resultCode(), callback.success(), outcome, LocalDateTime.now());
+    }
+
+    private boolean isRecent(String key) {
+        synchronized (recent) {
+            return recent.containsKey(key);
+        }
+    }
+
+    private void remember(String key) {
+        synchronized (recent) {
+            recent.put(key, Boolean.TRUE);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("applied", applied.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("duplicateMemoryHits", duplicateHits.sum());
+        stats.put("duplicateLedgerHits", duplicateRows.sum());
+        synchronized (recent) {
+            stats.put("recentSize", recent.size());
+        }
+        return stats;
+    }
+}
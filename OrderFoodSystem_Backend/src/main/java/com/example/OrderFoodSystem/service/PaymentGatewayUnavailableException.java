@@ -0,0 +1,16 @@
+package com.example.OrderFoodSystem.service;
+
+/**
+ * Cổng thanh toán không phản hồi, lỗi hoặc đang bị ngắt (circuit breaker/bulkhead),
+ * người dùng nên chọn phương thức khác hoặc thử lại sau
+ */
+public class PaymentGatewayUnavailableException extends RuntimeException {
+
+    public PaymentGatewayUnavailableException(String message) {
+        super(message);
+    }
+
+    public PaymentGatewayUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,205 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.config.CorrelationIdFilter;
+import com.example.OrderFoodSystem.repository.OrderRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Đối soát đơn MoMo/VNPay còn pending/UNPAID (người dùng bỏ dở hoặc IPN bị mất).
+ *
+ * Mỗi lần chạy quét các đơn đã gửi sang cổng quá reconcile.grace-ms theo từng trang, tra cứu trạng thái
+ * giao dịch song song (tối đa reconcile.concurrency lời gọi cùng lúc), rồi áp dụng kết quả của cả trang
+ * qua PaymentEventService nên không trùng với IPN đến sau. Đơn chưa từng gửi sang cổng bị hủy sau
+ * reconcile.abandon-after-ms.
+ */
+@Service
+public class PaymentReconciliationService {
+
+    private static final Logger log = LoggerFactory.getLogger(PaymentReconciliationService.class);
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private MomoService momoService;
+
+    @Autowired
+    private VNPayService vnPayService;
+
+    @Autowired
+    private PaymentEventService paymentEventService;
+
+    @Autowired
+    private OrderService orderService;
+
+    @Value("${reconcile.enabled:true}")
+    private boolean enabled;
+
+    @Value("${reconcile.page-size:100}")
+    private int pageSize;
+
+    @Value("${reconcile.concurrency:8}")
+    private int concurrency;
+
+    // VNPay hết hạn sau 15 phút; để cổng kịp gửi IPN trước khi tự tra cứu
+    @Value("${reconcile.grace-ms:1200000}")
+    private long graceMillis;
+
+    @Value("${reconcile.abandon-after-ms:86400000}")
+    private long abandonAfterMillis;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private final LongAdder confirmed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder stillPending = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    private volatile LocalDateTime lastRunAt;
+    private volatile long lastRunMillis;
+    private volatile int lastRunChecked;
+
+    private record Lookup(OrderRepository.ReconcileRow row, GatewayPaymentStatus status) {
+    }
+
+    @Scheduled(initialDelayString = "${reconcile.initial-delay-ms:60000}", fixedDelayString = "${reconcile.interval-ms:300000}")
+    public void reconcile() {
+        if (!enabled || !running.compareAndSet(false, true)) {
+            return;
+        }
+        long start = System.nanoTime();
+        int checked = 0;
+        // Mỗi lần đối soát có một id riêng, kể cả log của các lời gọi MoMo trong lần đó
+        MDC.put(CorrelationIdFilter.MDC_KEY, "reconcile-" + CorrelationIdFilter.newId());
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDateTime requestedBefore = now.minusNanos(graceMillis * 1_000_000);
+            LocalDateTime abandonedBefore = now.minusNanos(abandonAfterMillis * 1_000_000);
+            Semaphore permits = new Semaphore(Math.max(1, concurrency));
+
+            long afterId = 0;
+            while (true) {
+                List<OrderRepository.ReconcileRow> page = orderRepository.findReconcileCandidates(
+                        afterId, requestedBefore, abandonedBefore, PageRequest.of(0, pageSize));
+                if (page.isEmpty()) {
+                    break;
+                }
+                applyPage(lookupPage(page, permits));
+                checked += page.size();
+                afterId = page.get(page.size() - 1).getIdOrder();
+                if (page.size() < pageSize) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lastRunAt = LocalDateTime.now();
+            lastRunMillis = (System.nanoTime() - start) / 1_000_000;
+            lastRunChecked = checked;
+            running.set(false);
+            if (checked > 0) {
+                log.info("Reconcile checked {} orders in {} ms", checked, lastRunMillis);
+            }
+            MDC.remove(CorrelationIdFilter.MDC_KEY);
+        }
+    }
+
+    // Tra cứu cả trang song song, chờ tới khi có đủ kết quả
+    private List<Lookup> lookupPage(List<OrderRepository.ReconcileRow> page, Semaphore permits)
+            throws InterruptedException {
+        List<CompletableFuture<Lookup>> lookups = new ArrayList<>(page.size());
+        for (OrderRepository.ReconcileRow row : page) {
+            if (row.getPaymentRef() == null) {
+                // Chưa từng gửi sang cổng, không có gì để tra cứu
+                lookups.add(CompletableFuture.completedFuture(new Lookup(row, null)));
+                continue;
+            }
+            permits.acquire();
+            lookups.add(query(row)
+                    .exceptionally(e -> GatewayPaymentStatus.unknown(e.getClass().getSimpleName()))
+                    .whenComplete((status, e) -> permits.release())
+                    .thenApply(status -> new Lookup(row, status)));
+        }
+        return lookups.stream().map(CompletableFuture::join).toList();
+    }
+
+    private CompletableFuture<GatewayPaymentStatus> query(OrderRepository.ReconcileRow row) {
+        try {
+            if (PaymentEventService.MOMO.equals(row.getPaymentMethod())) {
+                return momoService.queryPaymentStatus(row.getPaymentRef());
+            }
+            return vnPayService.queryPaymentStatus(row.getPaymentRef(), row.getPaymentRequestedAt());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private void applyPage(List<Lookup> lookups) {
+        for (Lookup lookup : lookups) {
+            OrderRepository.ReconcileRow row = lookup.row();
+            GatewayPaymentStatus status = lookup.status();
+            try {
+                if (status == null) {
+                    orderService.failPayment(row.getIdOrder(), "Payment abandoned before reaching the gateway");
+                    failed.increment();
+                    continue;
+                }
+                switch (status.state()) {
+                    case PAID, FAILED -> {
+                        boolean paid = status.state() == GatewayPaymentStatus.State.PAID;
+                        PaymentEventService.Result result = paymentEventService.apply(new PaymentEventService.Callback(
+                                row.getPaymentMethod(), status.transactionId(), row.getPaymentRef(), row.getIdOrder(),
+                                status.amount(), status.resultCode(), paid));
+                        if (result == PaymentEventService.Result.APPLIED || result == PaymentEventService.Result.DUPLICATE) {
+                            (paid ? confirmed : failed).increment();
+                        } else {
+                            errors.increment();
+                            log.warn("Reconcile order={} paymentRef={}: {}", row.getIdOrder(), row.getPaymentRef(), result);
+                        }
+                    }
+                    case PENDING -> stillPending.increment();
+                    case UNKNOWN -> errors.increment();
+                }
+            } catch (RuntimeException e) {
+                errors.increment();
+                log.error("Reconcile order={} paymentRef={} failed", row.getIdOrder(), row.getPaymentRef(), e);
+            }
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        OrderRepository.ReconcileBacklogRow backlog = orderRepository.findReconcileBacklog();
+        LocalDateTime oldest = backlog != null ? backlog.getOldest() : null;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("backlog", backlog != null && backlog.getBacklog() != null ? backlog.getBacklog() : 0);
+        // Đơn chờ thanh toán lâu nhất, tính từ lúc gửi sang cổng (hoặc lúc đặt nếu chưa gửi)
+        stats.put("lagSeconds", oldest != null ? Duration.between(oldest, LocalDateTime.now()).toSeconds() : 0);
+        stats.put("lastRunAt", lastRunAt);
+        stats.put("lastRunMillis", lastRunMillis);
+        stats.put("lastRunChecked", lastRunChecked);
+        stats.put("confirmed", confirmed.sum());
+        stats.put("failed", failed.sum());
+        stats.put("stillPending", stillPending.sum());
+        stats.put("errors", errors.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,242 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.entity.Product;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Chỉ mục tìm kiếm món ăn trong bộ nhớ theo tên, mô tả và category.
+ *
+ * Văn bản được bỏ dấu tiếng Việt ("phở" -> "pho") trước khi tách từ. Mỗi từ trong câu
+ * tìm kiếm khớp chính xác, theo tiền tố hoặc sai tối đa 1-2 ký tự; điểm của món là tổng
+ * trọng số (tên > category > mô tả) của các từ khớp. Chỉ mục đi theo version của
+ * CatalogCacheService; khi catalog đổi, chỉ những món thay đổi mới được tách từ lại.
+ */
+@Service
+public class ProductSearchService {
+
+    public static final int MAX_LIMIT = 50;
+
+    private static final float NAME_WEIGHT = 3f;
+    private static final float CATEGORY_WEIGHT = 2f;
+    private static final float DESCRIPTION_WEIGHT = 1f;
+
+    private static final float EXACT_FACTOR = 1f;
+    private static final float PREFIX_FACTOR = 0.7f;
+    private static final float TYPO_FACTOR = 0.5f;
+
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern NON_WORD = Pattern.compile("[^a-z0-9]+");
+
+    @Autowired
+    private CatalogCacheService catalogCacheService;
+
+    private volatile SearchIndex index = new SearchIndex(-1, Collections.emptyMap());
+
+    /**
+     * Tìm món đang bán, kết quả sắp xếp theo số từ khớp rồi theo điểm
+     */
+    public List<Product> search(String query, int limit) {
+        List<String> terms = tokenize(query);
+        if (terms.isEmpty()) {
+            return Collections.emptyList();
+        }
+        SearchIndex current = currentIndex();
+
+        Map<Long, Hit> hits = new HashMap<>();
+        for (String term : terms) {
+            // Điểm tốt nhất của mỗi món cho từ này
+            Map<Long, Float> best = new HashMap<>();
+            for (Map.Entry<String, Float> match : current.expand(term).entrySet()) {
+                Map<Long, Float> postings = current.postings.get(match.getKey());
+                postings.forEach((idProduct, weight) -> best.merge(idProduct, weight * match.getValue(), Math::max));
+            }
+            best.forEach((idProduct, score) -> {
+                Hit hit = hits.computeIfAbsent(idProduct, id -> new Hit(current.documents.get(id).product));
+                hit.matchedTerms++;
+                hit.score += score;
+            });
+        }
+
+        return hits.values().stream()
+                .sorted((a, b) -> a.matchedTerms != b.matchedTerms
+                        ? Integer.compare(b.matchedTerms, a.matchedTerms)
+                        : Float.compare(b.score, a.score))
+                .limit(Math.max(1, Math.min(limit, MAX_LIMIT)))
+                .map(hit -> hit.product)
+                .toList();
+    }
+
+    /**
+     * Bỏ dấu, chuyển chữ thường và tách từ
+     */
+    public static List<String> tokenize(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        String folded = Normalizer.normalize(text.toLowerCase(), Normalizer.Form.NFD)
+                .replace('đ', 'd');
+        folded = COMBINING_MARKS.matcher(folded).replaceAll("");
+        return Arrays.stream(NON_WORD.split(folded))
+                .filter(token -> !token.isEmpty())
+                .toList();
+    }
+
+    // Dựng lại chỉ mục nếu catalog đã đổi version, dùng lại tài liệu của món không thay đổi
+    private SearchIndex currentIndex() {
+        long version = catalogCacheService.getVersion();
+        SearchIndex current = index;
+        if (current.version == version) {
+            return current;
+        }
+        synchronized (this) {
+            current = index;
+            if (current.version == version) {
+                return current;
+            }
+            Map<Long, Document> documents = new HashMap<>();
+            for (Product product : catalogCacheService.getActiveProducts()) {
+                Document previous = current.documents.get(product.getIdProduct());
+                documents.put(product.getIdProduct(), previous != null && previous.sameContent(product)
+                        ? previous.withProduct(product)
+                        : new Document(product));
+            }
+            current = new SearchIndex(version, documents);
+            index = current;
+            return current;
+        }
+    }
+
+    // Khoảng cách Levenshtein, dừng sớm khi vượt quá max
+    private static int editDistance(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[b.length()];
+    }
+
+    private static class Document {
+        private final Product product;
+        private final String name;
+        private final String description;
+        private final String category;
+        private final Map<String, Float> termWeights;
+
+        Document(Product product) {
+            this.product = product;
+            this.name = product.getNameProduct();
+            this.description = product.getDescriptionProduct();
+            this.category = product.getCategory() != null ? product.getCategory().getNameCategory() : null;
+
+            Map<String, Float> weights = new HashMap<>();
+            tokenize(description).forEach(t -> weights.merge(t, DESCRIPTION_WEIGHT, Math::max));
+            tokenize(category).forEach(t -> weights.merge(t, CATEGORY_WEIGHT, Math::max));
+            tokenize(name).forEach(t -> weights.merge(t, NAME_WEIGHT, Math::max));
+            this.termWeights = weights;
+        }
+
+        private Document(Document source, Product product) {
+            this.product = product;
+            this.name = source.name;
+            this.description = source.description;
+            this.category = source.category;
+            this.termWeights = source.termWeights;
+        }
+
+        boolean sameContent(Product product) {
+            String productCategory = product.getCategory() != null ? product.getCategory().getNameCategory() : null;
+            return Objects.equals(name, product.getNameProduct())
+                    && Objects.equals(description, product.getDescriptionProduct())
+                    && Objects.equals(category, productCategory);
+        }
+
+        Document withProduct(Product product) {
+            return new Document(this, product);
+        }
+    }
+
+    private static class SearchIndex {
+        private final long version;
+        private final Map<Long, Document> documents;
+        private final Map<String, Map<Long, Float>> postings;
+        private final String[] sortedTerms;
+
+        SearchIndex(long version, Map<Long, Document> documents) {
+            this.version = version;
+            this.documents = documents;
+
+            Map<String, Map<Long, Float>> terms = new HashMap<>();
+            documents.forEach((idProduct, document) -> document.termWeights.forEach((term, weight) ->
+                    terms.computeIfAbsent(term, t -> new HashMap<>()).put(idProduct, weight)));
+            this.postings = terms;
+            this.sortedTerms = terms.keySet().stream().sorted().toArray(String[]::new);
+        }
+
+        // Các từ trong chỉ mục khớp với term (chính xác, tiền tố, gần đúng) kèm hệ số điểm
+        Map<String, Float> expand(String term) {
+            Map<String, Float> matches = new HashMap<>();
+            if (postings.containsKey(term)) {
+                matches.put(term, EXACT_FACTOR);
+            }
+
+            if (term.length() >= 2) {
+                int start = Arrays.binarySearch(sortedTerms, term);
+                if (start < 0) {
+                    start = -start - 1;
+                }
+                for (int i = start; i < sortedTerms.length && sortedTerms[i].startsWith(term); i++) {
+                    matches.putIfAbsent(sortedTerms[i], PREFIX_FACTOR);
+                }
+            }
+
+            if (term.length() >= 4) {
+                int maxDistance = term.length() >= 8 ? 2 : 1;
+                for (String candidate : sortedTerms) {
+                    if (!matches.containsKey(candidate) && editDistance(term, candidate, maxDistance) <= maxDistance) {
+                        matches.put(candidate, TYPO_FACTOR);
+                    }
+                }
+            }
+            return matches;
+        }
+    }
+
+    private static class Hit {
+        private final Product product;
+        private int matchedTerms;
+        private float score;
+
+        Hit(Product product) {
+            this.product = product;
+        }
+    }
+}
@@ -0,0 +1,244 @@
+package com.example.OrderFoodSystem.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * Kho ảnh trên dịch vụ tương thích S3 (AWS S3, MinIO...), dùng URL dạng path-style
+ * {endpoint}/{bucket}/{key} và chữ ký AWS Signature V4.
+ */
+@Service
+@ConditionalOnProperty(name = "image.store.type", havingValue = "s3")
+public class S3ImageStore implements ImageStore {
+
+    private static final DateTimeFormatter AMZ_DATE = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+            .withZone(ZoneOffset.UTC);
+    private static final String UNSIGNED_PAYLOAD = "UNSIGNED-PAYLOAD";
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private final URI endpoint;
+    private final String bucket;
+    private final String region;
+    private final String accessKey;
+    private final String secretKey;
+    private final String publicBaseUrl;
+    private final HttpClient httpClient;
+
+    public S3ImageStore(
+            @Value("${image.store.s3.endpoint}") String endpoint,
+            @Value("${image.store.s3.bucket}") String bucket,
+            @Value("${image.store.s3.region:us-east-1}") String region,
+            @Value("${image.store.s3.access-key}") String accessKey,
+            @Value("${image.store.s3.secret-key}") String secretKey,
+            @Value("${image.store.public-base-url:}") String publicBaseUrl) {
+        this.endpoint = URI.create(endpoint.endsWith("/") ? endpoint.substring(0, endpoint.length() - 1) : endpoint);
+        this.bucket = bucket;
+        this.region = region;
+        this.accessKey = accessKey;
+        this.secretKey = secretKey;
+        String base = publicBaseUrl.isBlank() ? this.endpoint + "/" + bucket : publicBaseUrl;
+        this.publicBaseUrl = base.endsWith("/") ? base : base + "/";
+        this.httpClient = HttpClient.newBuilder().connectTimeout(TIMEOUT).build();
+    }
+
+    @Override
+    public boolean exists(String key) throws IOException {
+        HttpResponse<Void> response = send("HEAD", key, Map.of(), HttpRequest.BodyPublishers.noBody(), null,
+                HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() == 404) {
+            return false;
+        }
+        check(response, key);
+        return true;
+    }
+
+    @Override
+    public byte[] read(String key) throws IOException {
+        HttpResponse<byte[]> response = send("GET", key, Map.of(), HttpRequest.BodyPublishers.noBody(), null,
+                HttpResponse.BodyHandlers.ofByteArray());
+        check(response, key);
+        return response.body();
+    }
+
+    @Override
+    public void put(String key, byte[] data, String contentType) throws IOException {
+        HttpResponse<Void> response = send("PUT", key, Map.of(), HttpRequest.BodyPublishers.ofByteArray(data),
+                contentType, HttpResponse.BodyHandlers.discarding());
+        check(response, key);
+    }
+
+    @Override
+    public void delete(String key) throws IOException {
+        HttpResponse<Void> response = send("DELETE", key, Map.of(), HttpRequest.BodyPublishers.noBody(), null,
+                HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 404) {
+            check(response, key);
+        }
+    }
+
+    @Override
+    public List<StoredObject> list() throws IOException {
+        List<StoredObject> objects = new ArrayList<>();
+        String continuationToken = null;
+        do {
+            Map<String, String> query = new TreeMap<>();
+            query.put("list-type", "2");
+            if (continuationToken != null) {
+                query.put("continuation-token", continuationToken);
+            }
+            HttpResponse<byte[]> response = send("GET", null, query, HttpRequest.BodyPublishers.noBody(), null,
+                    HttpResponse.BodyHandlers.ofByteArray());
+            check(response, "list");
+
+            Document document = parseXml(response.body());
+            NodeList contents = document.getElementsByTagName("Contents");
+            for (int i = 0; i < contents.getLength(); i++) {
+                Element element = (Element) contents.item(i);
+                String lastModified = text(element, "LastModified");
+                objects.add(new StoredObject(text(element, "Key"),
+                        lastModified != null ? Instant.parse(lastModified).toEpochMilli() : 0L));
+            }
+            continuationToken = "true".equals(text(document.getDocumentElement(), "IsTruncated"))
+                    ? text(document.getDocumentElement(), "NextContinuationToken")
+                    : null;
+        } while (continuationToken != null);
+        return objects;
+    }
+
+    @Override
+    public String url(String key) {
+        return publicBaseUrl + key;
+    }
+
+    private <T> HttpResponse<T> send(String method, String key, Map<String, String> query,
+            HttpRequest.BodyPublisher body, String contentType, HttpResponse.BodyHandler<T> handler)
+            throws IOException {
+        String path = endpoint.getRawPath() + "/" + encode(bucket) + (key != null ? "/" + encode(key) : "");
+        String canonicalQuery = query.entrySet().stream()
+                .map(e -> encode(e.getKey()) + "=" + encode(e.getValue()))
+                .collect(Collectors.joining("&"));
+        URI uri = URI.create(endpoint.getScheme() + "://" + endpoint.getRawAuthority() + path
+                + (canonicalQuery.isEmpty() ? "" : "?" + canonicalQuery));
+
+        String amzDate = AMZ_DATE.format(Instant.now());
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+                .timeout(TIMEOUT)
+                .method(method, body)
+                .header("x-amz-date", amzDate)
+                .header("x-amz-content-sha256", UNSIGNED_PAYLOAD)
+                .header("Authorization", authorization(method, path, canonicalQuery, amzDate));
+        if (contentType != null) {
+            builder.header("Content-Type", contentType);
+        }
+
+        try {
+            return httpClient.send(builder.build(), handler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while calling image store", e);
+        }
+    }
+
+    // Header Authorization theo AWS Signature V4
+    private String authorization(String method, String path, String canonicalQuery, String amzDate) {
+        String date = amzDate.substring(0, 8);
+        String scope = date + "/" + region + "/s3/aws4_request";
+        String signedHeaders = "host;x-amz-content-sha256;x-amz-date";
+        String canonicalRequest = method + "\n"
+                + path + "\n"
+                + canonicalQuery + "\n"
+                + "host:" + endpoint.getRawAuthority() + "\n"
+                + "x-amz-content-sha256:" + UNSIGNED_PAYLOAD + "\n"
+                + "x-amz-date:" + amzDate + "\n"
+                + "\n"
+                + signedHeaders + "\n"
+                + UNSIGNED_PAYLOAD;
+        String stringToSign = "AWS4-HMAC-SHA256\n" + amzDate + "\n" + scope + "\n" + sha256Hex(canonicalRequest);
+
+        byte[] signingKey = hmac(("AWS4" + secretKey).getBytes(StandardCharsets.UTF_8), date);
+        signingKey = hmac(signingKey, region);
+        signingKey = hmac(signingKey, "s3");
+        signingKey = hmac(signingKey, "aws4_request");
+        String signature = HexFormat.of().formatHex(hmac(signingKey, stringToSign));
+
+        return "AWS4-HMAC-SHA256 Credential=" + accessKey + "/" + scope
+                + ", SignedHeaders=" + signedHeaders
+                + ", Signature=" + signature;
+    }
+
+    private static void check(HttpResponse<?> response, String key) throws IOException {
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Image store returned HTTP " + response.statusCode() + " for " + key);
+        }
+    }
+
+    // Mã hóa URI theo RFC 3986 như S3 yêu cầu
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8)
+                .replace("+", "%20")
+                .replace("*", "%2A")
+                .replace("%7E", "~");
+    }
+
+    private static byte[] hmac(byte[] key, String data) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(key, "HmacSHA256"));
+            return mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String sha256Hex(String data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256")
+                    .digest(data.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Document parseXml(byte[] xml) throws IOException {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+            return factory.newDocumentBuilder().parse(new ByteArrayInputStream(xml));
+        } catch (Exception e) {
+            throw new IOException("Invalid list response from image store", e);
+        }
+    }
+
+    private static String text(Element parent, String tag) {
+        NodeList nodes = parent.getElementsByTagName(tag);
+        return nodes.getLength() > 0 ? nodes.item(0).getTextContent() : null;
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.entity.DailySalesRollup;
+import com.example.OrderFoodSystem.entity.Order;
+import com.example.OrderFoodSystem.entity.OrderDetail;
+import com.example.OrderFoodSystem.repository.DailySalesRollupRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * Duy trì bảng daily_sales_rollup: cập nhật tăng dần mỗi khi đơn hàng đổi trạng thái
+ * và định kỳ đối chiếu với bảng orders để dựng lại những ngày bị lệch.
+ */
+@Service
+public class SalesRollupService {
+
+    private static final String PENDING = "pending";
+
+    @Autowired
+    private DailySalesRollupRepository rollupRepository;
+
+    @Value("${rollup.reconcile.days:7}")
+    private int reconcileDays;
+
+    /**
+     * Ghi nhận việc đơn hàng chuyển từ (oldStatus, oldOrderDate) sang trạng thái và ngày hiện tại.
+     * Phải được gọi trong cùng transaction với việc lưu Order.
+     */
+    @Transactional
+    public void recordStatusChange(Order order, String oldStatus, LocalDateTime oldOrderDate) {
+        String newStatus = order.getStatus();
+        LocalDate oldDate = oldOrderDate != null ? oldOrderDate.toLocalDate() : null;
+        LocalDate newDate = order.getOrderDate() != null ? order.getOrderDate().toLocalDate() : null;
+        if (Objects.equals(oldStatus, newStatus) && Objects.equals(oldDate, newDate)) {
+            return;
+        }
+        if (oldStatus != null && !PENDING.equals(oldStatus) && oldDate != null) {
+            apply(order, oldDate, oldStatus, -1);
+        }
+        if (newStatus != null && !PENDING.equals(newStatus) && newDate != null) {
+            apply(order, newDate, newStatus, 1);
+        }
+    }
+
+    /**
+     * Trừ đơn hàng sắp bị xóa khỏi rollup. Phải được gọi trong cùng transaction với việc xóa Order.
+     */
+    @Transactional
+    public void recordDeletion(Order order) {
+        String status = order.getStatus();
+        if (status != null && !PENDING.equals(status) && order.getOrderDate() != null) {
+            apply(order, order.getOrderDate().toLocalDate(), status, -1);
+        }
+    }
+
+    private void apply(Order order, LocalDate salesDate, String status, int sign) {
+        long totalQuantity = 0;
+        Map<Long, long[]> quantities = new HashMap<>();
+        Map<Long, Double> revenues = new HashMap<>();
+
+        if (order.getOrderDetails() != null) {
+            for (OrderDetail detail : order.getOrderDetails()) {
+                if (detail.getProduct() == null) {
+                    continue;
+                }
+                Long idProduct = detail.getProduct().getIdProduct();
+                quantities.computeIfAbsent(idProduct, id -> new long[1])[0] += detail.getQuantity();
+                revenues.merge(idProduct, detail.getSubTotal() != null ? detail.getSubTotal() : 0.0, Double::sum);
+                totalQuantity += detail.getQuantity();
+            }
+        }
+
+        for (Map.Entry<Long, long[]> entry : quantities.entrySet()) {
+            rollupRepository.increment(salesDate, status, entry.getKey(), sign * entry.getValue()[0],
+                    sign * revenues.get(entry.getKey()), (long) sign);
+        }
+
+        double total = order.getTotalPrice() != null ? order.getTotalPrice() : 0.0;
+        rollupRepository.increment(salesDate, status, DailySalesRollup.ORDER_TOTAL, sign * totalQuantity,
+                sign * total, (long) sign);
+    }
+
+    /**
+     * Dựng lại rollup cho các ngày trong [fromDate, toDate) từ bảng orders/order_details
+     */
+    @Transactional
+    public void rebuild(LocalDate fromDate, LocalDate toDate) {
+        rollupRepository.deleteRange(fromDate, toDate);
+        rollupRepository.rebuildProductRows(fromDate.atStartOfDay(), toDate.atStartOfDay());
+        rollupRepository.rebuildOrderRows(fromDate.atStartOfDay(), toDate.atStartOfDay());
+    }
+
+    /**
+     * Đối chiếu số đơn và doanh thu của các ngày gần đây, dựng lại ngày nào bị lệch
+     *
+     * @return các ngày đã được dựng lại
+     */
+    @Transactional
+    public List<LocalDate> reconcile(LocalDate fromDate, LocalDate toDate) {
+        Map<String, double[]> expected = toMap(rollupRepository.aggregateOrders(
+                fromDate.atStartOfDay(), toDate.atStartOfDay()));
+        Map<String, double[]> actual = toMap(rollupRepository.findOrderRows(fromDate, toDate));
+
+        TreeSet<LocalDate> driftedDays = new TreeSet<>();
+        for (String key : unionKeys(expected, actual)) {
+            double[] e = expected.getOrDefault(key, new double[2]);
+            double[] a = actual.getOrDefault(key, new double[2]);
+            if (e[0] != a[0] || Math.abs(e[1] - a[1]) > 0.01) {
+                driftedDays.add(LocalDate.parse(key.substring(0, key.indexOf('|'))));
+            }
+        }
+
+        // Gộp các ngày liên tiếp để dựng lại một lần (vd: lần backfill đầu tiên khi rollup còn trống)
+        LocalDate rangeStart = null;
+        LocalDate rangeEnd = null;
+        for (LocalDate day : driftedDays) {
+            if (rangeEnd != null && !day.equals(rangeEnd)) {
+                rebuild(rangeStart, rangeEnd);
+                rangeStart = null;
+            }
+            if (rangeStart == null) {
+                rangeStart = day;
+            }
+            rangeEnd = day.plusDays(1);
+        }
+        if (rangeStart != null) {
+            rebuild(rangeStart, rangeEnd);
+        }
+        return List.copyOf(driftedDays);
+    }
+
+    @Scheduled(cron = "${rollup.reconcile.cron:0 30 3 * * *}")
+    @Transactional
+    public void reconcileRecentDays() {
+        LocalDate tomorrow = LocalDate.now().plusDays(1);
+        reconcile(tomorrow.minusDays(reconcileDays + 1L), tomorrow);
+    }
+
+    // key = ngày|trạng thái, value = {số đơn, doanh thu}
+    private Map<String, double[]> toMap(List<DailySalesRollupRepository.DayStatusRow> rows) {
+        Map<String, double[]> map = new HashMap<>();
+        for (DailySalesRollupRepository.DayStatusRow row : rows) {
+            double[] values = new double[]{
+                    row.getOrderCount() != null ? row.getOrderCount() : 0,
+                    row.getRevenue() != null ? row.getRevenue() : 0.0};
+            map.put(row.getSalesDate() + "|" + row.getStatus(), values);
+        }
+        return map;
+    }
+
+    private TreeSet<String> unionKeys(Map<String, double[]> a, Map<String, double[]> b) {
+        TreeSet<String> keys = new TreeSet<>(a.keySet());
+        keys.addAll(b.keySet());
+        return keys;
+    }
+}
@@ -0,0 +1,333 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.dto.StatisticsDTO;
+import com.example.OrderFoodSystem.repository.CustomerRepository;
+import com.example.OrderFoodSystem.repository.DailySalesRollupRepository;
+import com.example.OrderFoodSystem.repository.OrderDetailRepository;
+import com.example.OrderFoodSystem.repository.OrderRepository;
+import com.example.OrderFoodSystem.repository.ProductRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Supplier;
+
+/**
+ * Thống kê doanh thu, trạng thái đơn hàng và món bán chạy bằng truy vấn GROUP BY.
+ * Khoảng thời gian tròn ngày được đọc từ bảng daily_sales_rollup thay vì orders.
+ * Kết quả được cache theo khoảng thời gian; chuỗi doanh thu của khoảng đang mở
+ * chỉ tính lại bucket cuối cùng thay vì toàn bộ khoảng.
+ * Khoảng thời gian do client gửi lên nên mỗi cache là LRU giới hạn statistics.cache.max-size mục,
+ * mục hết hạn được dọn định kỳ.
+ */
+@Service
+public class StatisticsService {
+
+    private static final Duration REFRESH_INTERVAL = Duration.ofSeconds(30);
+    private static final Duration FULL_REFRESH_INTERVAL = Duration.ofMinutes(10);
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(2000, 1, 1, 0, 0);
+    private static final int DEFAULT_TOP_LIMIT = 5;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    @Autowired
+    private OrderDetailRepository orderDetailRepository;
+
+    @Autowired
+    private CustomerRepository customerRepository;
+
+    @Autowired
+    private ProductRepository productRepository;
+
+    @Autowired
+    private DailySalesRollupRepository rollupRepository;
+
+    @Value("${statistics.cache.max-size:500}")
+    private int maxEntries;
+
+    // Truy cập qua synchronized trên chính map (LinkedHashMap theo thứ tự truy cập)
+    private final Map<String, RevenueSeries> revenueCache = lruMap();
+    private final Map<String, CachedValue<?>> valueCache = lruMap();
+
+    public enum Granularity {
+        HOUR("%Y-%m-%d %H:00"),
+        DAY("%Y-%m-%d"),
+        WEEK("%x-W%v"),
+        MONTH("%Y-%m");
+
+        private final String bucketFormat;
+
+        Granularity(String bucketFormat) {
+            this.bucketFormat = bucketFormat;
+        }
+
+        public String getBucketFormat() {
+            return bucketFormat;
+        }
+
+        // Thời điểm bắt đầu của bucket chứa time
+        public LocalDateTime truncate(LocalDateTime time) {
+            switch (this) {
+                case HOUR:
+                    return time.truncatedTo(ChronoUnit.HOURS);
+                case DAY:
+                    return time.truncatedTo(ChronoUnit.DAYS);
+                case WEEK:
+                    return time.truncatedTo(ChronoUnit.DAYS).with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                default:
+                    return time.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+            }
+        }
+
+        public static Granularity from(String value) {
+            try {
+                return Granularity.valueOf(value.toUpperCase());
+            } catch (Exception e) {
+                throw new RuntimeException("Invalid granularity: " + value);
+            }
+        }
+    }
+
+    /**
+     * Dữ liệu cho trang thống kê theo khoảng: today, thisWeek, thisMonth, all
+     */
+    public StatisticsDTO.Dashboard getDashboard(String range) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime fromDate;
+        Granularity granularity;
+
+        switch (range == null ? "all" : range) {
+            case "today":
+                fromDate = now.truncatedTo(ChronoUnit.DAYS);
+                granularity = Granularity.HOUR;
+                break;
+            case "thisWeek":
+                fromDate = now.truncatedTo(ChronoUnit.DAYS).minusDays(7);
+                granularity = Granularity.DAY;
+                break;
+            case "thisMonth":
+                fromDate = now.truncatedTo(ChronoUnit.DAYS).withDayOfMonth(1);
+                granularity = Granularity.WEEK;
+                break;
+            case "all":
+                fromDate = null;
+                granularity = Granularity.MONTH;
+                break;
+            default:
+                throw new RuntimeException("Invalid range: " + range);
+        }
+
+        List<StatisticsDTO.RevenuePoint> chart = getRevenue(granularity, fromDate, null);
+
+        StatisticsDTO.Dashboard dashboard = new StatisticsDTO.Dashboard();
+        dashboard.setRange(range == null ? "all" : range);
+        dashboard.setGranularity(granularity.name().toLowerCase());
+        dashboard.setRevenueChart(chart);
+        dashboard.setRevenue(chart.stream().mapToDouble(p -> p.getRevenue() != null ? p.getRevenue() : 0.0).sum());
+        dashboard.setTotalOrders(chart.stream().mapToLong(StatisticsDTO.RevenuePoint::getOrderCount).sum());
+        dashboard.setStatusCounts(getStatusCounts(fromDate, null));
+        dashboard.setTopProducts(getTopProducts(fromDate, null, DEFAULT_TOP_LIMIT));
+        dashboard.setTotalCustomers(cached("customers", customerRepository::count));
+        dashboard.setTotalProducts(cached("products", productRepository::countByIsActiveTrue));
+        return dashboard;
+    }
+
+    /**
+     * Doanh thu theo bucket trong [fromDate, toDate). toDate = null nghĩa là khoảng
+     * đang mở tới hiện tại và sẽ được làm mới tăng dần.
+     */
+    public List<StatisticsDTO.RevenuePoint> getRevenue(Granularity granularity, LocalDateTime fromDate,
+                                                       LocalDateTime toDate) {
+        LocalDateTime from = fromDate != null ? fromDate : BEGINNING;
+        String key = granularity + "|" + from + "|" + toDate;
+        RevenueSeries series;
+        synchronized (revenueCache) {
+            series = revenueCache.computeIfAbsent(key, k -> new RevenueSeries(granularity, from, toDate));
+        }
+        return series.get();
+    }
+
+    public Map<String, Long> getStatusCounts(LocalDateTime fromDate, LocalDateTime toDate) {
+        LocalDateTime from = fromDate != null ? fromDate : BEGINNING;
+        return cached("status|" + from + "|" + toDate, () -> {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (OrderRepository.StatusCountRow row : orderRepository.countByStatus(from, upperBound(toDate))) {
+                counts.put(row.getStatus(), row.getOrderCount());
+            }
+            return counts;
+        });
+    }
+
+    public List<StatisticsDTO.TopProduct> getTopProducts(LocalDateTime fromDate, LocalDateTime toDate, Integer limit) {
+        LocalDateTime from = fromDate != null ? fromDate : BEGINNING;
+        int size = limit == null || limit <= 0 ? DEFAULT_TOP_LIMIT : Math.min(limit, 50);
+        LocalDateTime to = upperBound(toDate);
+        return cached("top|" + from + "|" + toDate + "|" + size, () -> {
+            List<OrderDetailRepository.ProductSalesRow> rows = isWholeDays(from, to)
+                    ? rollupRepository.findTopProducts(from.toLocalDate(), to.toLocalDate(), PageRequest.of(0, size))
+                    : orderDetailRepository.findTopProducts(from, to, PageRequest.of(0, size));
+            return rows.stream()
+                    .map(row -> new StatisticsDTO.TopProduct(row.getIdProduct(), row.getNameProduct(),
+                            row.getQuantity(), row.getRevenue()))
+                    .toList();
+        });
+    }
+
+    /**
+     * Xóa cache, dùng khi dữ liệu cũ thay đổi (ví dụ hủy đơn hàng của ngày trước)
+     */
+    public void invalidate() {
+        synchronized (revenueCache) {
+            revenueCache.clear();
+        }
+        synchronized (valueCache) {
+            valueCache.clear();
+        }
+    }
+
+    /**
+     * Bỏ các mục đã hết hạn, không để khoảng thời gian chỉ được hỏi một lần nằm lại trong cache
+     */
+    @Scheduled(fixedDelayString = "${statistics.cache.sweep-ms:60000}")
+    public void evictExpired() {
+        synchronized (valueCache) {
+            valueCache.values().removeIf(CachedValue::isExpired);
+        }
+        synchronized (revenueCache) {
+            revenueCache.values().removeIf(RevenueSeries::isStale);
+        }
+    }
+
+    private <V> Map<String, V> lruMap() {
+        return new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, V> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    private boolean isWholeDays(LocalDateTime from, LocalDateTime to) {
+        return from.toLocalTime().equals(LocalTime.MIDNIGHT) && to.toLocalTime().equals(LocalTime.MIDNIGHT);
+    }
+
+    private LocalDateTime upperBound(LocalDateTime toDate) {
+        return toDate != null ? toDate : LocalDate.now().plusDays(1).atStartOfDay();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T cached(String key, Supplier<T> loader) {
+        CachedValue<?> entry;
+        synchronized (valueCache) {
+            entry = valueCache.get(key);
+        }
+        if (entry == null || entry.isExpired()) {
+            // Truy vấn ngoài lock: hai request cùng key có thể cùng tính, không chặn các key khác
+            entry = new CachedValue<>(loader.get());
+            synchronized (valueCache) {
+                valueCache.put(key, entry);
+            }
+        }
+        return (T) entry.value;
+    }
+
+    private static class CachedValue<T> {
+        private final T value;
+        private final LocalDateTime computedAt = LocalDateTime.now();
+
+        CachedValue(T value) {
+            this.value = value;
+        }
+
+        boolean isExpired() {
+            return computedAt.plus(REFRESH_INTERVAL).isBefore(LocalDateTime.now());
+        }
+    }
+
+    /**
+     * Chuỗi doanh thu của một khoảng thời gian. Khoảng đã đóng (toDate != null) chỉ
+     * tính lại định kỳ; khoảng đang mở chỉ truy vấn lại từ bucket cuối cùng.
+     */
+    private class RevenueSeries {
+        private final Granularity granularity;
+        private final LocalDateTime fromDate;
+        private final LocalDateTime toDate;
+        private final TreeMap<String, StatisticsDTO.RevenuePoint> buckets = new TreeMap<>();
+        private LocalDateTime lastRefresh;
+        private volatile LocalDateTime lastFullRefresh;
+
+        RevenueSeries(Granularity granularity, LocalDateTime fromDate, LocalDateTime toDate) {
+            this.granularity = granularity;
+            this.fromDate = fromDate;
+            this.toDate = toDate;
+        }
+
+        // Dữ liệu đã quá hạn làm mới toàn bộ, lần get() sau sẽ phải tải lại từ đầu
+        boolean isStale() {
+            LocalDateTime full = lastFullRefresh;
+            return full != null && full.plus(FULL_REFRESH_INTERVAL).isBefore(LocalDateTime.now());
+        }
+
+        synchronized List<StatisticsDTO.RevenuePoint> get() {
+            LocalDateTime now = LocalDateTime.now();
+            if (lastFullRefresh == null || lastFullRefresh.plus(FULL_REFRESH_INTERVAL).isBefore(now)) {
+                buckets.clear();
+                load(fromDate);
+                lastFullRefresh = now;
+                lastRefresh = now;
+            } else if (toDate == null && lastRefresh.plus(REFRESH_INTERVAL).isBefore(now)) {
+                // Các bucket trước đó đã khép lại, chỉ cần tính lại bucket đang mở
+                LocalDateTime openBucket = granularity.truncate(lastRefresh);
+                LocalDateTime start = openBucket.isAfter(fromDate) ? openBucket : fromDate;
+                buckets.tailMap(bucketKey(start), true).clear();
+                load(start);
+                lastRefresh = now;
+            }
+            return new ArrayList<>(buckets.values());
+        }
+
+        private void load(LocalDateTime start) {
+            LocalDateTime end = upperBound(toDate);
+            List<OrderRepository.RevenueBucketRow> rows = granularity != Granularity.HOUR && isWholeDays(start, end)
+                    ? rollupRepository.sumRevenueByBucket(granularity.getBucketFormat(),
+                            start.toLocalDate(), end.toLocalDate())
+                    : orderRepository.sumRevenueByBucket(granularity.getBucketFormat(), start, end);
+            for (OrderRepository.RevenueBucketRow row : rows) {
+                buckets.put(row.getBucket(),
+                        new StatisticsDTO.RevenuePoint(row.getBucket(), row.getRevenue(), row.getOrderCount()));
+            }
+        }
+
+        // Key của bucket theo cùng định dạng với DATE_FORMAT của MySQL
+        private String bucketKey(LocalDateTime time) {
+            switch (granularity) {
+                case HOUR:
+                    return String.format("%04d-%02d-%02d %02d:00", time.getYear(), time.getMonthValue(),
+                            time.getDayOfMonth(), time.getHour());
+                case DAY:
+                    return time.toLocalDate().toString();
+                case WEEK:
+                    return String.format("%04d-W%02d", time.get(IsoFields.WEEK_BASED_YEAR),
+                            time.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+                default:
+                    return String.format("%04d-%02d", time.getYear(), time.getMonthValue());
+            }
+        }
+    }
+}
@@ -1,146 +1,261 @@
 package com.example.OrderFoodSystem.service;
 
 import com.example.OrderFoodSystem.config.VNPayConfig;
-import org.springframework.beans.factory.annotation.Autowired;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
-import java.io.UnsupportedEncodingException;
-import java.net.URLEncoder;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
 import java.nio.charset.StandardCharsets;
-import java.text.SimpleDateFormat;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class VNPayService {
 
-    @Autowired
-    private VNPayConfig vnPayConfig;
-
-    public String createPaymentUrl(long amount, String orderInfo, String ipAddress, String orderId) throws UnsupportedEncodingException {
-        String vnp_Version = "2.1.0";
-        String vnp_Command = "pay";
-        String vnp_TxnRef = orderId + "_" + System.currentTimeMillis(); // orderId_timestamp
-        String vnp_IpAddr = ipAddress;
-        String vnp_TmnCode = vnPayConfig.getTmnCode();
-        
-        Map<String, String> vnp_Params = new HashMap<>();
-        vnp_Params.put("vnp_Version", vnp_Version);
-        vnp_Params.put("vnp_Command", vnp_Command);
-        vnp_Params.put("vnp_TmnCode", vnp_TmnCode);
-        vnp_Params.put("vnp_Amount", String.valueOf(amount * 100)); // VNPay yêu cầu số tiền nhân 100
-        vnp_Params.put("vnp_CurrCode", "VND");
-        vnp_Params.put("vnp_TxnRef", vnp_TxnRef);
-        vnp_Params.put("vnp_OrderInfo", orderInfo);
-        vnp_Params.put("vnp_OrderType", "other");
-        vnp_Params.put("vnp_Locale", "vn");
-        vnp_Params.put("vnp_ReturnUrl", vnPayConfig.getReturnUrl());
-        vnp_Params.put("vnp_IpAddr", vnp_IpAddr);
-
-        // Fix timezone: Use Asia/Ho_Chi_Minh for Vietnam (GMT+7)
-        Calendar cld = Calendar.getInstance(TimeZone.getTimeZone("Asia/Ho_Chi_Minh"));
-        SimpleDateFormat formatter = new SimpleDateFormat("yyyyMMddHHmmss");
-        formatter.setTimeZone(TimeZone.getTimeZone("Asia/Ho_Chi_Minh"));
-        String vnp_CreateDate = formatter.format(cld.getTime());
-        vnp_Params.put("vnp_CreateDate", vnp_CreateDate);
-        
-        cld.add(Calendar.MINUTE, 15);
-        String vnp_ExpireDate = formatter.format(cld.getTime());
-        vnp_Params.put("vnp_ExpireDate", vnp_ExpireDate);
-
-        List<String> fieldNames = new ArrayList<>(vnp_Params.keySet());
-        Collections.sort(fieldNames);
-        StringBuilder hashData = new StringBuilder();
-        StringBuilder query = new StringBuilder();
-        Iterator<String> itr = fieldNames.iterator();
-        while (itr.hasNext()) {
-            String fieldName = itr.next();
-            String fieldValue = vnp_Params.get(fieldName);
-            if ((fieldValue != null) && (fieldValue.length() > 0)) {
-                // Build hash data
-                hashData.append(fieldName);
-                hashData.append('=');
-                hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
-                // Build query
-                query.append(URLEncoder.encode(fieldName, StandardCharsets.US_ASCII.toString()));
-                query.append('=');
-                query.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
-                if (itr.hasNext()) {
-                    query.append('&');
-                    hashData.append('&');
-                }
-            }
-        }
-        String queryUrl = query.toString();
-        String vnp_SecureHash = hmacSHA512(vnPayConfig.getHashSecret(), hashData.toString());
-        queryUrl += "&vnp_SecureHash=" + vnp_SecureHash;
-        String paymentUrl = vnPayConfig.getPayUrl() + "?" + queryUrl;
-        return paymentUrl;
+    private static final ZoneId VIETNAM = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final DateTimeFormatter VNP_DATE = DateTimeFormatter.ofPattern("yyyyMMddHHmmss").withZone(VIETNAM);
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static final TypeReference<Map<String, Object>> RESPONSE_TYPE = new TypeReference<>() {
+    };
+    // Thứ tự trường ký của phản hồi querydr theo tài liệu VNPay
+    private static final String[] QUERY_RESPONSE_FIELDS = {"vnp_ResponseId", "vnp_Command", "vnp_ResponseCode",
+            "vnp_Message", "vnp_TmnCode", "vnp_TxnRef", "vnp_Amount", "vnp_BankCode", "vnp_PayDate",
+            "vnp_TransactionNo", "vnp_TransactionType", "vnp_TransactionStatus", "vnp_OrderInfo",
+            "vnp_PromotionCode", "vnp_PromotionAmount"};
+
+    private final VNPayConfig vnPayConfig;
+    private final ObjectMapper objectMapper;
+    private final URI apiUrl;
+    private final Duration queryTimeout;
+    private final HttpClient httpClient;
+
+    // Tham số cố định đã encode sẵn; tên tham số VNPay không cần encode
+    private final String returnUrlParam;
+    private final String tmnCodeParam;
+
+    public VNPayService(VNPayConfig vnPayConfig, ObjectMapper objectMapper,
+                        @Value("${vnpay.apiUrl:https://sandbox.vnpayment.vn/merchant_webapi/api/transaction}") String apiUrl,
+                        @Value("${vnpay.query-timeout-ms:10000}") long queryTimeoutMillis) {
+        this.vnPayConfig = vnPayConfig;
+        this.objectMapper = objectMapper;
+        this.apiUrl = URI.create(apiUrl);
+        this.queryTimeout = Duration.ofMillis(queryTimeoutMillis);
+        this.httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        this.returnUrlParam = encodedParam("vnp_ReturnUrl", vnPayConfig.getReturnUrl());
+        this.tmnCodeParam = encodedParam("vnp_TmnCode", vnPayConfig.getTmnCode());
+    }
+
+    /**
+     * Tạo URL thanh toán. Tham số được ghi thẳng theo thứ tự tên (VNPay yêu cầu sắp xếp khi ký),
+     * chuỗi query cũng chính là dữ liệu ký nên chỉ encode một lần.
+     */
+    public String createPaymentUrl(long amount, String orderInfo, String ipAddress, String vnp_TxnRef,
+                                   LocalDateTime requestedAt) {
+        // Ngày tạo theo giờ Việt Nam, lấy từ thời điểm đã lưu trên đơn để querydr tra cứu đúng giao dịch
+        ZonedDateTime createdAt = requestedAt.atZone(ZoneId.systemDefault());
+
+        StringBuilder query = new StringBuilder(256 + returnUrlParam.length());
+        appendParam(query, "vnp_Amount", String.valueOf(amount * 100)); // VNPay yêu cầu số tiền nhân 100
+        query.append("&vnp_Command=pay");
+        appendParam(query, "vnp_CreateDate", VNP_DATE.format(createdAt));
+        query.append("&vnp_CurrCode=VND");
+        appendParam(query, "vnp_ExpireDate", VNP_DATE.format(createdAt.plusMinutes(15)));
+        appendParam(query, "vnp_IpAddr", ipAddress);
+        query.append("&vnp_Locale=vn");
+        appendParam(query, "vnp_OrderInfo", orderInfo);
+        query.append("&vnp_OrderType=other");
+        appendRaw(query, returnUrlParam);
+        appendRaw(query, tmnCodeParam);
+        appendParam(query, "vnp_TxnRef", vnp_TxnRef);
+        query.append("&vnp_Version=2.1.0");
+
+        String vnp_SecureHash = hmacSHA512(vnPayConfig.getHashSecret(), query.toString());
+        return vnPayConfig.getPayUrl() + "?" + query + "&vnp_SecureHash=" + vnp_SecureHash;
     }
 
+    /**
+     * Kiểm tra chữ ký callback: ký lại các tham số (trừ vnp_SecureHash, vnp_SecureHashType và giá trị rỗng)
+     * theo thứ tự tên rồi so sánh với vnp_SecureHash
+     */
     public boolean verifyPayment(Map<String, String> params) {
-        System.out.println("=== Verifying VNPay Payment ===");
         String vnp_SecureHash = params.get("vnp_SecureHash");
-        System.out.println("Received SecureHash: " + vnp_SecureHash);
-        
-        // Create a copy to avoid modifying the original
-        Map<String, String> paramsCopy = new HashMap<>(params);
-        paramsCopy.remove("vnp_SecureHash");
-        paramsCopy.remove("vnp_SecureHashType");
-
-        List<String> fieldNames = new ArrayList<>(paramsCopy.keySet());
-        Collections.sort(fieldNames);
-        StringBuilder hashData = new StringBuilder();
-        Iterator<String> itr = fieldNames.iterator();
-        while (itr.hasNext()) {
-            String fieldName = itr.next();
-            String fieldValue = paramsCopy.get(fieldName);
-            if ((fieldValue != null) && (fieldValue.length() > 0)) {
-                hashData.append(fieldName);
-                hashData.append('=');
-                try {
-                    hashData.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII.toString()));
-                } catch (UnsupportedEncodingException e) {
-                    e.printStackTrace();
-                }
-                if (itr.hasNext()) {
-                    hashData.append('&');
-                }
+        if (vnp_SecureHash == null) {
+            return false;
+        }
+
+        String[] fieldNames = params.keySet().toArray(new String[0]);
+        Arrays.sort(fieldNames);
+        StringBuilder hashData = new StringBuilder(512);
+        for (String fieldName : fieldNames) {
+            if (!"vnp_SecureHash".equals(fieldName) && !"vnp_SecureHashType".equals(fieldName)) {
+                appendParam(hashData, fieldName, params.get(fieldName));
             }
         }
 
-        System.out.println("Hash data string: " + hashData.toString());
         String signValue = hmacSHA512(vnPayConfig.getHashSecret(), hashData.toString());
-        System.out.println("Calculated SecureHash: " + signValue);
-        boolean isValid = signValue.equals(vnp_SecureHash);
-        System.out.println("Signature valid: " + isValid);
-        return isValid;
+        return MessageDigest.isEqual(signValue.getBytes(StandardCharsets.US_ASCII),
+                vnp_SecureHash.getBytes(StandardCharsets.US_ASCII));
     }
 
-    private String hmacSHA512(String key, String data) {
+    /**
+     * Tra cứu giao dịch (querydr) theo vnp_TxnRef và thời điểm tạo URL thanh toán của giao dịch đó.
+     * Phản hồi sai chữ ký hoặc không đúng vnp_TxnRef được coi là UNKNOWN, không dùng để xác nhận/hủy đơn.
+     */
+    public CompletableFuture<GatewayPaymentStatus> queryPaymentStatus(String txnRef, LocalDateTime requestedAt) {
+        String requestId = UUID.randomUUID().toString().replace("-", "");
+        String transactionDate = VNP_DATE.format(requestedAt.atZone(ZoneId.systemDefault()));
+        String createDate = VNP_DATE.format(ZonedDateTime.now(VIETNAM));
+        String orderInfo = "Doi soat giao dich " + txnRef;
+        String ipAddress = "127.0.0.1";
+        String hashData = String.join("|", requestId, "2.1.0", "querydr", vnPayConfig.getTmnCode(), txnRef,
+                transactionDate, createDate, ipAddress, orderInfo);
+
+        Map<String, String> body = new LinkedHashMap<>();
+        body.put("vnp_RequestId", requestId);
+        body.put("vnp_Version", "2.1.0");
+        body.put("vnp_Command", "querydr");
+        body.put("vnp_TmnCode", vnPayConfig.getTmnCode());
+        body.put("vnp_TxnRef", txnRef);
+        body.put("vnp_OrderInfo", orderInfo);
+        body.put("vnp_TransactionDate", transactionDate);
+        body.put("vnp_CreateDate", createDate);
+        body.put("vnp_IpAddr", ipAddress);
+        body.put("vnp_SecureHash", hmacSHA512(vnPayConfig.getHashSecret(), hashData));
+
+        HttpRequest request;
         try {
-            Mac hmac512 = Mac.getInstance("HmacSHA512");
-            SecretKeySpec secretKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA512");
-            hmac512.init(secretKey);
-            byte[] result = hmac512.doFinal(data.getBytes(StandardCharsets.UTF_8));
-            StringBuilder sb = new StringBuilder();
-            for (byte b : result) {
-                sb.append(String.format("%02x", b));
-            }
-            return sb.toString();
-        } catch (Exception e) {
+            request = HttpRequest.newBuilder(apiUrl)
+                    .timeout(queryTimeout)
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)))
+                    .build();
+        } catch (JsonProcessingException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .thenApply(response -> {
+                    if (response.statusCode() / 100 != 2) {
+                        return GatewayPaymentStatus.unknown("HTTP " + response.statusCode());
+                    }
+                    Map<String, Object> result;
+                    try {
+                        result = objectMapper.readValue(response.body(), RESPONSE_TYPE);
+                    } catch (JsonProcessingException e) {
+                        return GatewayPaymentStatus.unknown("INVALID_RESPONSE");
+                    }
+                    if (!verifyQueryResponse(result) || !txnRef.equals(stringOf(result.get("vnp_TxnRef")))) {
+                        return GatewayPaymentStatus.unknown("INVALID_SIGNATURE");
+                    }
+                    return statusOf(result);
+                });
+    }
+
+    // vnp_SecureHash của phản hồi querydr: HMAC-SHA512 các trường QUERY_RESPONSE_FIELDS nối bằng '|'
+    boolean verifyQueryResponse(Map<String, Object> response) {
+        String secureHash = stringOf(response.get("vnp_SecureHash"));
+        if (secureHash == null) {
+            return false;
+        }
+        StringJoiner hashData = new StringJoiner("|");
+        for (String field : QUERY_RESPONSE_FIELDS) {
+            String value = stringOf(response.get(field));
+            hashData.add(value != null ? value : "");
+        }
+        String signValue = hmacSHA512(vnPayConfig.getHashSecret(), hashData.toString());
+        return MessageDigest.isEqual(signValue.getBytes(StandardCharsets.US_ASCII),
+                secureHash.toLowerCase(Locale.ROOT).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    // vnp_ResponseCode là kết quả tra cứu, vnp_TransactionStatus là trạng thái giao dịch
+    private static GatewayPaymentStatus statusOf(Map<String, Object> response) {
+        String responseCode = stringOf(response.get("vnp_ResponseCode"));
+        if ("91".equals(responseCode)) {
+            // Không có giao dịch: người dùng chưa thanh toán trên VNPay
+            return new GatewayPaymentStatus(GatewayPaymentStatus.State.FAILED, null, null, responseCode);
+        }
+        if (!"00".equals(responseCode)) {
+            return GatewayPaymentStatus.unknown(responseCode);
+        }
+        String transactionStatus = stringOf(response.get("vnp_TransactionStatus"));
+        String transactionNo = stringOf(response.get("vnp_TransactionNo"));
+        String amount = stringOf(response.get("vnp_Amount"));
+        GatewayPaymentStatus.State state = "00".equals(transactionStatus) ? GatewayPaymentStatus.State.PAID
+                : "01".equals(transactionStatus) ? GatewayPaymentStatus.State.PENDING
+                : GatewayPaymentStatus.State.FAILED;
+        return new GatewayPaymentStatus(state, transactionNo == null || "0".equals(transactionNo) ? null : transactionNo,
+                amount != null ? Long.parseLong(amount) / 100 : null, transactionStatus);
+    }
+
+    private static String stringOf(Object value) {
+        return value != null ? String.valueOf(value) : null;
+    }
+
+    // name=encode(value), bỏ qua giá trị rỗng
+    private static void appendParam(StringBuilder out, String name, String value) {
+        if (value == null || value.isEmpty()) {
+            return;
+        }
+        if (!out.isEmpty()) {
+            out.append('&');
+        }
+        out.append(name).append('=');
+        appendEncoded(out, value);
+    }
+
+    private static void appendRaw(StringBuilder out, String param) {
+        if (!param.isEmpty()) {
+            out.append('&').append(param);
+        }
+    }
+
+    private static String encodedParam(String name, String value) {
+        if (value == null || value.isEmpty()) {
             return "";
         }
+        StringBuilder out = new StringBuilder(name.length() + value.length() * 3 + 1).append(name).append('=');
+        appendEncoded(out, value);
+        return out.toString();
     }
 
-    private String getRandomNumber(int len) {
-        Random rnd = new Random();
-        String chars = "0123456789";
-        StringBuilder sb = new StringBuilder(len);
-        for (int i = 0; i < len; i++) {
-            sb.append(chars.charAt(rnd.nextInt(chars.length())));
+    /**
+     * Giống URLEncoder.encode(value, US_ASCII) nhưng ghi thẳng vào out: giữ a-z A-Z 0-9 . - * _,
+     * khoảng trắng thành '+', ký tự ngoài ASCII (cả cặp surrogate) thành '?' rồi encode là %3F
+     */
+    static void appendEncoded(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '.' || c == '-' || c == '*' || c == '_') {
+                out.append(c);
+            } else if (c == ' ') {
+                out.append('+');
+            } else {
+                if (c >= 0x80) {
+                    if (Character.isHighSurrogate(c) && i + 1 < value.length()
+                            && Character.isLowSurrogate(value.charAt(i + 1))) {
+                        i++;
+                    }
+                    c = '?';
+                }
+                out.append('%').append(HEX[c >>> 4]).append(HEX[c & 0x0f]);
+            }
         }
-        return sb.toString();
+    }
+
+    private String hmacSHA512(String key, String data) {
+        return HmacSigner.hmacSha512(key).sign(data);
     }
 }
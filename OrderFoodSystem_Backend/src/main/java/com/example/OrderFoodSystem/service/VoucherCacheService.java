@@ -0,0 +1,127 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.entity.Voucher;
+import com.example.OrderFoodSystem.repository.VoucherRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache voucher theo code cho API kiểm tra voucher ở trang giỏ hàng, kèm danh sách
+ * voucher còn hiệu lực tính sẵn cho ngày hiện tại.
+ *
+ * Cache bị xóa khi voucher được tạo/sửa/xóa trên instance này, và khi version stamp
+ * của bảng vouchers (số dòng + updated_at lớn nhất) thay đổi do instance khác sửa.
+ * Lượt dùng (quantity) trong cache có thể trễ tối đa một TTL; việc trừ lượt dùng thật
+ * luôn được kiểm tra lại trong database bởi VoucherRedemptionService.
+ */
+@Service
+public class VoucherCacheService {
+
+    private static final int MAX_CACHED_CODES = 10000;
+
+    @Autowired
+    private VoucherRepository voucherRepository;
+
+    @Value("${voucher.cache.ttl-ms:60000}")
+    private long ttlMillis;
+
+    @Value("${voucher.cache.version-check-ms:5000}")
+    private long versionCheckMillis;
+
+    private final Map<String, CachedVoucher> byCode = new ConcurrentHashMap<>();
+    private volatile ValidVouchers validVouchers;
+    private volatile String versionStamp;
+    private volatile long versionCheckedAt;
+
+    public Optional<Voucher> findByCode(String code) {
+        if (code == null) {
+            return Optional.empty();
+        }
+        checkVersion();
+        long now = System.currentTimeMillis();
+        CachedVoucher cached = byCode.get(code);
+        if (cached == null || now - cached.loadedAt > ttlMillis) {
+            // Lưu cả kết quả "không tồn tại" để gõ sai mã cũng không chạm database
+            cached = new CachedVoucher(voucherRepository.findByCode(code).orElse(null), now);
+            if (byCode.size() >= MAX_CACHED_CODES) {
+                byCode.clear();
+            }
+            byCode.put(code, cached);
+        }
+        return Optional.ofNullable(cached.voucher);
+    }
+
+    /**
+     * Danh sách voucher còn hiệu lực hôm nay, tính lại khi sang ngày mới hoặc hết TTL
+     */
+    public List<Voucher> findValidVouchers() {
+        checkVersion();
+        LocalDate today = LocalDate.now();
+        long now = System.currentTimeMillis();
+        ValidVouchers current = validVouchers;
+        if (current == null || !current.date.equals(today) || now - current.loadedAt > ttlMillis) {
+            current = new ValidVouchers(today, List.copyOf(voucherRepository.findValidVouchers(today)), now);
+            validVouchers = current;
+        }
+        return current.vouchers;
+    }
+
+    /**
+     * Xóa cache của một mã voucher (gọi khi tạo/sửa/bật tắt/xóa voucher)
+     */
+    public void invalidate(String code) {
+        if (code != null) {
+            byCode.remove(code);
+        }
+        validVouchers = null;
+    }
+
+    public void invalidateAll() {
+        byCode.clear();
+        validVouchers = null;
+    }
+
+    // Kiểm tra version stamp trong database tối đa một lần mỗi versionCheckMillis
+    private void checkVersion() {
+        long now = System.currentTimeMillis();
+        if (now - versionCheckedAt < versionCheckMillis) {
+            return;
+        }
+        versionCheckedAt = now;
+        VoucherRepository.VersionStamp stamp = voucherRepository.findVersionStamp();
+        String current = stamp.getVoucherCount() + "|" + stamp.getLastUpdated();
+        if (versionStamp != null && !versionStamp.equals(current)) {
+            invalidateAll();
+        }
+        versionStamp = current;
+    }
+
+    private static class CachedVoucher {
+        private final Voucher voucher;
+        private final long loadedAt;
+
+        CachedVoucher(Voucher voucher, long loadedAt) {
+            this.voucher = voucher;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private static class ValidVouchers {
+        private final LocalDate date;
+        private final List<Voucher> vouchers;
+        private final long loadedAt;
+
+        ValidVouchers(LocalDate date, List<Voucher> vouchers, long loadedAt) {
+            this.date = date;
+            this.vouchers = vouchers;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.entity.Order;
+import com.example.OrderFoodSystem.entity.OrderStatus;
+import com.example.OrderFoodSystem.entity.OrderVoucher;
+import com.example.OrderFoodSystem.entity.Voucher;
+import com.example.OrderFoodSystem.repository.OrderRepository;
+import com.example.OrderFoodSystem.repository.OrderVoucherRepository;
+import com.example.OrderFoodSystem.repository.VoucherRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+/**
+ * Giữ chỗ / xác nhận / trả lại lượt dùng voucher.
+ * Lượt dùng được trừ bằng một câu UPDATE có điều kiện (quantity > 0) nên nhiều
+ * request đồng thời không thể dùng quá số lượng voucher.
+ */
+@Service
+public class VoucherRedemptionService {
+
+    @Autowired
+    private VoucherRepository voucherRepository;
+
+    @Autowired
+    private OrderVoucherRepository orderVoucherRepository;
+
+    @Autowired
+    private OrderRepository orderRepository;
+
+    /**
+     * Lấy một lượt dùng voucher (không gắn với đơn hàng)
+     *
+     * @return false nếu voucher đã hết lượt, bị vô hiệu hóa hoặc hết hạn
+     */
+    @Transactional
+    public boolean take(Long voucherId) {
+        return voucherRepository.decrementQuantity(voucherId, LocalDate.now()) > 0;
+    }
+
+    /**
+     * Giữ một lượt dùng voucher cho đơn hàng. Nếu đơn hàng đã có voucher khác thì
+     * voucher cũ được trả lại lượt dùng.
+     * Hai request áp voucher cùng lúc cho một đơn: chỉ một request tăng được version của đơn,
+     * request còn lại nhận ObjectOptimisticLockingFailureException trước khi lấy lượt dùng.
+     * Chỉ áp voucher cho đơn chưa đặt (pending): lượt dùng của đơn đã thanh toán đã được xác nhận.
+     */
+    @Transactional
+    public OrderVoucher reserve(Long orderId, Long voucherId, Double discountAmount) {
+        Order current = orderRepository.findById(orderId)
+                .orElseThrow(() -> new RuntimeException("Order not found"));
+        if (orderRepository.incrementVersion(orderId, current.getVersion()) == 0) {
+            throw new ObjectOptimisticLockingFailureException(Order.class, orderId);
+        }
+        // Persistence context đã được clear sau UPDATE, nạp lại đơn hàng mới
+        Order order = orderRepository.findById(orderId).orElseThrow();
+        if (OrderStatus.of(order.getStatus()) != OrderStatus.PENDING) {
+            throw new RuntimeException("Chỉ có thể áp voucher cho đơn chưa đặt (pending)");
+        }
+
+        Optional<OrderVoucher> existingOpt = orderVoucherRepository.findByOrder_IdOrder(orderId);
+        if (existingOpt.isPresent() && isReserved(existingOpt.get())
+                && existingOpt.get().getVoucher().getIdVoucher().equals(voucherId)) {
+            // Cùng voucher: đã giữ lượt rồi, chỉ cập nhật số tiền giảm
+            OrderVoucher existing = existingOpt.get();
+            existing.setDiscountAmount(discountAmount);
+            return orderVoucherRepository.save(existing);
+        }
+
+        if (!take(voucherId)) {
+            throw new RuntimeException("Voucher đã hết lượt sử dụng hoặc không còn hiệu lực");
+        }
+
+        existingOpt.ifPresent(existing -> {
+            if (isReserved(existing) && orderVoucherRepository.markReleased(existing.getIdOrderVoucher()) == 1) {
+                voucherRepository.incrementQuantity(existing.getVoucher().getIdVoucher());
+            }
+            order.setOrderVoucher(null);
+            orderVoucherRepository.delete(existing);
+            orderVoucherRepository.flush();
+        });
+
+        Voucher voucher = voucherRepository.findById(voucherId)
+                .orElseThrow(() -> new RuntimeException("Voucher not found"));
+
+        OrderVoucher orderVoucher = new OrderVoucher(order, voucher, discountAmount);
+        orderVoucher.setStatus(OrderVoucher.STATUS_RESERVED);
+        return orderVoucherRepository.save(orderVoucher);
+    }
+
+    /**
+     * Xác nhận lượt dùng khi đơn hàng thanh toán thành công
+     */
+    @Transactional
+    public void commit(Long orderId) {
+        // UPDATE có điều kiện: không ghi đè RELEASED của một lần trả voucher chạy cùng lúc
+        orderVoucherRepository.findByOrder_IdOrder(orderId)
+                .ifPresent(ov -> orderVoucherRepository.updateStatus(ov.getIdOrderVoucher(),
+                        OrderVoucher.STATUS_RESERVED, OrderVoucher.STATUS_COMMITTED));
+    }
+
+    /**
+     * Trả lại lượt dùng đang giữ chỗ khi thanh toán thất bại, đơn bị hủy hoặc bị xóa.
+     * Chỉ request đổi được trạng thái sang RELEASED mới cộng lại quantity, nên hủy/xóa
+     * cùng lúc không trả lượt dùng hai lần.
+     */
+    @Transactional
+    public void release(Long orderId) {
+        orderVoucherRepository.findByOrder_IdOrder(orderId)
+                .filter(this::isReserved)
+                .ifPresent(ov -> {
+                    if (orderVoucherRepository.markReleased(ov.getIdOrderVoucher()) == 1) {
+                        voucherRepository.incrementQuantity(ov.getVoucher().getIdVoucher());
+                    }
+                });
+    }
+
+    // Voucher đang giữ chỗ một lượt dùng: lượt dùng đã xác nhận (COMMITTED) không bao giờ được trả lại
+    private boolean isReserved(OrderVoucher orderVoucher) {
+        return OrderVoucher.STATUS_RESERVED.equals(orderVoucher.getStatus());
+    }
+}
@@ -25,6 +25,9 @@ public class WishlistService {
     @Autowired
     private ProductRepository productRepository;
 
+    @Autowired
+    private CatalogCacheService catalogCacheService;
+
     // Thêm sản phẩm vào wishlist
     public Wishlist addToWishlist(Long customerId, Long productId) {
         // Kiểm tra xem đã tồn tại chưa
@@ -35,7 +38,8 @@ public class WishlistService {
 
         Customer customer = customerRepository.findById(customerId)
                 .orElseThrow(() -> new RuntimeException("Customer not found"));
-        Product product = productRepository.findById(productId)
+        Product product = catalogCacheService.findActiveProduct(productId)
+                .or(() -> productRepository.findById(productId))
                 .orElseThrow(() -> new RuntimeException("Product not found"));
 
         Wishlist wishlist = new Wishlist(customer, product);
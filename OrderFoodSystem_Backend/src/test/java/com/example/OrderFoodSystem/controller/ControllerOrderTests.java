@@ -0,0 +1,110 @@
+package com.example.OrderFoodSystem.controller;
+
+import com.example.OrderFoodSystem.entity.Order;
+import com.example.OrderFoodSystem.repository.CustomerRepository;
+import com.example.OrderFoodSystem.repository.OrderRepository;
+import com.example.OrderFoodSystem.service.MomoService;
+import com.example.OrderFoodSystem.service.OrderEventService;
+import com.example.OrderFoodSystem.service.OrderOutboxRelay;
+import com.example.OrderFoodSystem.service.OrderPricingService;
+import com.example.OrderFoodSystem.service.OrderService;
+import com.example.OrderFoodSystem.service.PaymentReconciliationService;
+import com.example.OrderFoodSystem.service.VoucherRedemptionService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Luồng của màn hình nhân viên: nhận sự kiện qua /orders/stream rồi tải lại đơn hàng qua GET /orders/{id}
+ */
+@WebMvcTest(ControllerOrder.class)
+@Import(OrderEventService.class)
+class ControllerOrderTests {
+
+	private static final Pattern EVENT_ORDER_ID = Pattern.compile("event:order-created\\s*\\ndata:\\{[^}]*\"idOrder\":(\\d+)");
+
+	@Autowired
+	private MockMvc mockMvc;
+
+	@Autowired
+	private OrderEventService orderEventService;
+
+	@MockitoBean
+	private OrderRepository orderRepository;
+
+	@MockitoBean
+	private CustomerRepository customerRepository;
+
+	@MockitoBean
+	private OrderService orderService;
+
+	@MockitoBean
+	private MomoService momoService;
+
+	@MockitoBean
+	private VoucherRedemptionService voucherRedemptionService;
+
+	@MockitoBean
+	private OrderPricingService orderPricingService;
+
+	@MockitoBean
+	private OrderOutboxRelay orderOutboxRelay;
+
+	@MockitoBean
+	private PaymentReconciliationService paymentReconciliationService;
+
+	@Test
+	void refreshesTheOrderNamedInAStreamEvent() throws Exception {
+		Order order = new Order();
+		order.setIdOrder(42L);
+		order.setStatus("confirmed");
+		order.setTotalPrice(125000.0);
+		when(orderRepository.findById(42L)).thenReturn(Optional.of(order));
+
+		MvcResult stream = mockMvc.perform(get("/orders/stream"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		orderEventService.publishAfterCommit(OrderEventService.ORDER_CREATED, order);
+
+		String idOrder = awaitEventOrderId(stream);
+		mockMvc.perform(get("/orders/" + idOrder))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.idOrder").value(42))
+				.andExpect(jsonPath("$.status").value("confirmed"));
+	}
+
+	@Test
+	void returnsNotFoundForADeletedOrder() throws Exception {
+		when(orderRepository.findById(43L)).thenReturn(Optional.empty());
+
+		mockMvc.perform(get("/orders/43")).andExpect(status().isNotFound());
+	}
+
+	// Sự kiện được gửi trên thread của OrderEventService, chờ tới khi xuất hiện trong response
+	private static String awaitEventOrderId(MvcResult stream) throws Exception {
+		long deadline = System.currentTimeMillis() + 5000;
+		while (System.currentTimeMillis() < deadline) {
+			Matcher matcher = EVENT_ORDER_ID.matcher(stream.getResponse().getContentAsString());
+			if (matcher.find()) {
+				return matcher.group(1);
+			}
+			Thread.sleep(20);
+		}
+		return fail("No order-created event: " + stream.getResponse().getContentAsString());
+	}
+}
@@ -0,0 +1,66 @@
+package com.example.OrderFoodSystem.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CartStoreTests {
+
+	private static final int CHECKOUTS = 8;
+
+	private final ExecutorService checkouts = Executors.newFixedThreadPool(CHECKOUTS);
+	private CartStore store;
+
+	@BeforeEach
+	void setUp() {
+		store = new CartStore();
+		ReflectionTestUtils.setField(store, "ttlMillis", 86400000L);
+		ReflectionTestUtils.setField(store, "maxSize", 100);
+		ReflectionTestUtils.setField(store, "persistenceEnabled", false);
+	}
+
+	@AfterEach
+	void tearDown() {
+		checkouts.shutdownNow();
+	}
+
+	@Test
+	void onlyOneConcurrentCheckoutTakesTheLines() throws Exception {
+		for (long customerId = 1; customerId <= 200; customerId++) {
+			store.update(customerId, lines -> lines.put(7L, new CartStore.Line(7L, 2, null)));
+
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<List<CartStore.Line>>> results = new ArrayList<>();
+			for (int i = 0; i < CHECKOUTS; i++) {
+				long id = customerId;
+				results.add(checkouts.submit(() -> {
+					start.await();
+					return store.remove(id);
+				}));
+			}
+			start.countDown();
+
+			int owners = 0;
+			for (Future<List<CartStore.Line>> result : results) {
+				List<CartStore.Line> lines = result.get();
+				if (!lines.isEmpty()) {
+					owners++;
+					assertEquals(List.of(new CartStore.Line(7L, 2, null)), lines);
+				}
+			}
+			assertEquals(1, owners, "customer " + customerId);
+			assertTrue(store.getLines(customerId).isEmpty());
+		}
+	}
+}
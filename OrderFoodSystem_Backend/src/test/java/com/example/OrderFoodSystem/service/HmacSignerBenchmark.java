@@ -0,0 +1,62 @@
+package com.example.OrderFoodSystem.service;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thời gian và bộ nhớ cấp phát của một lần ký HMAC-SHA512 trên chuỗi ký cỡ URL thanh toán VNPay:
+ * perCallMac là cách ký cũ (Mac.getInstance + init + String.format mỗi lần), signer là HmacSigner.
+ *
+ * Không chạy cùng mvn test. Bộ nhớ cấp phát mỗi lần ký là gc.alloc.rate.norm của profiler gc:
+ *   mvn test-compile dependency:build-classpath -Dmdep.outputFile=target/test-classpath.txt
+ *   java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) org.openjdk.jmh.Main HmacSignerBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HmacSignerBenchmark {
+
+	static final String KEY = "SECRETKEYSECRETKEYSECRETKEY12345";
+	static final String DATA = "vnp_Amount=12500000&vnp_Command=pay&vnp_CreateDate=20240101120000&vnp_CurrCode=VND"
+			+ "&vnp_ExpireDate=20240101121500&vnp_IpAddr=127.0.0.1&vnp_Locale=vn&vnp_OrderInfo=Thanh+toan+don+hang+42"
+			+ "&vnp_OrderType=other&vnp_ReturnUrl=http%3A%2F%2Flocalhost%3A3000%2Fpayment%2Fvnpay-return"
+			+ "&vnp_TmnCode=ABCDEFGH&vnp_TxnRef=42_1700000000000&vnp_Version=2.1.0";
+
+	@Benchmark
+	public String perCallMac() throws GeneralSecurityException {
+		return perCallHmacSha512(KEY, DATA);
+	}
+
+	@Benchmark
+	public String signer() {
+		return HmacSigner.hmacSha512(KEY).sign(DATA);
+	}
+
+	// Cách ký trước HmacSigner, giữ lại để so sánh
+	static String perCallHmacSha512(String key, String data) throws GeneralSecurityException {
+		Mac hmac512 = Mac.getInstance("HmacSHA512");
+		hmac512.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), "HmacSHA512"));
+		byte[] result = hmac512.doFinal(data.getBytes(StandardCharsets.UTF_8));
+		StringBuilder sb = new StringBuilder();
+		for (byte b : result) {
+			sb.append(String.format("%02x", b));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,75 @@
+package com.example.OrderFoodSystem.service;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class HmacSignerTests {
+
+	// RFC 4231, test case 2
+	private static final String KEY = "Jefe";
+	private static final String DATA = "what do ya want for nothing?";
+
+	@Test
+	void matchesRfc4231Vectors() {
+		assertEquals("5bdcc146bf60754e6a042426089575c75a003f089d2739839dec58b964ec3843",
+				HmacSigner.hmacSha256(KEY).sign(DATA));
+		assertEquals("164b7a7bfcf819e2e395fbe73b56e0a387bd64222e831fd610270cd7ea2505549758bf75c05a994a6d034f65f8f0e6fdcaeab1a34d4a6b4b636e070a38bce737",
+				HmacSigner.hmacSha512(KEY).sign(DATA));
+		assertSame(HmacSigner.hmacSha256(KEY), HmacSigner.hmacSha256(KEY));
+	}
+
+	@Test
+	void matchesMacForNonAsciiAndLongInput() throws Exception {
+		String vietnamese = "orderInfo=Thanh toán đơn hàng #42&amount=125000";
+		String longInput = "vnp_OrderInfo=" + "Thanh+toan+don+hang".repeat(200);
+
+		assertEquals(reference("HmacSHA256", "secret", vietnamese), HmacSigner.hmacSha256("secret").sign(vietnamese));
+		assertEquals(reference("HmacSHA512", "secret", longInput), HmacSigner.hmacSha512("secret").sign(longInput));
+		// Buffer đã lớn lên vẫn ký đúng chuỗi ngắn
+		assertEquals(reference("HmacSHA512", "secret", DATA), HmacSigner.hmacSha512("secret").sign(DATA));
+	}
+
+	@Test
+	void signsConcurrently() throws Exception {
+		HmacSigner signer = HmacSigner.hmacSha512("concurrent");
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				int thread = t;
+				results.add(executor.submit(() -> {
+					for (int i = 0; i < 500; i++) {
+						String data = "vnp_TxnRef=" + thread + "_" + i;
+						if (!reference("HmacSHA512", "concurrent", data).equals(signer.sign(data))) {
+							return false;
+						}
+					}
+					return true;
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertEquals(true, result.get());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static String reference(String algorithm, String key, String data) throws Exception {
+		Mac mac = Mac.getInstance(algorithm);
+		mac.init(new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), algorithm));
+		return HexFormat.of().formatHex(mac.doFinal(data.getBytes(StandardCharsets.UTF_8)));
+	}
+}
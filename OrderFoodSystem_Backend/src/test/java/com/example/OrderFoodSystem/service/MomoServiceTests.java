@@ -0,0 +1,198 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.config.MomoConfig;
+import com.example.OrderFoodSystem.entity.Order;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Chạy MomoService với một server giả lập MoMo có thể trả chậm hoặc lỗi
+ */
+class MomoServiceTests {
+
+	private static final String PAY_URL = "https://test-payment.momo.vn/pay/abc";
+
+	private final AtomicInteger requests = new AtomicInteger();
+	private volatile long delayMillis;
+	private volatile int status = 200;
+	private volatile String querySecret = MomoConfig.SECRET_KEY;
+	private HttpServer server;
+	private ExecutorService executor;
+	private String endpoint;
+	private String queryEndpoint;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		executor = Executors.newCachedThreadPool();
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/v2/gateway/api/create", this::handle);
+		server.createContext("/v2/gateway/api/query", this::handleQuery);
+		server.setExecutor(executor);
+		server.start();
+		endpoint = "http://127.0.0.1:" + server.getAddress().getPort() + "/v2/gateway/api/create";
+		queryEndpoint = "http://127.0.0.1:" + server.getAddress().getPort() + "/v2/gateway/api/query";
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	@Test
+	void returnsPayUrl() throws Exception {
+		MomoService momo = newService(1000, 5, 2, 30000);
+		try {
+			assertEquals(PAY_URL, momo.createPaymentRequest(order()).get(5, TimeUnit.SECONDS));
+			assertEquals(CircuitBreaker.State.CLOSED, momo.getStats().get("circuit"));
+		} finally {
+			momo.shutdown();
+		}
+	}
+
+	@Test
+	void opensCircuitAfterTimeoutsAndRecovers() throws Exception {
+		MomoService momo = newService(200, 5, 2, 500);
+		try {
+			delayMillis = 1000;
+			assertUnavailable(momo.createPaymentRequest(order()));
+			assertUnavailable(momo.createPaymentRequest(order()));
+			assertEquals(CircuitBreaker.State.OPEN, momo.getStats().get("circuit"));
+
+			// Circuit mở: thất bại ngay, không gửi request tới MoMo
+			int sent = requests.get();
+			long start = System.nanoTime();
+			assertUnavailable(momo.createPaymentRequest(order()));
+			assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100));
+			assertEquals(sent, requests.get());
+
+			// Hết thời gian mở, MoMo đã ổn: lời gọi thử thành công và đóng circuit
+			delayMillis = 0;
+			Thread.sleep(600);
+			assertEquals(PAY_URL, momo.createPaymentRequest(order()).get(5, TimeUnit.SECONDS));
+			assertEquals(CircuitBreaker.State.CLOSED, momo.getStats().get("circuit"));
+		} finally {
+			momo.shutdown();
+		}
+	}
+
+	@Test
+	void countsServerErrorsAsFailures() throws Exception {
+		MomoService momo = newService(1000, 5, 1, 30000);
+		try {
+			status = 503;
+			assertUnavailable(momo.createPaymentRequest(order()));
+			assertEquals(CircuitBreaker.State.OPEN, momo.getStats().get("circuit"));
+		} finally {
+			momo.shutdown();
+		}
+	}
+
+	@Test
+	void rejectsCallsBeyondBulkhead() throws Exception {
+		MomoService momo = newService(2000, 1, 5, 30000);
+		try {
+			delayMillis = 500;
+			CompletableFuture<String> first = momo.createPaymentRequest(order());
+			assertUnavailable(momo.createPaymentRequest(order()));
+			assertEquals(PAY_URL, first.get(5, TimeUnit.SECONDS));
+			assertEquals(1L, momo.getStats().get("bulkheadRejected"));
+		} finally {
+			momo.shutdown();
+		}
+	}
+
+	@Test
+	void queriesPaymentStatus() throws Exception {
+		MomoService momo = newService(1000, 5, 2, 30000);
+		try {
+			GatewayPaymentStatus paid = momo.queryPaymentStatus("42_1700000000000").get(5, TimeUnit.SECONDS);
+			assertEquals(GatewayPaymentStatus.State.PAID, paid.state());
+			assertEquals("4088878653", paid.transactionId());
+			assertEquals(125000L, paid.amount());
+
+			// Phản hồi không ký bằng secret của merchant không được dùng để xác nhận đơn
+			querySecret = "not-the-secret";
+			GatewayPaymentStatus forged = momo.queryPaymentStatus("42_1700000000000").get(5, TimeUnit.SECONDS);
+			assertEquals(GatewayPaymentStatus.State.UNKNOWN, forged.state());
+			assertEquals("INVALID_SIGNATURE", forged.resultCode());
+
+			// Lỗi cổng khi tra cứu cũng tính vào circuit breaker như khi tạo thanh toán
+			status = 503;
+			assertThrows(ExecutionException.class, () -> momo.queryPaymentStatus("42_1700000000000").get(5, TimeUnit.SECONDS));
+		} finally {
+			momo.shutdown();
+		}
+	}
+
+	private MomoService newService(long readTimeoutMillis, int maxConcurrent, int failureThreshold, long openMillis) {
+		return new MomoService(endpoint, queryEndpoint, 1000, readTimeoutMillis, 10, maxConcurrent, failureThreshold, openMillis);
+	}
+
+	private static Order order() {
+		Order order = new Order();
+		order.setIdOrder(42L);
+		order.setTotalPrice(125000.0);
+		return order;
+	}
+
+	private static void assertUnavailable(CompletableFuture<String> future) {
+		ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+		assertInstanceOf(PaymentGatewayUnavailableException.class, e.getCause());
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		respond(exchange, "{\"resultCode\":0,\"message\":\"Thành công.\",\"payUrl\":\"" + PAY_URL
+				+ "\",\"transId\":4088878653,\"amount\":125000}");
+	}
+
+	// Phản hồi tra cứu có chữ ký như MoMo, ký bằng querySecret
+	private void handleQuery(HttpExchange exchange) throws IOException {
+		String rawHash = "accessKey=" + MomoConfig.ACCESS_KEY + "&amount=125000&extraData=&message=Thành công."
+				+ "&orderId=42_1700000000000&partnerCode=" + MomoConfig.PARTNER_CODE + "&payType=qr"
+				+ "&requestId=req-1&responseTime=1700000100000&resultCode=0&transId=4088878653";
+		String signature = HmacSigner.hmacSha256(querySecret).sign(rawHash);
+		respond(exchange, "{\"partnerCode\":\"" + MomoConfig.PARTNER_CODE + "\",\"orderId\":\"42_1700000000000\","
+				+ "\"requestId\":\"req-1\",\"extraData\":\"\",\"amount\":125000,\"transId\":4088878653,"
+				+ "\"payType\":\"qr\",\"resultCode\":0,\"message\":\"Thành công.\",\"responseTime\":1700000100000,"
+				+ "\"signature\":\"" + signature + "\"}");
+	}
+
+	private void respond(HttpExchange exchange, String response) throws IOException {
+		requests.incrementAndGet();
+		exchange.getRequestBody().readAllBytes();
+		try {
+			Thread.sleep(delayMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		byte[] body = response.getBytes(StandardCharsets.UTF_8);
+		try {
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(status, body.length);
+			exchange.getResponseBody().write(body);
+		} catch (IOException e) {
+			// Client đã timeout và đóng kết nối
+		} finally {
+			exchange.close();
+		}
+	}
+}
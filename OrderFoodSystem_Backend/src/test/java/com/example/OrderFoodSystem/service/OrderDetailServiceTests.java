@@ -0,0 +1,88 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.dto.CartBatchDTO;
+import com.example.OrderFoodSystem.entity.Order;
+import com.example.OrderFoodSystem.entity.Product;
+import com.example.OrderFoodSystem.repository.OrderDetailRepository;
+import com.example.OrderFoodSystem.repository.OrderRepository;
+import com.example.OrderFoodSystem.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Chạy OrderDetailService.applyBatch với repository giả lập
+ */
+class OrderDetailServiceTests {
+
+	private final OrderRepository orderRepository = mock(OrderRepository.class);
+	private final OrderDetailRepository orderDetailRepository = mock(OrderDetailRepository.class);
+	private final ProductRepository productRepository = mock(ProductRepository.class);
+	private final OrderPricingService orderPricingService = mock(OrderPricingService.class);
+	private OrderDetailService service;
+
+	@BeforeEach
+	void setUp() {
+		service = new OrderDetailService();
+		ReflectionTestUtils.setField(service, "orderRepository", orderRepository);
+		ReflectionTestUtils.setField(service, "orderDetailRepository", orderDetailRepository);
+		ReflectionTestUtils.setField(service, "productRepository", productRepository);
+		ReflectionTestUtils.setField(service, "orderPricingService", orderPricingService);
+
+		Order order = new Order();
+		order.setIdOrder(1L);
+		order.setStatus("pending");
+		order.setOrderDetails(new ArrayList<>());
+		when(orderPricingService.loadForUpdate(1L)).thenReturn(order);
+		when(orderRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+	}
+
+	@Test
+	void rejectsAddAndSetWithoutProductBeforeLoadingTheOrder() {
+		for (String op : List.of(CartBatchDTO.OP_ADD, CartBatchDTO.OP_SET)) {
+			List<CartBatchDTO.Operation> batch = List.of(operation(CartBatchDTO.OP_ADD, 5L, 1),
+					operation(op, null, 2));
+
+			RuntimeException e = assertThrows(RuntimeException.class, () -> service.applyBatch(1L, batch));
+			assertEquals("Thiếu idProduct cho thao tác " + op, e.getMessage());
+		}
+		verify(orderPricingService, never()).loadForUpdate(anyLong());
+	}
+
+	@Test
+	void addsNewProductsLoadedInOneQuery() {
+		Product product = new Product();
+		product.setIdProduct(5L);
+		product.setPriceProduct(30000.0);
+		product.setIsActive(true);
+		when(productRepository.findAllById(Set.of(5L))).thenReturn(List.of(product));
+
+		Order order = service.applyBatch(1L, List.of(operation(CartBatchDTO.OP_ADD, 5L, 1),
+				operation(CartBatchDTO.OP_ADD, 5L, 2)));
+
+		assertEquals(1, order.getOrderDetails().size());
+		assertEquals(3, order.getOrderDetails().get(0).getQuantity());
+		verify(orderPricingService).applyLineDelta(order, 90000.0);
+	}
+
+	private static CartBatchDTO.Operation operation(String op, Long idProduct, int quantity) {
+		CartBatchDTO.Operation operation = new CartBatchDTO.Operation();
+		operation.setOp(op);
+		operation.setIdProduct(idProduct);
+		operation.setQuantity(quantity);
+		return operation;
+	}
+}
@@ -0,0 +1,88 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.entity.Order;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class OrderEventServiceTests {
+
+	private final CountDownLatch release = new CountDownLatch(1);
+	private OrderEventService service;
+
+	@BeforeEach
+	void setUp() {
+		service = new OrderEventService(1);
+		ReflectionTestUtils.setField(service, "bufferSize", 256);
+		ReflectionTestUtils.setField(service, "historySize", 1000);
+		ReflectionTestUtils.setField(service, "maxSubscribers", 10);
+		ReflectionTestUtils.setField(service, "timeoutMillis", 60000L);
+
+		// Giữ thread gửi duy nhất để subscriber đóng vai client chậm
+		ExecutorService executor = (ExecutorService) ReflectionTestUtils.getField(service, "executor");
+		executor.execute(() -> {
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+	}
+
+	@AfterEach
+	void tearDown() {
+		release.countDown();
+		service.shutdown();
+	}
+
+	@Test
+	void dropsAnOrderCreatedAndDeletedBeforeTheClientSawIt() {
+		service.subscribe(null);
+
+		service.publishAfterCommit(OrderEventService.ORDER_CREATED, order(1L, "confirmed"));
+		service.publishAfterCommit(OrderEventService.STATUS_CHANGED, order(1L, "preparing"));
+		service.publishAfterCommit(OrderEventService.ORDER_DELETED, order(1L, "preparing"));
+		service.publishAfterCommit(OrderEventService.ORDER_CREATED, order(2L, "confirmed"));
+		service.publishAfterCommit(OrderEventService.STATUS_CHANGED, order(2L, "preparing"));
+
+		Map<Long, OrderEventService.OrderEvent> pending = pendingOfOnlySubscriber();
+		assertEquals(List.of(2L), new ArrayList<>(pending.keySet()));
+		assertEquals(OrderEventService.ORDER_CREATED, pending.get(2L).type());
+		assertEquals("preparing", pending.get(2L).status());
+	}
+
+	@Test
+	void keepsTheDeleteOfAnOrderTheClientAlreadyKnows() {
+		service.subscribe(null);
+
+		service.publishAfterCommit(OrderEventService.STATUS_CHANGED, order(3L, "ready"));
+		service.publishAfterCommit(OrderEventService.ORDER_DELETED, order(3L, "ready"));
+
+		Map<Long, OrderEventService.OrderEvent> pending = pendingOfOnlySubscriber();
+		assertEquals(OrderEventService.ORDER_DELETED, pending.get(3L).type());
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<Long, OrderEventService.OrderEvent> pendingOfOnlySubscriber() {
+		List<Object> subscribers = (List<Object>) ReflectionTestUtils.getField(service, "subscribers");
+		assertEquals(1, subscribers.size());
+		return (Map<Long, OrderEventService.OrderEvent>) ReflectionTestUtils.getField(subscribers.get(0), "pending");
+	}
+
+	private static Order order(Long idOrder, String status) {
+		Order order = new Order();
+		order.setIdOrder(idOrder);
+		order.setStatus(status);
+		order.setTotalPrice(100000.0);
+		return order;
+	}
+}
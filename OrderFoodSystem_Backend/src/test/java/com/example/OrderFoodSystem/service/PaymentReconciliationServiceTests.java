@@ -0,0 +1,160 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.repository.OrderRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Chạy PaymentReconciliationService với repository và cổng thanh toán giả lập
+ */
+class PaymentReconciliationServiceTests {
+
+	private static final String ABANDONED = "Payment abandoned before reaching the gateway";
+
+	private final OrderRepository orderRepository = mock(OrderRepository.class);
+	private final MomoService momoService = mock(MomoService.class);
+	private final VNPayService vnPayService = mock(VNPayService.class);
+	private final PaymentEventService paymentEventService = mock(PaymentEventService.class);
+	private final OrderService orderService = mock(OrderService.class);
+	private final ExecutorService gateway = Executors.newCachedThreadPool();
+	private PaymentReconciliationService service;
+
+	@BeforeEach
+	void setUp() {
+		service = new PaymentReconciliationService();
+		ReflectionTestUtils.setField(service, "orderRepository", orderRepository);
+		ReflectionTestUtils.setField(service, "momoService", momoService);
+		ReflectionTestUtils.setField(service, "vnPayService", vnPayService);
+		ReflectionTestUtils.setField(service, "paymentEventService", paymentEventService);
+		ReflectionTestUtils.setField(service, "orderService", orderService);
+		ReflectionTestUtils.setField(service, "enabled", true);
+		ReflectionTestUtils.setField(service, "pageSize", 2);
+		ReflectionTestUtils.setField(service, "concurrency", 2);
+		ReflectionTestUtils.setField(service, "graceMillis", 1200000L);
+		ReflectionTestUtils.setField(service, "abandonAfterMillis", 86400000L);
+		when(paymentEventService.apply(any())).thenReturn(PaymentEventService.Result.APPLIED);
+	}
+
+	@AfterEach
+	void tearDown() {
+		gateway.shutdownNow();
+	}
+
+	@Test
+	void pagesByIdAndAppliesEachResult() {
+		OrderRepository.ReconcileRow paid = row(1L, PaymentEventService.MOMO, "1_1700000000000");
+		OrderRepository.ReconcileRow declined = row(2L, PaymentEventService.VNPAY, "2_1700000000000");
+		OrderRepository.ReconcileRow abandoned = row(3L, PaymentEventService.MOMO, null);
+		OrderRepository.ReconcileRow waiting = row(4L, PaymentEventService.MOMO, "4_1700000000000");
+		OrderRepository.ReconcileRow unreachable = row(5L, PaymentEventService.VNPAY, "5_1700000000000");
+		when(orderRepository.findReconcileCandidates(eq(0L), any(), any(), any())).thenReturn(List.of(paid, declined));
+		when(orderRepository.findReconcileCandidates(eq(2L), any(), any(), any())).thenReturn(List.of(abandoned, waiting));
+		when(orderRepository.findReconcileCandidates(eq(4L), any(), any(), any())).thenReturn(List.of(unreachable));
+
+		when(momoService.queryPaymentStatus("1_1700000000000")).thenReturn(CompletableFuture.completedFuture(
+				new GatewayPaymentStatus(GatewayPaymentStatus.State.PAID, "4088878653", 125000L, "0")));
+		when(vnPayService.queryPaymentStatus(eq("2_1700000000000"), any())).thenReturn(CompletableFuture.completedFuture(
+				new GatewayPaymentStatus(GatewayPaymentStatus.State.FAILED, null, null, "02")));
+		when(momoService.queryPaymentStatus("4_1700000000000")).thenReturn(CompletableFuture.completedFuture(
+				new GatewayPaymentStatus(GatewayPaymentStatus.State.PENDING, null, null, "1000")));
+		when(vnPayService.queryPaymentStatus(eq("5_1700000000000"), any())).thenReturn(
+				CompletableFuture.failedFuture(new PaymentGatewayUnavailableException("VNPay không phản hồi")));
+
+		service.reconcile();
+
+		// Trang cuối ít hơn pageSize: không hỏi thêm trang sau id 5
+		verify(orderRepository, never()).findReconcileCandidates(eq(5L), any(), any(), any());
+		verify(paymentEventService).apply(new PaymentEventService.Callback(PaymentEventService.MOMO, "4088878653",
+				"1_1700000000000", 1L, 125000L, "0", true));
+		verify(paymentEventService).apply(new PaymentEventService.Callback(PaymentEventService.VNPAY, null,
+				"2_1700000000000", 2L, null, "02", false));
+		verify(paymentEventService, times(2)).apply(any());
+
+		// Đơn chưa gửi sang cổng bị hủy mà không tra cứu
+		verify(orderService).failPayment(3L, ABANDONED);
+		verify(momoService, never()).queryPaymentStatus(null);
+
+		Map<String, Object> stats = service.getStats();
+		assertEquals(5, stats.get("lastRunChecked"));
+		assertEquals(1L, stats.get("confirmed"));
+		assertEquals(2L, stats.get("failed"));
+		assertEquals(1L, stats.get("stillPending"));
+		assertEquals(1L, stats.get("errors"));
+	}
+
+	@Test
+	void boundsConcurrentGatewayCalls() {
+		ReflectionTestUtils.setField(service, "pageSize", 10);
+		List<OrderRepository.ReconcileRow> rows = new ArrayList<>();
+		for (long id = 1; id <= 8; id++) {
+			rows.add(row(id, PaymentEventService.MOMO, id + "_1700000000000"));
+		}
+		when(orderRepository.findReconcileCandidates(eq(0L), any(), any(), any())).thenReturn(rows);
+
+		AtomicInteger inFlight = new AtomicInteger();
+		AtomicInteger maxInFlight = new AtomicInteger();
+		when(momoService.queryPaymentStatus(anyString())).thenAnswer(invocation -> CompletableFuture.supplyAsync(() -> {
+			maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			inFlight.decrementAndGet();
+			return new GatewayPaymentStatus(GatewayPaymentStatus.State.PAID, "tx-" + invocation.getArgument(0), null, "0");
+		}, gateway));
+
+		service.reconcile();
+
+		assertTrue(maxInFlight.get() <= 2, "max in flight " + maxInFlight.get());
+		verify(paymentEventService, times(8)).apply(any());
+		assertEquals(8L, service.getStats().get("confirmed"));
+	}
+
+	private static OrderRepository.ReconcileRow row(Long idOrder, String paymentMethod, String paymentRef) {
+		LocalDateTime requestedAt = paymentRef != null ? LocalDateTime.now().minusHours(1) : null;
+		return new OrderRepository.ReconcileRow() {
+			@Override
+			public Long getIdOrder() {
+				return idOrder;
+			}
+
+			@Override
+			public String getPaymentMethod() {
+				return paymentMethod;
+			}
+
+			@Override
+			public String getPaymentRef() {
+				return paymentRef;
+			}
+
+			@Override
+			public LocalDateTime getPaymentRequestedAt() {
+				return requestedAt;
+			}
+		};
+	}
+}
@@ -0,0 +1,125 @@
+package com.example.OrderFoodSystem.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Chạy S3ImageStore với một server giả lập S3 (path-style, lưu object trong bộ nhớ)
+ */
+class S3ImageStoreTests {
+
+	private static final String BUCKET = "images";
+	private static final String KEY = "a".repeat(64) + ".jpg";
+
+	private final Map<String, byte[]> objects = new ConcurrentHashMap<>();
+	private final Map<String, String> lastAuthorization = new ConcurrentHashMap<>();
+	private HttpServer server;
+	private S3ImageStore store;
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/" + BUCKET, this::handle);
+		server.start();
+		String endpoint = "http://127.0.0.1:" + server.getAddress().getPort();
+		store = new S3ImageStore(endpoint, BUCKET, "us-east-1", "minio", "minio-secret", "");
+	}
+
+	@AfterEach
+	void stopServer() {
+		server.stop(0);
+	}
+
+	@Test
+	void putReadListAndDelete() throws IOException {
+		byte[] data = "jpeg bytes".getBytes(StandardCharsets.UTF_8);
+
+		assertFalse(store.exists(KEY));
+		store.put(KEY, data, "image/jpeg");
+		assertTrue(store.exists(KEY));
+		assertArrayEquals(data, store.read(KEY));
+
+		List<ImageStore.StoredObject> listed = store.list();
+		assertEquals(1, listed.size());
+		assertEquals(KEY, listed.get(0).key());
+
+		store.delete(KEY);
+		assertFalse(store.exists(KEY));
+		assertTrue(lastAuthorization.get("value").startsWith("AWS4-HMAC-SHA256 Credential=minio/"));
+	}
+
+	@Test
+	void publicUrlUsesBucketPath() {
+		assertEquals("http://127.0.0.1:" + server.getAddress().getPort() + "/images/" + KEY, store.url(KEY));
+		assertEquals("a".repeat(64), ImageStore.hashOf(store.url(KEY)));
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+		if (authorization == null || exchange.getRequestHeaders().getFirst("x-amz-date") == null) {
+			respond(exchange, 403, new byte[0]);
+			return;
+		}
+		lastAuthorization.put("value", authorization);
+
+		String path = exchange.getRequestURI().getPath();
+		String key = path.length() > BUCKET.length() + 2 ? path.substring(BUCKET.length() + 2) : null;
+		switch (exchange.getRequestMethod()) {
+			case "PUT" -> {
+				objects.put(key, exchange.getRequestBody().readAllBytes());
+				respond(exchange, 200, new byte[0]);
+			}
+			case "HEAD" -> {
+				exchange.sendResponseHeaders(objects.containsKey(key) ? 200 : 404, -1);
+				exchange.close();
+			}
+			case "DELETE" -> {
+				objects.remove(key);
+				respond(exchange, 204, null);
+			}
+			case "GET" -> {
+				if (key == null) {
+					respond(exchange, 200, listXml());
+				} else if (objects.containsKey(key)) {
+					respond(exchange, 200, objects.get(key));
+				} else {
+					respond(exchange, 404, new byte[0]);
+				}
+			}
+			default -> respond(exchange, 405, new byte[0]);
+		}
+	}
+
+	private byte[] listXml() {
+		StringBuilder xml = new StringBuilder("<ListBucketResult><IsTruncated>false</IsTruncated>");
+		objects.keySet().forEach(key -> xml.append("<Contents><Key>").append(key)
+				.append("</Key><LastModified>").append(Instant.now()).append("</LastModified></Contents>"));
+		return xml.append("</ListBucketResult>").toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+		if (body == null) {
+			exchange.sendResponseHeaders(status, -1);
+		} else {
+			exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+			exchange.getResponseBody().write(body);
+		}
+		exchange.close();
+	}
+}
@@ -0,0 +1,147 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.config.VNPayConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Số URL thanh toán VNPay tạo được và số callback kiểm tra được mỗi ms. legacy* là cách cũ (Map tham số,
+ * sắp xếp tên rồi URLEncoder cho từng giá trị), giữ lại để so sánh; cả hai cách đều ký bằng HmacSigner.
+ *
+ * Không chạy cùng mvn test, cách chạy giống HmacSignerBenchmark:
+ *   java -cp target/test-classes:target/classes:$(cat target/test-classpath.txt) org.openjdk.jmh.Main VNPayServiceBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VNPayServiceBenchmark {
+
+	private static final String SECRET = "SECRETKEY";
+	private static final DateTimeFormatter VNP_DATE = DateTimeFormatter.ofPattern("yyyyMMddHHmmss")
+			.withZone(ZoneId.of("Asia/Ho_Chi_Minh"));
+
+	private VNPayConfig config;
+	private VNPayService vnPayService;
+	private LocalDateTime requestedAt;
+	private Map<String, String> callback;
+
+	@Setup
+	public void setUp() {
+		config = new VNPayConfig();
+		ReflectionTestUtils.setField(config, "tmnCode", "TESTCODE");
+		ReflectionTestUtils.setField(config, "hashSecret", SECRET);
+		ReflectionTestUtils.setField(config, "payUrl", "https://sandbox.vnpayment.vn/paymentv2/vpcpay.html");
+		ReflectionTestUtils.setField(config, "returnUrl", "http://localhost:3000/payment-result");
+		vnPayService = new VNPayService(config, new ObjectMapper(), "http://127.0.0.1:9/merchant_webapi/api/transaction", 2000);
+		requestedAt = LocalDateTime.of(2024, 1, 1, 12, 0);
+
+		// Callback hợp lệ: các tham số của chính URL thanh toán
+		String url = vnPayService.createPaymentUrl(125000, "Thanh toan don hang #42", "127.0.0.1",
+				"42_1700000000000", requestedAt);
+		callback = new HashMap<>();
+		for (String param : url.substring(url.indexOf('?') + 1).split("&")) {
+			int eq = param.indexOf('=');
+			callback.put(param.substring(0, eq), URLDecoder.decode(param.substring(eq + 1), StandardCharsets.US_ASCII));
+		}
+		if (!vnPayService.verifyPayment(callback) || !legacyVerifyPayment(callback)) {
+			throw new IllegalStateException("Callback signature does not verify");
+		}
+	}
+
+	@Benchmark
+	public String createPaymentUrl() {
+		return vnPayService.createPaymentUrl(125000, "Thanh toan don hang #42", "127.0.0.1",
+				"42_1700000000000", requestedAt);
+	}
+
+	@Benchmark
+	public boolean verifyPayment() {
+		return vnPayService.verifyPayment(callback);
+	}
+
+	@Benchmark
+	public String legacyCreatePaymentUrl() {
+		Map<String, String> vnp_Params = new HashMap<>();
+		vnp_Params.put("vnp_Version", "2.1.0");
+		vnp_Params.put("vnp_Command", "pay");
+		vnp_Params.put("vnp_TmnCode", config.getTmnCode());
+		vnp_Params.put("vnp_Amount", String.valueOf(125000L * 100));
+		vnp_Params.put("vnp_CurrCode", "VND");
+		vnp_Params.put("vnp_TxnRef", "42_1700000000000");
+		vnp_Params.put("vnp_OrderInfo", "Thanh toan don hang #42");
+		vnp_Params.put("vnp_OrderType", "other");
+		vnp_Params.put("vnp_Locale", "vn");
+		vnp_Params.put("vnp_ReturnUrl", config.getReturnUrl());
+		vnp_Params.put("vnp_IpAddr", "127.0.0.1");
+		vnp_Params.put("vnp_CreateDate", VNP_DATE.format(requestedAt.atZone(ZoneId.systemDefault())));
+		vnp_Params.put("vnp_ExpireDate", VNP_DATE.format(requestedAt.plusMinutes(15).atZone(ZoneId.systemDefault())));
+
+		List<String> fieldNames = new ArrayList<>(vnp_Params.keySet());
+		Collections.sort(fieldNames);
+		StringBuilder hashData = new StringBuilder();
+		StringBuilder query = new StringBuilder();
+		for (String fieldName : fieldNames) {
+			String fieldValue = vnp_Params.get(fieldName);
+			if (!hashData.isEmpty()) {
+				hashData.append('&');
+				query.append('&');
+			}
+			hashData.append(fieldName).append('=').append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII));
+			query.append(URLEncoder.encode(fieldName, StandardCharsets.US_ASCII)).append('=')
+					.append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII));
+		}
+		String vnp_SecureHash = HmacSigner.hmacSha512(SECRET).sign(hashData.toString());
+		return config.getPayUrl() + "?" + query + "&vnp_SecureHash=" + vnp_SecureHash;
+	}
+
+	@Benchmark
+	public boolean legacyVerify() {
+		return legacyVerifyPayment(callback);
+	}
+
+	private static boolean legacyVerifyPayment(Map<String, String> params) {
+		Map<String, String> paramsCopy = new HashMap<>(params);
+		String vnp_SecureHash = paramsCopy.remove("vnp_SecureHash");
+		paramsCopy.remove("vnp_SecureHashType");
+
+		List<String> fieldNames = new ArrayList<>(paramsCopy.keySet());
+		Collections.sort(fieldNames);
+		StringBuilder hashData = new StringBuilder();
+		for (String fieldName : fieldNames) {
+			String fieldValue = paramsCopy.get(fieldName);
+			if (fieldValue != null && !fieldValue.isEmpty()) {
+				if (!hashData.isEmpty()) {
+					hashData.append('&');
+				}
+				hashData.append(fieldName).append('=').append(URLEncoder.encode(fieldValue, StandardCharsets.US_ASCII));
+			}
+		}
+		return HmacSigner.hmacSha512(SECRET).sign(hashData.toString()).equals(vnp_SecureHash);
+	}
+}
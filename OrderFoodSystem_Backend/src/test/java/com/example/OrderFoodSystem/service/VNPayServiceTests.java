@@ -0,0 +1,147 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.config.VNPayConfig;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VNPayServiceTests {
+
+	private final ObjectMapper objectMapper = new ObjectMapper();
+	private VNPayConfig config;
+	private VNPayService vnPayService;
+
+	@BeforeEach
+	void setUp() {
+		config = new VNPayConfig();
+		ReflectionTestUtils.setField(config, "tmnCode", "TESTCODE");
+		ReflectionTestUtils.setField(config, "hashSecret", "SECRETKEY");
+		ReflectionTestUtils.setField(config, "payUrl", "https://sandbox.vnpayment.vn/paymentv2/vpcpay.html");
+		ReflectionTestUtils.setField(config, "returnUrl", "http://localhost:3000/payment-result");
+		vnPayService = new VNPayService(config, objectMapper, "http://127.0.0.1:9/merchant_webapi/api/transaction", 2000);
+	}
+
+	@Test
+	void encodesLikeUrlEncoder() {
+		for (String value : new String[]{"Thanh toan don hang #42", "Thanh toán đơn hàng", "a😀b",
+				"http://localhost:3000/payment-result?x=1&y=2", "~!@#$%^&()+={}[]|\\:;\"'<>,/ "}) {
+			StringBuilder out = new StringBuilder();
+			VNPayService.appendEncoded(out, value);
+			assertEquals(URLEncoder.encode(value, StandardCharsets.US_ASCII), out.toString());
+		}
+	}
+
+	@Test
+	void verifiesItsOwnPaymentUrl() {
+		String url = vnPayService.createPaymentUrl(125000, "Thanh toan don hang #42", "127.0.0.1",
+				"42_1700000000000", LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+		Map<String, String> params = parseQuery(url.substring(url.indexOf('?') + 1));
+
+		assertEquals("12500000", params.get("vnp_Amount"));
+		assertEquals("TESTCODE", params.get("vnp_TmnCode"));
+		assertEquals("42_1700000000000", params.get("vnp_TxnRef"));
+		assertTrue(vnPayService.verifyPayment(params));
+
+		params.put("vnp_Amount", "100");
+		assertFalse(vnPayService.verifyPayment(params));
+		params.remove("vnp_SecureHash");
+		assertFalse(vnPayService.verifyPayment(params));
+	}
+
+	@Test
+	void queriesTransactionAndChecksResponseHash() throws Exception {
+		HttpServer server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		AtomicReference<String> responseSecret = new AtomicReference<>("SECRETKEY");
+		AtomicReference<String> responseTxnRef = new AtomicReference<>("42_1700000000000");
+		server.createContext("/merchant_webapi/api/transaction", exchange -> {
+			Map<String, String> request = objectMapper.readValue(exchange.getRequestBody(),
+					new TypeReference<Map<String, String>>() {
+					});
+			// Kiểm tra chữ ký request như VNPay: sai thì trả 97
+			String requestHash = HmacSigner.hmacSha512("SECRETKEY").sign(String.join("|", request.get("vnp_RequestId"),
+					request.get("vnp_Version"), request.get("vnp_Command"), request.get("vnp_TmnCode"),
+					request.get("vnp_TxnRef"), request.get("vnp_TransactionDate"), request.get("vnp_CreateDate"),
+					request.get("vnp_IpAddr"), request.get("vnp_OrderInfo")));
+			boolean validRequest = requestHash.equals(request.get("vnp_SecureHash"))
+					&& "querydr".equals(request.get("vnp_Command"));
+
+			Map<String, String> response = new LinkedHashMap<>();
+			response.put("vnp_ResponseId", "resp-1");
+			response.put("vnp_Command", "querydr");
+			response.put("vnp_ResponseCode", validRequest ? "00" : "97");
+			response.put("vnp_Message", "QueryDR Success");
+			response.put("vnp_TmnCode", "TESTCODE");
+			response.put("vnp_TxnRef", responseTxnRef.get());
+			response.put("vnp_Amount", "12500000");
+			response.put("vnp_BankCode", "NCB");
+			response.put("vnp_PayDate", "20231114223000");
+			response.put("vnp_TransactionNo", "14226112");
+			response.put("vnp_TransactionType", "01");
+			response.put("vnp_TransactionStatus", "00");
+			response.put("vnp_OrderInfo", request.get("vnp_OrderInfo"));
+			response.put("vnp_PromotionCode", "");
+			response.put("vnp_PromotionAmount", "");
+			response.put("vnp_SecureHash", HmacSigner.hmacSha512(responseSecret.get())
+					.sign(String.join("|", response.values())));
+
+			byte[] body = objectMapper.writeValueAsBytes(response);
+			exchange.getResponseHeaders().add("Content-Type", "application/json");
+			exchange.sendResponseHeaders(200, body.length);
+			exchange.getResponseBody().write(body);
+			exchange.close();
+		});
+		server.start();
+		try {
+			VNPayService service = new VNPayService(config, objectMapper,
+					"http://127.0.0.1:" + server.getAddress().getPort() + "/merchant_webapi/api/transaction", 2000);
+			LocalDateTime requestedAt = LocalDateTime.now().minusMinutes(30);
+
+			GatewayPaymentStatus paid = service.queryPaymentStatus("42_1700000000000", requestedAt).get(5, TimeUnit.SECONDS);
+			assertEquals(GatewayPaymentStatus.State.PAID, paid.state());
+			assertEquals("14226112", paid.transactionId());
+			assertEquals(125000L, paid.amount());
+
+			// Phản hồi cho giao dịch khác không được áp vào đơn này
+			responseTxnRef.set("43_1700000000000");
+			assertEquals(GatewayPaymentStatus.State.UNKNOWN,
+					service.queryPaymentStatus("42_1700000000000", requestedAt).get(5, TimeUnit.SECONDS).state());
+
+			// Sai chữ ký phản hồi
+			responseTxnRef.set("42_1700000000000");
+			responseSecret.set("not-the-secret");
+			GatewayPaymentStatus forged = service.queryPaymentStatus("42_1700000000000", requestedAt).get(5, TimeUnit.SECONDS);
+			assertEquals(GatewayPaymentStatus.State.UNKNOWN, forged.state());
+			assertEquals("INVALID_SIGNATURE", forged.resultCode());
+		} finally {
+			server.stop(0);
+		}
+	}
+
+	private static Map<String, String> parseQuery(String query) {
+		Map<String, String> params = new HashMap<>();
+		for (String pair : query.split("&")) {
+			int eq = pair.indexOf('=');
+			params.put(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.US_ASCII));
+		}
+		return params;
+	}
+}
@@ -0,0 +1,193 @@
+package com.example.OrderFoodSystem.service;
+
+import com.example.OrderFoodSystem.entity.Order;
+import com.example.OrderFoodSystem.entity.Voucher;
+import com.example.OrderFoodSystem.repository.OrderRepository;
+import com.example.OrderFoodSystem.repository.OrderVoucherRepository;
+import com.example.OrderFoodSystem.repository.VoucherRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@DataJpaTest(properties = "spring.jpa.hibernate.ddl-auto=create-drop")
+@ActiveProfiles("test")
+@Import(VoucherRedemptionService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class VoucherRedemptionServiceTests {
+
+	private static final int VOUCHER_QUANTITY = 50;
+	private static final int CONCURRENT_ORDERS = 2000;
+
+	@Autowired
+	private VoucherRedemptionService voucherRedemptionService;
+
+	@Autowired
+	private VoucherRepository voucherRepository;
+
+	@Autowired
+	private OrderRepository orderRepository;
+
+	@Autowired
+	private OrderVoucherRepository orderVoucherRepository;
+
+	@Test
+	void concurrentReservationsNeverOversell() throws Exception {
+		LocalDate today = LocalDate.now();
+		Voucher voucher = voucherRepository.save(new Voucher("FLASH" + System.nanoTime() % 100000, "fixed", 10000.0,
+				0.0, null, VOUCHER_QUANTITY, today.minusDays(1), today.plusDays(1), true));
+
+		List<Order> orders = new ArrayList<>();
+		for (int i = 0; i < CONCURRENT_ORDERS; i++) {
+			Order order = new Order();
+			order.setStatus("pending");
+			order.setOrderDate(LocalDateTime.now());
+			order.setTotalPrice(100000.0);
+			orders.add(order);
+		}
+		orders = orderRepository.saveAll(orders);
+		long orderVouchersBefore = orderVoucherRepository.count();
+
+		ExecutorService pool = Executors.newFixedThreadPool(32);
+		CountDownLatch start = new CountDownLatch(1);
+		AtomicInteger reserved = new AtomicInteger();
+		AtomicInteger rejected = new AtomicInteger();
+		List<Future<?>> futures = new ArrayList<>();
+
+		for (Order order : orders) {
+			futures.add(pool.submit(() -> {
+				start.await();
+				try {
+					voucherRedemptionService.reserve(order.getIdOrder(), voucher.getIdVoucher(), 10000.0);
+					reserved.incrementAndGet();
+				} catch (RuntimeException e) {
+					rejected.incrementAndGet();
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		pool.shutdown();
+
+		assertEquals(VOUCHER_QUANTITY, reserved.get());
+		assertEquals(CONCURRENT_ORDERS - VOUCHER_QUANTITY, rejected.get());
+		assertEquals(0, voucherRepository.findById(voucher.getIdVoucher()).orElseThrow().getQuantity());
+		assertEquals(orderVouchersBefore + VOUCHER_QUANTITY, orderVoucherRepository.count());
+	}
+
+	@Test
+	void releaseGivesTheUseBack() {
+		LocalDate today = LocalDate.now();
+		Voucher voucher = voucherRepository.save(new Voucher("ONCE" + System.nanoTime() % 100000, "fixed", 5000.0,
+				0.0, null, 1, today, today, true));
+
+		Order order = new Order();
+		order.setStatus("pending");
+		order.setTotalPrice(50000.0);
+		order = orderRepository.save(order);
+
+		voucherRedemptionService.reserve(order.getIdOrder(), voucher.getIdVoucher(), 5000.0);
+		assertEquals(0, voucherRepository.findById(voucher.getIdVoucher()).orElseThrow().getQuantity());
+
+		voucherRedemptionService.release(order.getIdOrder());
+		assertEquals(1, voucherRepository.findById(voucher.getIdVoucher()).orElseThrow().getQuantity());
+	}
+
+	@Test
+	void concurrentReservationsOnOneOrderTakeOneUse() throws Exception {
+		Voucher voucher = newVoucher("SAME", 10);
+		Order order = newOrder();
+
+		runConcurrently(8, () -> voucherRedemptionService.reserve(order.getIdOrder(), voucher.getIdVoucher(), 5000.0));
+
+		// Request thua không giữ lượt dùng nào: lượt đã lấy bị rollback cùng transaction
+		assertEquals(9, voucherRepository.findById(voucher.getIdVoucher()).orElseThrow().getQuantity());
+		assertTrue(orderVoucherRepository.findByOrder_IdOrder(order.getIdOrder()).isPresent());
+	}
+
+	@Test
+	void concurrentReleasesGiveTheUseBackOnce() throws Exception {
+		Voucher voucher = newVoucher("TWICE", 1);
+		Order order = newOrder();
+		voucherRedemptionService.reserve(order.getIdOrder(), voucher.getIdVoucher(), 5000.0);
+
+		runConcurrently(8, () -> voucherRedemptionService.release(order.getIdOrder()));
+
+		assertEquals(1, voucherRepository.findById(voucher.getIdVoucher()).orElseThrow().getQuantity());
+	}
+
+	@Test
+	void paidOrderKeepsItsCommittedVoucher() {
+		Voucher voucher = newVoucher("PAID", 1);
+		Voucher other = newVoucher("OTHER", 1);
+		Order order = newOrder();
+		voucherRedemptionService.reserve(order.getIdOrder(), voucher.getIdVoucher(), 5000.0);
+		voucherRedemptionService.commit(order.getIdOrder());
+		Order paid = orderRepository.findById(order.getIdOrder()).orElseThrow();
+		paid.setStatus("confirmed");
+		orderRepository.save(paid);
+
+		assertThrows(RuntimeException.class,
+				() -> voucherRedemptionService.reserve(order.getIdOrder(), other.getIdVoucher(), 5000.0));
+		voucherRedemptionService.release(order.getIdOrder());
+
+		assertEquals(0, voucherRepository.findById(voucher.getIdVoucher()).orElseThrow().getQuantity());
+		assertEquals(1, voucherRepository.findById(other.getIdVoucher()).orElseThrow().getQuantity());
+	}
+
+	private Voucher newVoucher(String prefix, int quantity) {
+		LocalDate today = LocalDate.now();
+		return voucherRepository.save(new Voucher(prefix + System.nanoTime() % 100000, "fixed", 5000.0,
+				0.0, null, quantity, today, today, true));
+	}
+
+	private Order newOrder() {
+		Order order = new Order();
+		order.setStatus("pending");
+		order.setTotalPrice(50000.0);
+		return orderRepository.save(order);
+	}
+
+	// Chạy cùng lúc trên nhiều thread, bỏ qua lỗi của request thua
+	private static void runConcurrently(int threads, Runnable task) throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < threads; i++) {
+			futures.add(pool.submit(() -> {
+				start.await();
+				try {
+					task.run();
+				} catch (RuntimeException e) {
+					// Đơn vừa bị request khác sửa
+				}
+				return null;
+			}));
+		}
+		start.countDown();
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		pool.shutdown();
+	}
+}
@@ -103,7 +103,7 @@ const Chatbot = () => {
                                             {msg.products.map((p, idx) => (
                                                 <div key={p.idProduct} className="flex gap-2 p-2 bg-white rounded-lg border border-gray-100 items-center">
                                                     <img
-                                                        src={p.imageUrl}
+                                                        src={p.imageThumbUrl || p.imageUrl}
                                                         alt={p.nameProduct}
                                                         className="w-12 h-12 object-cover rounded"
                                                         onError={(e) => { e.target.style.display = 'none'; }}
@@ -449,7 +449,7 @@ export default function AdminDashboard() {
       alert("Cập nhật trạng thái thành công!");
     } catch (err) {
       console.error("Error updating status:", err);
-      alert("Lỗi khi cập nhật trạng thái!");
+      alert(err.response?.data?.message || "Lỗi khi cập nhật trạng thái!");
     }
   };
 
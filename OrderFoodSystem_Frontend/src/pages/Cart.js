@@ -40,18 +40,8 @@ export default function Cart() {
   const loadCart = async () => {
     try {
       setLoading(true);
-      const ordersRes = await axios.get(`${API_URL}/orders`);
-      const pendingOrder = ordersRes.data.find(
-        (o) => o.customer?.idCustomer === customer.idCustomer && o.status === "pending"
-      );
-
-      if (pendingOrder) {
-        setOrder(pendingOrder);
-        setOrderDetails(pendingOrder.orderDetails || []);
-      } else {
-        setOrder(null);
-        setOrderDetails([]);
-      }
+      const res = await axios.get(`${API_URL}/carts/${customer.idCustomer}`);
+      applyCart(res.data);
     } catch (error) {
       console.error("Error loading cart:", error);
       setMessage("Lỗi khi tải giỏ hàng!");
@@ -63,6 +53,23 @@ export default function Cart() {
 
 
 
+  // Giỏ hàng trả về từ server: { items, totalPrice, itemCount }
+  const applyCart = (cart) => {
+    if (cart && cart.items.length > 0) {
+      setOrder(cart);
+      setOrderDetails(cart.items);
+    } else {
+      setOrder(null);
+      setOrderDetails([]);
+    }
+
+    // Kiểm tra lại voucher sau khi giỏ hàng thay đổi
+    if (appliedVoucher && (!cart || cart.totalPrice < appliedVoucher.minOrderValue)) {
+      // Đơn hàng không còn đủ điều kiện
+      removeVoucher();
+    }
+  };
+
   const updateQuantity = async (orderDetail, newQuantity) => {
     if (newQuantity < 1) return;
     try {
@@ -70,24 +77,11 @@ export default function Cart() {
         quantity: newQuantity,
         note: orderDetail.note,
       };
-      await axios.put(
-        `${API_URL}/orderDetails/${orderDetail.idOrderDetail}`,
+      const res = await axios.put(
+        `${API_URL}/carts/${customer.idCustomer}/items/${orderDetail.idProduct}`,
         updatedDetail
       );
-      await loadCart();
-
-      // Kiểm tra lại voucher sau khi cập nhật số lượng
-      if (appliedVoucher) {
-        const ordersRes = await axios.get(`${API_URL}/orders`);
-        const updatedOrder = ordersRes.data.find(
-          (o) => o.customer?.idCustomer === customer.idCustomer && o.status === "pending"
-        );
-
-        if (updatedOrder && updatedOrder.totalPrice < appliedVoucher.minOrderValue) {
-          // Đơn hàng không còn đủ điều kiện
-          removeVoucher();
-        }
-      }
+      applyCart(res.data);
     } catch (error) {
       console.error("Error updating quantity:", error);
       setMessage("Lỗi khi cập nhật số lượng!");
@@ -99,15 +93,15 @@ export default function Cart() {
     // Cập nhật note ngay lập tức trong state local để user thấy được gõ
     setOrderDetails(prevDetails =>
       prevDetails.map(detail =>
-        detail.idOrderDetail === orderDetail.idOrderDetail
+        detail.idProduct === orderDetail.idProduct
           ? { ...detail, note: newNote }
           : detail
       )
     );
 
     // Clear timer cũ nếu có
-    if (noteTimers[orderDetail.idOrderDetail]) {
-      clearTimeout(noteTimers[orderDetail.idOrderDetail]);
+    if (noteTimers[orderDetail.idProduct]) {
+      clearTimeout(noteTimers[orderDetail.idProduct]);
     }
 
     // Tạo timer mới để lưu sau 1 giây (debounce)
@@ -118,7 +112,7 @@ export default function Cart() {
           note: newNote,
         };
         await axios.put(
-          `${API_URL}/orderDetails/${orderDetail.idOrderDetail}`,
+          `${API_URL}/carts/${customer.idCustomer}/items/${orderDetail.idProduct}`,
           updatedDetail
         );
         // Không cần loadCart() ở đây vì đã update state local rồi
@@ -133,28 +127,16 @@ export default function Cart() {
     // Lưu timer vào state
     setNoteTimers(prev => ({
       ...prev,
-      [orderDetail.idOrderDetail]: timer
+      [orderDetail.idProduct]: timer
     }));
   };
 
-  const deleteItem = async (idOrderDetail, itemName) => {
+  const deleteItem = async (idProduct, itemName) => {
     try {
-      await axios.delete(`${API_URL}/orderDetails/${idOrderDetail}`);
+      const res = await axios.delete(`${API_URL}/carts/${customer.idCustomer}/items/${idProduct}`);
       setMessage(`Đã xóa "${itemName}" khỏi giỏ hàng!`);
       setTimeout(() => setMessage(""), 3000);
-      await loadCart();
-
-      // Kiểm tra lại voucher sau khi xóa món
-      if (appliedVoucher) {
-        const ordersRes = await axios.get(`${API_URL}/orders`);
-        const updatedOrder = ordersRes.data.find(
-          (o) => o.customer?.idCustomer === customer.idCustomer && o.status === "pending"
-        );
-
-        if (updatedOrder && updatedOrder.totalPrice < appliedVoucher.minOrderValue) {
-          removeVoucher();
-        }
-      }
+      applyCart(res.data);
     } catch (error) {
       console.error("Error deleting item:", error);
       alert("Lỗi khi xóa món!");
@@ -168,7 +150,7 @@ export default function Cart() {
       message: "Bạn có chắc muốn hủy đơn hàng này?",
       onConfirm: async () => {
         try {
-          await axios.delete(`${API_URL}/orders/${order.idOrder}`);
+          await axios.delete(`${API_URL}/carts/${customer.idCustomer}`);
           setMessage("Đã hủy đơn hàng!");
           loadCart();
         } catch (error) {
@@ -241,15 +223,19 @@ export default function Cart() {
       title: "Xác nhận đặt hàng?",
       message: `Phương thức: ${paymentMethodNames[paymentMethod]}\nTổng cộng: ${((order.totalPrice || 0) - voucherDiscount).toLocaleString("vi-VN")} VNĐ`,
       onConfirm: async () => {
-        // Log Debug
-        console.log("--- Confirming Order ---");
-        console.log("Order ID:", order.idOrder);
-        console.log("Payment Method:", paymentMethod);
-
         try {
+          // Tạo đơn hàng từ giỏ hàng
+          const checkoutRes = await axios.post(`${API_URL}/carts/${customer.idCustomer}/checkout`);
+          const placedOrder = checkoutRes.data;
+
+          // Log Debug
+          console.log("--- Confirming Order ---");
+          console.log("Order ID:", placedOrder.idOrder);
+          console.log("Payment Method:", paymentMethod);
+
           // Apply voucher if exists
           if (appliedVoucher && voucherDiscount > 0) {
-            await axios.post(`${API_URL}/orders/${order.idOrder}/apply-voucher`, {
+            await axios.post(`${API_URL}/orders/${placedOrder.idOrder}/apply-voucher`, {
               voucherId: appliedVoucher.idVoucher,
               discountAmount: voucherDiscount
             });
@@ -258,16 +244,16 @@ export default function Cart() {
           // Process payment with VNPay
           if (paymentMethod === "VNPAY") {
             try {
-              const finalAmount = (order.totalPrice || 0) - voucherDiscount;
-              const orderInfo = `Thanh toan don hang #${order.idOrder}`;
+              const finalAmount = (placedOrder.totalPrice || 0) - voucherDiscount;
+              const orderInfo = `Thanh toan don hang #${placedOrder.idOrder}`;
               
               console.log("=== VNPay Payment ===");
-              console.log("Order ID:", order.idOrder);
+              console.log("Order ID:", placedOrder.idOrder);
               console.log("Amount:", finalAmount);
               console.log("Order Info:", orderInfo);
               
               const paymentResponse = await axios.post(
-                `${API_URL}/api/payment/vnpay/create?amount=${finalAmount}&orderInfo=${encodeURIComponent(orderInfo)}&orderId=${order.idOrder}`
+                `${API_URL}/api/payment/vnpay/create?amount=${finalAmount}&orderInfo=${encodeURIComponent(orderInfo)}&orderId=${placedOrder.idOrder}`
               );
               
               console.log("VNPay Response:", paymentResponse.data);
@@ -287,7 +273,7 @@ export default function Cart() {
             }
           } else {
             // COD payment
-            await axios.post(`${API_URL}/orders/${order.idOrder}/payment`, {
+            await axios.post(`${API_URL}/orders/${placedOrder.idOrder}/payment`, {
               paymentMethod: paymentMethod
             });
           }
@@ -378,7 +364,7 @@ export default function Cart() {
             <div className="py-4 px-4 space-y-4">
               {orderDetails.map((detail) => (
                 <div
-                  key={detail.idOrderDetail}
+                  key={detail.idProduct}
                   className="border border-gray-200 rounded-lg p-3 sm:p-4 bg-white text-black"
                 >
                   <div className="flex flex-col sm:flex-row justify-between items-start gap-3">
@@ -424,7 +410,7 @@ export default function Cart() {
                         {detail.subTotal?.toLocaleString("vi-VN")} VNĐ
                       </p>
                       <button
-                        onClick={() => deleteItem(detail.idOrderDetail, detail.product?.nameProduct)}
+                        onClick={() => deleteItem(detail.idProduct, detail.product?.nameProduct)}
                         className="px-3 sm:px-5 py-2 sm:py-2.5 bg-red-400 text-white rounded-md hover:bg-rose-500 cursor-pointer text-sm sm:text-base"
                       >
                         Xóa
@@ -9,6 +9,8 @@ export default function Menu() {
   const [filteredProducts, setFilteredProducts] = useState([]);
   const [selectedCategory, setSelectedCategory] = useState("ALL");
   const [categories, setCategories] = useState([]);
+  const [categoryIds, setCategoryIds] = useState({});
+  const [bestSellers, setBestSellers] = useState([]);
   const [noteModalProduct, setNoteModalProduct] = useState(null);
   const [noteText, setNoteText] = useState("");
   const [message, setMessage] = useState("");
@@ -21,6 +23,7 @@ export default function Menu() {
 
   useEffect(() => {
     loadProducts();
+    loadBestSellers();
     if (customer) {
       loadWishlist();
     }
@@ -38,11 +41,25 @@ export default function Menu() {
       // Tạo danh sách category từ API với tên đầy đủ
       const cats = ["ALL", ...categoriesRes.data.map(cat => cat.nameCategory)];
       setCategories(cats);
+      setCategoryIds(Object.fromEntries(categoriesRes.data.map(cat => [cat.nameCategory, cat.idCategory])));
     } catch (err) {
       console.error("Error loading products:", err);
     }
   };
 
+  // Top món bán chạy do server duy trì (toàn menu hoặc theo danh mục), không tự tính từ đơn hàng
+  const loadBestSellers = async (categoryId) => {
+    try {
+      const res = await axios.get(`${API_URL}/products/best-sellers`, {
+        params: { categoryId, limit: 5 },
+      });
+      setBestSellers(res.data);
+    } catch (err) {
+      console.error("Error loading best sellers:", err);
+      setBestSellers([]);
+    }
+  };
+
   const loadWishlist = async () => {
     try {
       const res = await axios.get(`${API_URL}/wishlist/customer/${customer.idCustomer}`);
@@ -55,6 +72,7 @@ export default function Menu() {
   const filterByCategory = (categoryName) => {
     setSelectedCategory(categoryName);
     filterProducts(categoryName, searchTerm);
+    loadBestSellers(categoryName === "ALL" ? undefined : categoryIds[categoryName]);
   };
 
   const handleSearchChange = (searchValue) => {
@@ -94,32 +112,11 @@ export default function Menu() {
     if (!noteModalProduct) return;
 
     try {
-      const ordersRes = await axios.get(`${API_URL}/orders`);
-      let currentOrder = ordersRes.data.find(
-        (order) =>
-          order.customer?.idCustomer === customer.idCustomer &&
-          order.status === "pending"
-      );
-
-      if (!currentOrder) {
-        const orderData = {
-          totalPrice: 0,
-          status: "pending",
-          customer: { idCustomer: customer.idCustomer },
-        };
-        const orderRes = await axios.post(`${API_URL}/orders`, orderData);
-        currentOrder = orderRes.data;
-      }
-
-      const data = {
+      await axios.post(`${API_URL}/carts/${customer.idCustomer}/items`, {
+        idProduct: noteModalProduct.idProduct,
         quantity: 1,
-        subTotal: noteModalProduct.priceProduct,
         note: noteText,
-        order: { idOrder: currentOrder.idOrder },
-        product: { idProduct: noteModalProduct.idProduct },
-      };
-
-      await axios.post(`${API_URL}/orderDetails`, data);
+      });
       setMessage(`Đã thêm "${noteModalProduct.nameProduct}" vào giỏ hàng!`);
       setTimeout(() => setMessage(""), 3000);
     } catch (err) {
@@ -199,6 +196,38 @@ export default function Menu() {
           </div>
         </div>
 
+        {/* Best Sellers */}
+        {bestSellers.length > 0 && (
+          <div className="mb-6">
+            <h4 className="mb-2 font-medium text-indigo-900 text-base sm:text-lg">Món bán chạy:</h4>
+            <div className="flex gap-3 overflow-x-auto pb-2">
+              {bestSellers.map((p, index) => (
+                <div
+                  key={p.idProduct}
+                  className="min-w-[180px] border border-gray-200 rounded-lg p-3 bg-white bg-opacity-90 shadow-sm flex flex-col"
+                >
+                  {p.imageUrl && (
+                    <img
+                      src={p.imageThumbUrl || p.imageUrl}
+                      alt={p.nameProduct}
+                      className="w-full h-24 object-cover rounded mb-2"
+                      onError={(e) => { e.target.style.display = 'none'; }}
+                    />
+                  )}
+                  <p className="font-semibold text-sm text-indigo-900">#{index + 1} {p.nameProduct}</p>
+                  <p className="text-red-500 text-sm mb-2">{p.priceProduct?.toLocaleString("vi-VN")} VNĐ</p>
+                  <button
+                    onClick={() => handleAddToCart(p)}
+                    className="mt-auto bg-indigo-400 text-white py-1.5 rounded hover:bg-indigo-700 transition text-sm font-medium"
+                  >
+                    Thêm vào giỏ
+                  </button>
+                </div>
+              ))}
+            </div>
+          </div>
+        )}
+
         {/* Search Bar */}
         <div className="mb-6">
           <input
@@ -223,7 +252,7 @@ export default function Menu() {
               >
                 {p.imageUrl && (
                   <img
-                    src={p.imageUrl}
+                    src={p.imageCardUrl || p.imageUrl}
                     alt={p.nameProduct}
                     className="w-full h-40 sm:h-48 object-cover rounded-lg mb-3"
                     onError={(e) => { e.target.style.display = 'none'; }}
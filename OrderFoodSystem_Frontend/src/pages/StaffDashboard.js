@@ -18,6 +18,20 @@ export default function StaffDashboard() {
       return;
     }
     loadOrders();
+
+    // Nhận đơn mới/đổi trạng thái qua SSE thay vì tải lại toàn bộ danh sách.
+    // EventSource tự kết nối lại và gửi Last-Event-ID để nhận các sự kiện bị lỡ
+    const source = new EventSource(`${API_URL}/orders/stream`);
+    const onOrderEvent = (e) => refreshOrder(JSON.parse(e.data).idOrder);
+    source.addEventListener("order-created", onOrderEvent);
+    source.addEventListener("status-changed", onOrderEvent);
+    source.addEventListener("order-deleted", (e) => {
+      const idOrder = JSON.parse(e.data).idOrder;
+      setOrders((prev) => prev.filter((o) => o.idOrder !== idOrder));
+    });
+    // Bị lỡ quá nhiều sự kiện: tải lại toàn bộ
+    source.addEventListener("reset", () => loadOrders());
+    return () => source.close();
     // eslint-disable-next-line react-hooks/exhaustive-deps
   }, []);
 
@@ -38,14 +52,36 @@ export default function StaffDashboard() {
     }
   };
 
+  // Tải lại một đơn hàng và cập nhật vào danh sách (đơn pending không hiển thị)
+  const refreshOrder = async (orderId) => {
+    try {
+      const res = await axios.get(`${API_URL}/orders/${orderId}`);
+      const updated = res.data;
+      setOrders((prev) => {
+        const others = prev.filter((o) => o.idOrder !== updated.idOrder);
+        if (updated.status === 'pending') {
+          return others;
+        }
+        return [...others, updated].sort((a, b) => b.idOrder - a.idOrder);
+      });
+    } catch (err) {
+      if (err.response?.status === 404) {
+        // Đơn đã bị xóa trước khi kịp tải lại
+        setOrders((prev) => prev.filter((o) => o.idOrder !== orderId));
+        return;
+      }
+      console.error("Error refreshing order:", err);
+    }
+  };
+
   const updateOrderStatus = async (orderId, newStatus) => {
     try {
       await axios.patch(`${API_URL}/orders/${orderId}/status`, { status: newStatus });
       alert("Cập nhật trạng thái thành công!");
-      loadOrders();
+      refreshOrder(orderId);
     } catch (err) {
       console.error("Error updating status:", err);
-      alert("Lỗi khi cập nhật trạng thái!");
+      alert(err.response?.data?.message || "Lỗi khi cập nhật trạng thái!");
     }
   };
 
@@ -4,7 +4,7 @@ import { API_URL } from "../config";
 /**
  * Statistics Component - Official Version
  * 
- * This component fetches REAL DATA from the backend API
+ * This component reads aggregated data from the /statistics API
  * Features:
  * - Summary cards (Total Orders, Revenue, Customers, Products)
  * - Time range selector (Today/This Week/This Month/All Time)
@@ -47,83 +47,45 @@ const getStatusBadge = (status) => {
     );
 };
 
-// Calculate statistics based on time range
-const filterOrdersByTimeRange = (orders, timeRange) => {
-    const now = new Date();
-    const today = new Date(now.getFullYear(), now.getMonth(), now.getDate());
-
-    return orders.filter(order => {
-        // Only count real orders, not carts (pending) or deleted ones (optional)
-        if (order.status === "pending" || order.status === "cancelled") return false;
-
-        const orderDate = new Date(order.orderDate);
-
-        switch (timeRange) {
-            case "today":
-                return orderDate >= today;
-            case "thisWeek":
-                const weekAgo = new Date(today);
-                weekAgo.setDate(today.getDate() - 7);
-                return orderDate >= weekAgo;
-            case "thisMonth":
-                const monthStart = new Date(now.getFullYear(), now.getMonth(), 1);
-                return orderDate >= monthStart;
-            case "all":
-            default:
-                return true;
+// Nhãn của bucket doanh thu do /statistics trả về (cùng định dạng DATE_FORMAT của MySQL)
+const formatBucket = (bucket, granularity) => {
+    switch (granularity) {
+        case "hour":
+            return bucket.slice(11); // "2024-05-01 13:00" -> "13:00"
+        case "day": {
+            const [, month, day] = bucket.split("-");
+            return `${day}/${month}`;
         }
-    });
+        case "week":
+            return `Tuần ${Number(bucket.split("-W")[1])}`;
+        case "month":
+        default: {
+            const [year, month] = bucket.split("-");
+            return `${Number(month)}/${year}`;
+        }
+    }
 };
 
-// Group orders by date for chart
-const groupOrdersByDate = (orders, timeRange) => {
-    const grouped = {};
-
-    // Initialize time slots for "today" view (6 time blocks)
-    if (timeRange === "today") {
-        grouped["00:00 - 04:00"] = 0;
-        grouped["04:00 - 08:00"] = 0;
-        grouped["08:00 - 12:00"] = 0;
-        grouped["12:00 - 16:00"] = 0;
-        grouped["16:00 - 20:00"] = 0;
-        grouped["20:00 - 24:00"] = 0;
+// Mốc bắt đầu của khoảng thời gian, khớp với StatisticsService.getDashboard
+const rangeStart = (timeRange) => {
+    const now = new Date();
+    const today = new Date(now.getFullYear(), now.getMonth(), now.getDate());
+    switch (timeRange) {
+        case "today":
+            return today;
+        case "thisWeek":
+            return new Date(today.getFullYear(), today.getMonth(), today.getDate() - 7);
+        case "thisMonth":
+            return new Date(now.getFullYear(), now.getMonth(), 1);
+        default:
+            return null;
     }
+};
 
-    orders.forEach(order => {
-        const date = new Date(order.orderDate);
-        let key;
-
-        if (timeRange === "today") {
-            const hour = date.getHours();
-            if (hour >= 0 && hour < 4) key = "00:00 - 04:00";
-            else if (hour >= 4 && hour < 8) key = "04:00 - 08:00";
-            else if (hour >= 8 && hour < 12) key = "08:00 - 12:00";
-            else if (hour >= 12 && hour < 16) key = "12:00 - 16:00";
-            else if (hour >= 16 && hour < 20) key = "16:00 - 20:00";
-            else key = "20:00 - 24:00";
-        } else if (timeRange === "thisWeek") {
-            const days = ["Chủ Nhật", "Thứ 2", "Thứ 3", "Thứ 4", "Thứ 5", "Thứ 6", "Thứ 7"];
-            key = days[date.getDay()];
-        } else if (timeRange === "thisMonth") {
-            const weekNum = Math.ceil(date.getDate() / 7);
-            key = `Tuần ${weekNum}`;
-        } else {
-            key = `${date.getMonth() + 1}/${date.getFullYear()}`;
-        }
-
-        if (!grouped[key]) {
-            grouped[key] = 0;
-        }
-        grouped[key] += order.totalPrice || 0;
-    });
-
-    // Return as array (already in correct order for "today")
-    let result = Object.entries(grouped).map(([day, revenue]) => ({
-        day,
-        revenue
-    }));
-
-    return result;
+// LocalDateTime theo giờ máy (server không nhận múi giờ)
+const toLocalIso = (date) => {
+    const pad = (n) => String(n).padStart(2, "0");
+    return `${date.getFullYear()}-${pad(date.getMonth() + 1)}-${pad(date.getDate())}T00:00:00`;
 };
 
 export default function Statistics() {
@@ -131,12 +93,6 @@ export default function Statistics() {
     const [loading, setLoading] = useState(true);
     const [error, setError] = useState(null);
 
-    // State for data
-    const [allOrders, setAllOrders] = useState([]);
-    const [allCustomers, setAllCustomers] = useState([]);
-    const [allProducts, setAllProducts] = useState([]);
-
-    // Computed data based on time range
     const [stats, setStats] = useState({
         totalOrders: 0,
         revenue: 0,
@@ -147,78 +103,64 @@ export default function Statistics() {
     const [recentOrders, setRecentOrders] = useState([]);
     const [orderStatusCounts, setOrderStatusCounts] = useState({});
 
-    // Fetch all data from API
+    // Số liệu được tổng hợp ở server (/statistics), chỉ tải 10 đơn gần nhất thay vì toàn bộ /orders
     useEffect(() => {
+        let cancelled = false;
         const fetchData = async () => {
             try {
                 setLoading(true);
                 setError(null);
 
-                // Fetch orders, customers, and products in parallel
-                const [ordersRes, customersRes, productsRes] = await Promise.all([
-                    fetch(`${API_URL}/orders`),
-                    fetch(`${API_URL}/customers`),
-                    fetch(`${API_URL}/products`)
+                const from = rangeStart(timeRange);
+                const summaryParams = new URLSearchParams({ size: "10" });
+                if (from) {
+                    summaryParams.set("from", toLocalIso(from));
+                }
+
+                const [dashboardRes, recentRes] = await Promise.all([
+                    fetch(`${API_URL}/statistics?range=${timeRange}`),
+                    fetch(`${API_URL}/orders/summary?${summaryParams}`)
                 ]);
 
-                if (!ordersRes.ok || !customersRes.ok || !productsRes.ok) {
+                if (!dashboardRes.ok || !recentRes.ok) {
                     throw new Error("Không thể tải dữ liệu từ server");
                 }
 
-                const ordersData = await ordersRes.json();
-                const customersData = await customersRes.json();
-                const productsData = await productsRes.json();
-
-                setAllOrders(ordersData);
-                setAllCustomers(customersData);
-                setAllProducts(productsData);
+                const dashboard = await dashboardRes.json();
+                const recent = await recentRes.json();
+                if (cancelled) {
+                    return;
+                }
 
+                setStats({
+                    totalOrders: dashboard.totalOrders || 0,
+                    revenue: dashboard.revenue || 0,
+                    totalCustomers: dashboard.totalCustomers || 0,
+                    totalProducts: dashboard.totalProducts || 0
+                });
+                setChartData((dashboard.revenueChart || []).map(point => ({
+                    day: formatBucket(point.bucket, dashboard.granularity),
+                    revenue: point.revenue || 0
+                })));
+                setOrderStatusCounts(dashboard.statusCounts || {});
+                setRecentOrders(recent.items || []);
             } catch (err) {
                 console.error("Error fetching data:", err);
-                setError(err.message);
+                if (!cancelled) {
+                    setError(err.message);
+                }
             } finally {
-                setLoading(false);
+                if (!cancelled) {
+                    setLoading(false);
+                }
             }
         };
 
         fetchData();
-    }, []);
-
-    // Update computed data when time range or data changes
-    useEffect(() => {
-        if (allOrders.length > 0) {
-            const filteredOrders = filterOrdersByTimeRange(allOrders, timeRange);
-
-            // Calculate statistics
-            const totalOrders = filteredOrders.length;
-            const revenue = filteredOrders.reduce((sum, order) => sum + (order.totalPrice || 0), 0);
-
-            setStats({
-                totalOrders,
-                revenue,
-                totalCustomers: allCustomers.length,
-                totalProducts: allProducts.filter(p => p.isActive).length
-            });
-
-            // Generate chart data
-            const chart = groupOrdersByDate(filteredOrders, timeRange);
-            setChartData(chart);
-
-            // Get recent orders (last 10)
-            const sorted = [...filteredOrders].sort((a, b) =>
-                new Date(b.orderDate) - new Date(a.orderDate)
-            );
-            setRecentOrders(sorted.slice(0, 10));
-
-            // Count orders by status
-            const statusCounts = {};
-            filteredOrders.forEach(order => {
-                const status = order.status || "pending";
-                statusCounts[status] = (statusCounts[status] || 0) + 1;
-            });
-            setOrderStatusCounts(statusCounts);
-        }
-    }, [allOrders, allCustomers, allProducts, timeRange]);
+        return () => {
+            cancelled = true;
+        };
+    }, [timeRange]);
 
     // Calculate max revenue for chart scaling
     const maxRevenue = Math.max(...chartData.map((item) => item.revenue), 1);
@@ -498,7 +440,7 @@ export default function Statistics() {
                                                 #{order.idOrder}
                                             </td>
                                             <td className="px-6 py-4 whitespace-nowrap text-sm text-gray-700">
-                                                {order.customer?.nameCustomer || "N/A"}
+                                                {order.nameCustomer || "N/A"}
                                             </td>
                                             <td className="px-6 py-4 whitespace-nowrap text-sm font-semibold text-gray-900">
                                                 {formatCurrency(order.totalPrice || 0)}
@@ -49,33 +49,11 @@ export default function Wishlist() {
 
   const handleAddToCart = async (product) => {
     try {
-      const ordersRes = await axios.get(`${API_URL}/orders`);
-      let currentOrder = ordersRes.data.find(
-        (order) =>
-          order.customer?.idCustomer === customer.idCustomer &&
-          order.status === "pending"
-      );
-
-      if (!currentOrder) {
-        const orderData = {
-          orderDate: new Date().toISOString().split("T")[0],
-          totalPrice: 0,
-          status: "pending",
-          customer: { idCustomer: customer.idCustomer },
-        };
-        const orderRes = await axios.post(`${API_URL}/orders`, orderData);
-        currentOrder = orderRes.data;
-      }
-
-      const data = {
+      await axios.post(`${API_URL}/carts/${customer.idCustomer}/items`, {
+        idProduct: product.idProduct,
         quantity: 1,
-        subTotal: product.priceProduct,
         note: "",
-        order: { idOrder: currentOrder.idOrder },
-        product: { idProduct: product.idProduct },
-      };
-
-      await axios.post(`${API_URL}/orderDetails`, data);
+      });
       setMessage(`Đã thêm "${product.nameProduct}" vào giỏ hàng!`);
       setTimeout(() => setMessage(""), 3000);
     } catch (err) {
@@ -145,7 +123,7 @@ export default function Wishlist() {
                       <td className="py-4 px-4 font-medium flex items-center gap-3">
                         {item.product?.imageUrl && (
                           <img
-                            src={item.product.imageUrl}
+                            src={item.product.imageThumbUrl || item.product.imageUrl}
                             alt={item.product.nameProduct}
                             className="w-16 h-16 object-cover rounded shadow-sm"
                             onError={(e) => { e.target.style.display = 'none'; }}